@@ -5,6 +5,7 @@ package snap.app;
 import com.apple.eawt.*;
 import com.apple.eawt.AppEvent.*;
 import javax.swing.SwingUtilities;
+import snap.javakit.JavaParser;
 import snap.util.*;
 import snap.viewx.ExceptionReporter;
 
@@ -37,6 +38,9 @@ public App(String args[])
     ExceptionReporter er = new ExceptionReporter("SnapCode"); er.setToAddress("support@reportmill.com");
     er.setInfo("SnapCode Version 1, Build Date: " + SnapUtils.getBuildInfo());
     Thread.setDefaultUncaughtExceptionHandler(er);
+    
+    // Load Java grammar in background, so it's ready when first Java file is opened
+    JavaParser.preloadRule();
 
     // Show open data source panel
     WelcomePanel.getShared().setOnQuit(() -> quitApp());
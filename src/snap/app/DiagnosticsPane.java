@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.app;
+import snap.project.Metrics;
+import snap.view.*;
+import snap.web.*;
+
+/**
+ * A UI pane to show performance metrics (parse, completion, build, class loading, search and debugger timings), turn
+ * recording on or off, reset them and save them as JSON.
+ */
+public class DiagnosticsPane extends ViewOwner {
+    
+    // The SitePane that owns this DiagnosticsPane
+    SitePane               _sitePane;
+    
+    // The status text (result of last save)
+    String                 _status;
+
+/**
+ * Creates a new DiagnosticsPane for given site.
+ */
+protected DiagnosticsPane(SitePane aSP)  { _sitePane = aSP; }
+
+/**
+ * ResetUI.
+ */
+protected void resetUI()
+{
+    // Reset EnabledCheckBox and MetricsText
+    setViewValue("EnabledCheckBox", Metrics.Enabled);
+    setViewText("MetricsText", Metrics.Enabled || Metrics.getMetrics().size()>0? Metrics.getText() :
+        "Metrics are off (check Record Metrics or run with -Dsnapcode.Metrics=true)");
+    
+    // Reset StatusLabel
+    setViewText("StatusLabel", _status);
+}
+
+/**
+ * Respond to UI changes.
+ */
+protected void respondUI(ViewEvent anEvent)
+{
+    // Handle EnabledCheckBox
+    if(anEvent.equals("EnabledCheckBox"))
+        Metrics.Enabled = anEvent.getBoolValue();
+    
+    // Handle ResetButton
+    if(anEvent.equals("ResetButton")) {
+        Metrics.reset(); _status = null; }
+    
+    // Handle SaveButton: Save JSON dump to metrics.json in site sandbox
+    if(anEvent.equals("SaveButton")) {
+        WebSite sbox = _sitePane.getSite().getSandbox(); WebFile file = sbox.getFile("/metrics.json");
+        if(file==null) file = sbox.createFile("/metrics.json", false);
+        file.setText(Metrics.getJSON());
+        try { file.save(); _status = "Saved metrics to " + file.getURL(); }
+        catch(Exception e) { _status = "Error saving metrics: " + e; }
+    }
+    
+    // Handle RefreshButton (UI is reset after any event)
+    resetLater();
+}
+
+}
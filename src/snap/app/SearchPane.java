@@ -2,6 +2,7 @@ package snap.app;
 import java.util.*;
 import snap.gfx.*;
 import snap.javakit.*;
+import snap.project.Metrics;
 import snap.project.Project;
 import snap.util.ArrayUtils;
 import snap.view.*;
@@ -106,9 +107,10 @@ public void respondUI(ViewEvent anEvent)
  */
 public void search(String aString)
 {
-    _search = new Search(); _search._string = aString;
+    _search = new Search(); _search._string = aString; long time = Metrics.start();
     for(WebSite site : _appPane.getSites())
         search(site.getRootDir(), _search._results, aString.toLowerCase());
+    Metrics.stop("search.text", time);
     resetLater();
 }
 
@@ -168,8 +170,10 @@ public void searchReference(JNode aNode)
     _search = new Search(); _search._string = decl.getMatchName(); _search._kind = Search.Kind.Reference;
     
     // Iterate over all project sites
+    long time = Metrics.start();
     for(WebSite site : _appPane.getSites())
         searchReference(site.getRootDir(), _search._results, decl);
+    Metrics.stop("search.reference", time);
         
     // Update UI
     resetLater();
@@ -222,8 +226,10 @@ public void searchDeclaration(JNode aNode)
     _search = new Search(); _search._string = decl.getMatchName(); _search._kind = Search.Kind.Declaration;
     
     // Iterate over all project sites
+    long time = Metrics.start();
     for(WebSite site : _appPane.getSites())
         searchDeclaration(site.getRootDir(), _search._results, decl);
+    Metrics.stop("search.declaration", time);
         
     // Update UI
     resetLater();
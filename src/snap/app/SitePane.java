@@ -32,6 +32,9 @@ public class SitePane extends WebPage {
     // The HttpServerPane
     HttpServerPane     _httpServerPane;
     
+    // The DiagnosticsPane
+    DiagnosticsPane    _diagnosticsPane;
+    
     // DeepChangeListener for Site
     DeepChangeListener _siteDCL = (src,pc) -> siteHadDeepChange(src,pc);
     
@@ -55,6 +58,9 @@ protected SitePane(WebSite aSite)
     
     // Set HttpServerPane
     _httpServerPane = new HttpServerPane(this);
+    
+    // Set DiagnosticsPane
+    _diagnosticsPane = new DiagnosticsPane(this);
 }
 
 /**
@@ -324,6 +330,9 @@ protected View createUI()
     BuildPane buildPane = _buildPane;
     _tview.addTab("Build Dir", buildPane.getUI());
     
+    // Add DiagnosticsPane
+    _tview.addTab("Diagnostics", _diagnosticsPane.getUI());
+    
     // Add HttpServerPane
     HttpServerPane httpServPane = _httpServerPane;
     _tview.addTab("HTTP-Server", httpServPane.getUI());
@@ -3,6 +3,7 @@ import java.io.*;
 import java.util.*;
 import snap.debug.Exceptions.*;
 import snap.project.Breakpoint;
+import snap.project.Metrics;
 import snap.util.ArrayUtils;
 import snap.web.WebFile;
 import snap.web.WebURL;
@@ -44,6 +45,9 @@ public class DebugApp extends RunApp {
     // The current RunToLine breakpoint
     Breakpoint                    _runToLineBreak;
     
+    // The start time of pending step (for step round-trip metric)
+    volatile long                 _stepTime;
+    
     // Constants for method types
     static final int STATIC = 0;
     static final int INSTANCE = 1;
@@ -271,6 +275,7 @@ private void generalStep(ThreadReference thread, int size, int depth) throws NoS
     request.enable();
     
     // Resume
+    _stepTime = Metrics.start();
     resumeQuiet();
 }
 
@@ -356,8 +361,9 @@ public Value invokeMethod(ObjectReference anOR, String aName, List<Value> args)
     
     // Invoke method
     try {
-        _invoking = true;
+        _invoking = true; long time = Metrics.start();
         Value val = anOR.invokeMethod(thread, method, args, 0); //ObjectReference.INVOKE_NONVIRTUAL
+        Metrics.stop("debug.invokeMethod", time);
         return val;
     }
     
@@ -701,7 +707,9 @@ public class JDIEventDispatcher extends Thread {
     {
         try { while(true) {
             EventSet jdiEvents = _queue.remove();
-            DebugEvent event = new DebugEvent(jdiEvents);
+            DebugEvent event = new DebugEvent(jdiEvents); Metrics.count("debug.events");
+            if(_stepTime!=0 && event.getType()==DebugEvent.Type.LocationTrigger) {
+                Metrics.stop("debug.step", _stepTime); _stepTime = 0; }
             dispatchEvent(event);
             if(event.getType()==DebugEvent.Type.VMDisconnect) break; // Quit on VMDisconnect
         }}
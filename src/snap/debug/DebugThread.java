@@ -1,6 +1,7 @@
 package snap.debug;
 import com.sun.jdi.*;
 import java.util.*;
+import snap.project.Metrics;
 
 /**
  * A custom class.
@@ -55,7 +56,8 @@ public DebugFrame[] getFrames()
 {
     if(!isSuspended()) return NO_FRAMES;
     try {
-        List <StackFrame> frames = _tref.frames();
+        long time = Metrics.start();
+        List <StackFrame> frames = _tref.frames(); Metrics.stop("debug.frames", time);
         DebugFrame dframes[] = new DebugFrame[frames.size()];
         for(int i=0,iMax=frames.size();i<iMax;i++) dframes[i] = new DebugFrame(this, frames.get(i), i);
         return dframes;
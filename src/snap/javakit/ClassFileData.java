@@ -10,7 +10,7 @@ import java.util.*;
  * @author      Tanmay K. Mohapatra
  * @version     1.03, 28th Sep, 2003
  */
-class ClassFileData {
+public class ClassFileData {
 
     // Version numbers
     int             magicNumber;
@@ -21,6 +21,9 @@ class ClassFileData {
     public ConstantPool    constantPool    = new ConstantPool();
     public ClassNames      classNames      = new ClassNames();
     
+    // Access flags for public and synthetic members
+    static final int ACC_PUBLIC = 0x0001, ACC_SYNTHETIC = 0x1000;
+    
     /**
      * reads the class file into data structures.
      */
@@ -42,6 +45,104 @@ class ClassFileData {
         classNames.read(dis, constantPool);
     }
     
+    /**
+     * Reads the class access flags and adds the descriptors of public, non-synthetic constructors to given list.
+     * For nested classes, flags are from this class entry in InnerClasses attribute (javac writes top-level flags of
+     * nested classes as public for protected and without static/private).
+     */
+    public static int readAccessFlags(DataInputStream dis, List <String> theConstrs) throws IOException
+    {
+        // Skip magic number and version numbers
+        dis.readInt(); dis.readUnsignedShort(); dis.readUnsignedShort();
+        
+        // Read constant pool strings and class name indexes, and access flags
+        int ccount = dis.readUnsignedShort(); String utf8s[] = new String[ccount]; int cnames[] = new int[ccount];
+        readConstants(dis, utf8s, cnames);
+        int flags = dis.readUnsignedShort();
+        
+        // Read this class, skip super class, interfaces and fields
+        String cname = utf8s[cnames[dis.readUnsignedShort()]]; skipFully(dis, 2);
+        skipFully(dis, dis.readUnsignedShort()*2);
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) { skipFully(dis, 6); skipAttributes(dis); }
+        
+        // Read methods and add public constructor descriptors
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) {
+            int mflags = dis.readUnsignedShort(); String name = utf8s[dis.readUnsignedShort()];
+            String desc = utf8s[dis.readUnsignedShort()]; skipAttributes(dis);
+            if("<init>".equals(name) && (mflags & (ACC_PUBLIC|ACC_SYNTHETIC))==ACC_PUBLIC)
+                theConstrs.add(desc);
+        }
+        
+        // Read class attributes: If InnerClasses has entry for this class, use its flags
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) {
+            String aname = utf8s[dis.readUnsignedShort()]; int len = dis.readInt();
+            if(!aname.equals("InnerClasses")) { skipFully(dis, len); continue; }
+            for(int j=0, jMax=dis.readUnsignedShort(); j<jMax; j++) {
+                int iind = dis.readUnsignedShort(); skipFully(dis, 4); int iflags = dis.readUnsignedShort();
+                if(iind>0 && cname.equals(utf8s[cnames[iind]])) flags = iflags;
+            }
+        }
+        
+        // Return flags
+        return flags;
+    }
+    
+    /**
+     * Reads the super class name (null for Object) and interface names of a class, without reading members.
+     */
+    public static String[] readSuperTypeNames(DataInputStream dis) throws IOException
+    {
+        // Skip magic number and version numbers, read constant pool and skip access flags and this class
+        dis.readInt(); dis.readUnsignedShort(); dis.readUnsignedShort();
+        int ccount = dis.readUnsignedShort(); String utf8s[] = new String[ccount]; int cnames[] = new int[ccount];
+        readConstants(dis, utf8s, cnames); skipFully(dis, 4);
+        
+        // Read super class and interface names
+        int sind = dis.readUnsignedShort(), icount = dis.readUnsignedShort(); String names[] = new String[icount+1];
+        names[0] = sind>0? utf8s[cnames[sind]].replace('/', '.') : null;
+        for(int i=0; i<icount; i++) names[i+1] = utf8s[cnames[dis.readUnsignedShort()]].replace('/', '.');
+        return names;
+    }
+    
+    /**
+     * Reads constant pool entries into given arrays of Utf8 constants and Class constant name indexes by pool index.
+     */
+    private static void readConstants(DataInputStream dis, String theUtf8s[], int theCNames[]) throws IOException
+    {
+        for(int i=1, iMax=theUtf8s.length; i<iMax; i++) { int tag = dis.readUnsignedByte();
+            switch(tag) {
+                case Constant.CONSTANT_Utf8: theUtf8s[i] = dis.readUTF(); break;
+                case Constant.CONSTANT_Class: theCNames[i] = dis.readUnsignedShort(); break;
+                case Constant.CONSTANT_String: case Constant.CONSTANT_MethodType:
+                case 19: case 20: skipFully(dis, 2); break; // Module, Package
+                case Constant.CONSTANT_MethodHandle: skipFully(dis, 3); break;
+                case Constant.CONSTANT_Integer: case Constant.CONSTANT_Float: case Constant.CONSTANT_Fieldref:
+                case Constant.CONSTANT_Methodref: case Constant.CONSTANT_InterfaceMethodref:
+                case Constant.CONSTANT_NameAndType: case Constant.CONSTANT_InvokeDynamic:
+                case 17: skipFully(dis, 4); break; // Dynamic
+                case Constant.CONSTANT_Long: case Constant.CONSTANT_Double: skipFully(dis, 8); i++; break;
+                default: throw new IOException("ClassFileData: Unknown constant pool type: " + tag);
+            }
+        }
+    }
+    
+    /**
+     * Skips a field or method attributes table.
+     */
+    private static void skipAttributes(DataInputStream dis) throws IOException
+    {
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) { dis.readUnsignedShort(); skipFully(dis, dis.readInt()); }
+    }
+    
+    /**
+     * Skips given number of bytes (DataInputStream.skipBytes can skip fewer on compressed streams).
+     */
+    static void skipFully(DataInputStream dis, int aCount) throws IOException
+    {
+        while(aCount>0) { int n = dis.skipBytes(aCount); if(n<=0) { dis.readUnsignedByte(); n = 1; }
+            aCount -= n; }
+    }
+    
     /**
      * Returns the number of constants.
      */
@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * A class to create JavaDecls for a class from class file bytes (including generic signatures) instead of reflection,
+ * so classes don't have to be loaded (or initialized) by the project ClassLoader to get decls.
+ *
+ * The class decl (modifiers, super type and type vars) is created immediately. Fields, methods, constructors and
+ * inner classes are created when the class decl updateDecls() is first called.
+ */
+public class ClassFileDecls {
+
+    // The class decl
+    JavaDeclClass       _cdecl;
+
+    // The class info for first update (cleared after, so later updates re-read class file in case it was rebuilt)
+    ClassInfo           _info;
+
+    // The class type vars
+    List <JavaDecl>     _tvars = new ArrayList();
+
+    // Class file access flags
+    static final int ACC_SUPER = 0x0020, ACC_VARARGS = 0x0080, ACC_INTERFACE = 0x0200, ACC_ABSTRACT = 0x0400,
+        ACC_SYNTHETIC = 0x1000, ACC_ENUM = 0x4000;
+
+    // The primitive class names
+    static final String PRIMITIVE_NAMES[] = { "boolean", "byte", "char", "short", "int", "long", "float", "double", "void" };
+
+/**
+ * Creates a class decl for given class file bytes.
+ */
+public static JavaDeclClass createClassDecl(JavaDeclOwner anOwner, byte theBytes[])
+{
+    // Read class info
+    ClassInfo info; try { info = new ClassInfo(theBytes); }
+    catch(Exception e) { System.err.println("ClassFileDecls.createClassDecl: " + e); return null; }
+
+    // Get parent decl: Declaring class for member class, otherwise package
+    String cname = info._name;
+    JavaDecl par = info._outerName!=null? anOwner.getJavaDecl(info._outerName) : null;
+    if(par==null) { int ind = cname.lastIndexOf('.'); par = ind>0? anOwner.getPackageDecl(cname.substring(0,ind)) : null; }
+
+    // If getting declaring class created this class (from declaring class super type), just return it
+    JavaDecl jd = anOwner._decls.get(cname); if(jd instanceof JavaDeclClass) return (JavaDeclClass)jd;
+
+    // Create class decl and helper
+    JavaDeclClass cdecl = new JavaDeclClass(anOwner, par, cname, info.getSimpleName(), info.getClassMods());
+    ClassFileDecls cfdecls = new ClassFileDecls(); cfdecls._cdecl = cdecl; cfdecls._info = info;
+    cdecl._cfdecls = cfdecls;
+    cdecl._interface = (info._flags & ACC_INTERFACE)!=0;
+    cdecl._enum = (info._flags & ACC_ENUM)!=0 && "java.lang.Enum".equals(info._superName);
+
+    // Get type vars and super type from signature (or super class name)
+    JavaDecl stype = null;
+    if(info._sig!=null) { SigParser sp = cfdecls.new SigParser(info._sig, cfdecls._tvars);
+        sp.parseTypeParams(cdecl); stype = sp.parseType(); }
+    else if(info._superName!=null) stype = anOwner.getJavaDecl(info._superName);
+    if(stype==null && info._superName!=null) stype = cfdecls.getObjectDecl();
+
+    // Set super type (interfaces don't have super class, same as Class.getSuperclass())
+    if(stype!=null && !cdecl._interface) {
+        cdecl._stype = stype; cdecl._sdecl = cdecl._scdecl = stype.getClassType(); }
+    return cdecl;
+}
+
+/**
+ * Creates an array class decl for given item class decl.
+ */
+public static JavaDeclClass createArrayDecl(JavaDeclOwner anOwner, JavaDeclClass anItemDecl)
+{
+    // Handle Object[]: Create from class, since it is the template for other arrays
+    if(anItemDecl.getName().equals("java.lang.Object"))
+        return new JavaDeclClass(anOwner, null, Object[].class);
+
+    // Create decl with array modifiers (same as Class.getModifiers()) and set item type
+    int mods = anItemDecl.getModifiers() & (Modifier.PUBLIC | Modifier.PRIVATE | Modifier.PROTECTED);
+    JavaDeclClass adecl = new JavaDeclClass(anOwner, null, anItemDecl.getId() + "[]", anItemDecl.getSimpleName() + "[]",
+        mods | Modifier.FINAL | Modifier.ABSTRACT);
+    adecl._arrayItemType = anItemDecl;
+
+    // Set decls from Object[] (same as JavaDeclClass(Class) for arrays, which also have no super type)
+    JavaDeclClass aryDecl = anOwner.getJavaDeclClass(Object[].class);
+    adecl._members = aryDecl.getMembers();
+    return adecl;
+}
+
+/**
+ * Updates member decls from class file.
+ *
+ * @return whether the decls changed since last update.
+ */
+boolean updateDecls()
+{
+    // If first time, set decls
+    JavaDeclClass cdecl = _cdecl; JavaDeclOwner owner = cdecl._owner;
+    boolean firstTime = cdecl._fdecls==null;
+    if(firstTime) cdecl._fdecls = new ArrayList();
+
+    // Get class info (if not first time, re-read class file)
+    String cname = cdecl.getName();
+    ClassInfo info = _info; _info = null;
+    if(info==null) { byte bytes[] = owner.getClassBytes(cname);
+        try { info = bytes!=null? new ClassInfo(bytes) : null; }
+        catch(Exception e) { System.err.println("ClassFileDecls.updateDecls: " + e + " in " + cname); }
+    }
+    if(info==null) {
+        System.err.println("ClassFileDecls: Failed to read class: " + cname); return false; }
+
+    // Update modifiers
+    cdecl._mods = info.getClassMods();
+
+    // Get interfaces
+    List <JavaDeclClass> infcs = new ArrayList(); JavaDeclClass oldInfcs[] = cdecl._interfaces;
+    for(String iname : info._interfaces) { JavaDeclClass idecl = owner.getJavaDeclClass(iname);
+        if(idecl!=null) infcs.add(idecl); }
+    cdecl._interfaces = infcs.toArray(new JavaDeclClass[infcs.size()]);
+
+    // Create set for added/removed decls
+    boolean hierChanged = oldInfcs!=null && !Arrays.equals(oldInfcs, cdecl._interfaces); int addedDecls = 0;
+    Set <JavaDecl> removedDecls = new HashSet(cdecl.getAllDecls()); removedDecls.remove(cdecl);
+
+    // TypeVariables and super type: If not first time, re-read from signature (or super class name)
+    if(!firstTime) { List <JavaDecl> tvars = new ArrayList(); JavaDecl stype = null;
+        if(info._sig!=null) { SigParser sp = new SigParser(info._sig, tvars); sp.parseTypeParams(cdecl);
+            stype = sp.parseType(); }
+        else if(info._superName!=null) stype = owner.getJavaDecl(info._superName);
+        if(stype==null && info._superName!=null) stype = getObjectDecl();
+        _tvars = tvars;
+        if(!cdecl._interface && !Objects.equals(getId(stype), getId(cdecl._stype))) { hierChanged = true;
+            cdecl._stype = stype; cdecl._sdecl = cdecl._scdecl = stype!=null? stype.getClassType() : null; }
+    }
+    for(JavaDecl tvar : _tvars) {
+        if(!cdecl._tvdecls.contains(tvar)) { cdecl.addDecl(tvar); addedDecls++; }
+        else removedDecls.remove(tvar);
+    }
+
+    // Inner Classes: Add JavaDecl for each member class (skip lookups first time, since there is nothing to find)
+    for(String iname : info._memberNames) {
+        JavaDecl decl = firstTime? null : cdecl.getClassDecl(JavaDeclOwner.getSimpleName(iname));
+        if(decl==null) { decl = owner.getJavaDecl(iname); if(decl==null) continue; cdecl.addDecl(decl); addedDecls++; }
+        else removedDecls.remove(decl);
+    }
+
+    // Fields: Add JavaDecl for each declared field
+    for(MemberInfo finfo : info._fields) {
+        JavaDecl decl = firstTime? null : cdecl.getField(finfo._name);
+        if(decl==null || decl.getModifiers()!=finfo._flags) { decl = createField(finfo); cdecl.addDecl(decl); addedDecls++; }
+        else removedDecls.remove(decl);
+    }
+
+    // Methods and Constructors: Add JavaDecl for each declared non-synthetic method and constructor
+    for(MemberInfo minfo : info._methods) {
+        if((minfo._flags & ACC_SYNTHETIC)!=0 || minfo._name.equals("<clinit>")) continue;
+        boolean isConstr = minfo._name.equals("<init>");
+        String id = getMethodId(minfo, isConstr);
+        JavaDecl decl = firstTime? null : isConstr? cdecl.getConstructorDecl(id) : cdecl.getMethodDecl(id);
+        if(decl==null || decl.getModifiers()!=minfo._flags) {
+            decl = createMethod(minfo, isConstr, id); cdecl.addDecl(decl); addedDecls++; }
+        else removedDecls.remove(decl);
+    }
+
+    // Remove unused decls
+    for(JavaDecl jd : removedDecls) cdecl.removeDecl(jd);
+
+    // Return whether decls were changed (if changed after first time, bump versions to clear lookup caches)
+    boolean changed = hierChanged || addedDecls>0 || removedDecls.size()>0;
+    if(changed && !firstTime) cdecl.declsChanged(hierChanged);
+    return changed;
+}
+
+/**
+ * Returns the id of given decl (or null if decl is null).
+ */
+private static String getId(JavaDecl aDecl)  { return aDecl!=null? aDecl.getId() : null; }
+
+/**
+ * Creates a field decl for given field info.
+ */
+private JavaDecl createField(MemberInfo aFI)
+{
+    // Create decl (id is same as JavaKitUtils.getId(Field), which uses Class.toString() for declaring class)
+    String id = (_cdecl.isInterface()? "interface " : "class ") + _cdecl.getName() + '.' + aFI._name;
+    JavaDecl decl = new JavaDecl(_cdecl._owner, _cdecl, JavaDecl.DeclType.Field, id, aFI._name, aFI._flags);
+
+    // Set type from signature (or descriptor)
+    decl._evalType = new SigParser(aFI._sig!=null? aFI._sig : aFI._desc, null).parseType();
+    return decl;
+}
+
+/**
+ * Creates a method or constructor decl for given method info.
+ */
+private JavaDecl createMethod(MemberInfo aMI, boolean isConstr, String anId)
+{
+    // Create decl
+    JavaDecl.DeclType type = isConstr? JavaDecl.DeclType.Constructor : JavaDecl.DeclType.Method;
+    JavaDecl decl = new JavaDecl(_cdecl._owner, _cdecl, type, anId, isConstr? _cdecl.getSimpleName() : aMI._name,
+        aMI._flags);
+    decl._varArgs = (aMI._flags & ACC_VARARGS)!=0;
+    decl._default = !isConstr && _cdecl.isInterface() &&
+        (aMI._flags & (Modifier.PUBLIC | Modifier.STATIC | ACC_ABSTRACT))==Modifier.PUBLIC;
+
+    // Get type vars, param types and return type from signature (or descriptor)
+    List <JavaDecl> tvars = new ArrayList(), ptypes = new ArrayList();
+    SigParser sp = new SigParser(aMI._sig!=null? aMI._sig : aMI._desc, tvars);
+    sp.parseTypeParams(decl);
+    sp.parseParamTypes(ptypes);
+    JavaDecl rtype = sp.parseType();
+
+    // If signature has fewer params than descriptor (like inner class outer instance), use descriptor params
+    if(aMI._sig!=null && ptypes.size()<getParamTypeNames(aMI._desc).length) {
+        ptypes.clear(); new SigParser(aMI._desc, tvars).parseParamTypes(ptypes); }
+
+    // Set type vars, param types and eval type (Constructor eval type is class)
+    JavaDeclOwner owner = _cdecl._owner;
+    decl._typeVars = tvars.size()>0? tvars.toArray(new JavaDecl[tvars.size()]) : JavaDecl.EMPTY_DECLS;
+    decl._paramTypes = owner.getSharedDecls(ptypes.toArray(new JavaDecl[ptypes.size()]));
+    decl._evalType = isConstr? _cdecl : rtype;
+    return decl;
+}
+
+/**
+ * Returns a method or constructor id (same as JavaKitUtils.getId(Method/Constructor)).
+ */
+private String getMethodId(MemberInfo aMI, boolean isConstr)
+{
+    StringBuffer sb = new StringBuffer(_cdecl.getId()); if(!isConstr) sb.append('.').append(aMI._name);
+    String names[] = getParamTypeNames(aMI._desc); sb.append('(');
+    for(int i=0;i<names.length;i++) { if(i>0) sb.append(','); sb.append(names[i]); }
+    return sb.append(')').toString();
+}
+
+/**
+ * Returns the TypeVar decl with given name for given generic decl (class or method), creating it if needed.
+ */
+private JavaDecl getTypeVarDecl(JavaDecl aGenDecl, String aName)
+{
+    JavaDeclOwner owner = _cdecl._owner; String id = aGenDecl.getId() + '.' + aName;
+    JavaDecl decl = owner._decls.get(id); if(decl!=null && decl.isTypeVar()) return decl;
+    decl = new JavaDecl(owner, aGenDecl, JavaDecl.DeclType.TypeVar, id, aName, 0);
+    owner._decls.put(id, decl);
+    return decl;
+}
+
+/**
+ * Returns the class type var with given name from this class or enclosing classes.
+ */
+private JavaDecl getClassTypeVar(String aName)
+{
+    // Check this class type vars
+    for(JavaDecl tvar : _tvars) if(tvar.getName().equals(aName)) return tvar;
+
+    // Check enclosing classes
+    for(JavaDecl par=_cdecl.getParent(); par instanceof JavaDeclClass; par=par.getParent()) {
+        JavaDeclClass pcls = (JavaDeclClass)par;
+        List <JavaDecl> tvars = pcls._cfdecls!=null? pcls._cfdecls._tvars : pcls.getTypeVars2();
+        for(JavaDecl tvar : tvars) if(tvar.getName().equals(aName)) return tvar;
+    }
+    return null;
+}
+
+/**
+ * Returns the class decl for a type (erasure): ParamType raw class, TypeVar bounds class or class.
+ */
+private JavaDecl getErasure(JavaDecl aType)
+{
+    if(aType==null) return getObjectDecl();
+    if(aType.isTypeVar()) return aType._evalType!=null? aType._evalType : getObjectDecl();
+    JavaDecl ctype = aType.getClassType();
+    return ctype!=null? ctype : getObjectDecl();
+}
+
+/** Returns the decl for java.lang.Object. */
+private JavaDecl getObjectDecl()  { return _cdecl._owner.getJavaDecl(Object.class); }
+
+/**
+ * Returns the parameter type names (same as JavaKitUtils.getId(Class), with "[]" for arrays) for a method descriptor.
+ */
+static String[] getParamTypeNames(String aDesc)
+{
+    List <String> names = new ArrayList();
+    for(int i=aDesc.indexOf('(')+1, iMax=aDesc.indexOf(')'); i<iMax;) {
+
+        // Get array dimensions
+        int dims = 0; while(aDesc.charAt(i)=='[') { dims++; i++; }
+
+        // Get type name
+        String name; char c = aDesc.charAt(i++);
+        if(c=='L') { int end = aDesc.indexOf(';', i); name = aDesc.substring(i, end).replace('/', '.'); i = end + 1; }
+        else name = getPrimitiveName(c);
+        if(name==null) throw new RuntimeException("ClassFileDecls: Invalid descriptor " + aDesc);
+
+        // Add name with array brackets
+        for(int j=0;j<dims;j++) name += "[]";
+        names.add(name);
+    }
+    return names.toArray(new String[0]);
+}
+
+/**
+ * Returns the type name (like "java.lang.String[]") for a JVM class name (like "[Ljava.lang.String;").
+ */
+static String getTypeName(String aName)
+{
+    if(!aName.startsWith("[")) return aName;
+    return getParamTypeNames('(' + aName.replace('.', '/') + ')')[0];
+}
+
+/**
+ * Returns whether given class name is primitive.
+ */
+static boolean isPrimitiveName(String aName)
+{
+    for(String name : PRIMITIVE_NAMES) if(name.equals(aName)) return true;
+    return false;
+}
+
+/**
+ * Returns the primitive name for descriptor char.
+ */
+private static String getPrimitiveName(char aChar)
+{
+    switch(aChar) {
+        case 'Z': return "boolean"; case 'B': return "byte"; case 'C': return "char"; case 'S': return "short";
+        case 'I': return "int"; case 'J': return "long"; case 'F': return "float"; case 'D': return "double";
+        case 'V': return "void";
+        default: return null;
+    }
+}
+
+/**
+ * Returns the primitive class for descriptor char.
+ */
+private static Class getPrimitiveClass(char aChar)
+{
+    switch(aChar) {
+        case 'Z': return boolean.class; case 'B': return byte.class; case 'C': return char.class;
+        case 'S': return short.class; case 'I': return int.class; case 'J': return long.class;
+        case 'F': return float.class; case 'D': return double.class; case 'V': return void.class;
+        default: return null;
+    }
+}
+
+/**
+ * A class to parse generic signatures (and descriptors) into type decls.
+ */
+private class SigParser {
+
+    // The signature string and current index
+    String           _str; int _ind;
+
+    // The type vars of the generic decl being parsed (class or method)
+    List <JavaDecl>  _scopeTVars;
+
+    /** Creates a new SigParser for given signature and list of type vars in scope. */
+    SigParser(String aStr, List <JavaDecl> theTVars)  { _str = aStr; _scopeTVars = theTVars; }
+
+    /** Parses type params (<T:ClassBound:InterfaceBound;...>) for given generic decl, adding to scope type vars. */
+    void parseTypeParams(JavaDecl aGenDecl)
+    {
+        if(_str.charAt(_ind)!='<') return; _ind++;
+        while(_str.charAt(_ind)!='>') {
+
+            // Get name and type var decl (added to scope before bounds, which can reference it)
+            int colon = _str.indexOf(':', _ind); String name = _str.substring(_ind, colon); _ind = colon;
+            JavaDecl tvar = getTypeVarDecl(aGenDecl, name); _scopeTVars.add(tvar);
+
+            // Parse bounds (class bound can be empty) - type var eval type is first bound class (like reflection)
+            JavaDecl bound = null;
+            while(_str.charAt(_ind)==':') { _ind++; if(_str.charAt(_ind)==':') continue;
+                JavaDecl btype = parseType(); if(bound==null) bound = btype; }
+            tvar._evalType = getErasure(bound);
+        }
+        _ind++;
+    }
+
+    /** Parses method param types ("(...)") into given list. */
+    void parseParamTypes(List <JavaDecl> theTypes)
+    {
+        _ind++;
+        while(_str.charAt(_ind)!=')') theTypes.add(parseType());
+        _ind++;
+    }
+
+    /** Parses a type. */
+    JavaDecl parseType()
+    {
+        char c = _str.charAt(_ind++);
+        switch(c) {
+
+            // Handle class type
+            case 'L': return parseClassType();
+
+            // Handle type var
+            case 'T': { int end = _str.indexOf(';', _ind); String name = _str.substring(_ind, end); _ind = end + 1;
+                return getTypeVar(name); }
+
+            // Handle array (arrays of TypeVar or ParamType are arrays of class, like reflection GenericArrayType)
+            case '[': return getErasure(parseType()).getArrayTypeDecl();
+
+            // Handle primitive
+            default: { Class cls = getPrimitiveClass(c); if(cls==null)
+                    throw new RuntimeException("ClassFileDecls: Invalid signature " + _str);
+                return _cdecl._owner.getJavaDecl(cls); }
+        }
+    }
+
+    /** Parses a class type (after 'L'): ClassName<TypeArgs>.InnerName<TypeArgs>; */
+    JavaDecl parseClassType()
+    {
+        // Get class name and type args (inner class type args replace outer type args)
+        StringBuffer sb = new StringBuffer(); List <JavaDecl> targs = null;
+        for(char c=_str.charAt(_ind++); c!=';'; c=_str.charAt(_ind++)) {
+            if(c=='<') { targs = new ArrayList();
+                while(_str.charAt(_ind)!='>') targs.add(parseTypeArg()); _ind++; }
+            else if(c=='.') { sb.append('$'); targs = null; }
+            else sb.append(c=='/'? '.' : c);
+        }
+
+        // Get class decl and return it, or ParamType if type args
+        JavaDecl cdecl = _cdecl._owner.getJavaDecl(sb.toString()); if(cdecl==null) cdecl = getObjectDecl();
+        if(targs==null || targs.size()==0) return cdecl;
+        return _cdecl._owner.getParamTypeDecl(cdecl, targs.toArray(new JavaDecl[targs.size()]));
+    }
+
+    /** Parses a type arg (wildcards are bounds class, like reflection WildcardType). */
+    JavaDecl parseTypeArg()
+    {
+        char c = _str.charAt(_ind);
+        if(c=='*') { _ind++; return getObjectDecl(); }
+        if(c=='+' || c=='-') { _ind++; return getErasure(parseType()); }
+        return parseType();
+    }
+
+    /** Returns type var for name from scope, class or enclosing classes. */
+    JavaDecl getTypeVar(String aName)
+    {
+        if(_scopeTVars!=null)
+            for(JavaDecl tvar : _scopeTVars) if(tvar.getName().equals(aName)) return tvar;
+        JavaDecl tvar = getClassTypeVar(aName);
+        return tvar!=null? tvar : getObjectDecl();
+    }
+}
+
+/**
+ * A class to hold the parts of a class file needed to create decls.
+ */
+static class ClassInfo {
+
+    // The class name, super class name, interface names and generic signature
+    String              _name, _superName, _interfaces[], _sig;
+
+    // The class access flags (from InnerClasses attribute for nested classes)
+    int                 _flags;
+
+    // The declaring class name and simple name (if nested class)
+    String              _outerName, _simpleName;
+
+    // The member class names
+    List <String>       _memberNames = new ArrayList();
+
+    // The fields and methods
+    List <MemberInfo>   _fields = new ArrayList(), _methods = new ArrayList();
+
+    /** Reads class info from class file bytes. */
+    ClassInfo(byte theBytes[]) throws IOException
+    {
+        // Skip magic number and version numbers
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(theBytes));
+        dis.readInt(); dis.readUnsignedShort(); dis.readUnsignedShort();
+
+        // Read constants table (just Utf8 strings and Class name indexes)
+        int ccount = dis.readUnsignedShort(); String utf8s[] = new String[ccount]; int cnames[] = new int[ccount];
+        for(int i=1; i<ccount; i++) { int tag = dis.readUnsignedByte();
+            switch(tag) {
+                case ClassFileData.Constant.CONSTANT_Utf8: utf8s[i] = dis.readUTF(); break;
+                case ClassFileData.Constant.CONSTANT_Class: cnames[i] = dis.readUnsignedShort(); break;
+                case ClassFileData.Constant.CONSTANT_String: case ClassFileData.Constant.CONSTANT_MethodType:
+                case 19: case 20: ClassFileData.skipFully(dis, 2); break; // Module, Package
+                case ClassFileData.Constant.CONSTANT_MethodHandle: ClassFileData.skipFully(dis, 3); break;
+                case ClassFileData.Constant.CONSTANT_Integer: case ClassFileData.Constant.CONSTANT_Float:
+                case ClassFileData.Constant.CONSTANT_Fieldref: case ClassFileData.Constant.CONSTANT_Methodref:
+                case ClassFileData.Constant.CONSTANT_InterfaceMethodref: case ClassFileData.Constant.CONSTANT_NameAndType:
+                case ClassFileData.Constant.CONSTANT_InvokeDynamic: case 17: ClassFileData.skipFully(dis, 4); break; // Dynamic
+                case ClassFileData.Constant.CONSTANT_Long: case ClassFileData.Constant.CONSTANT_Double:
+                    ClassFileData.skipFully(dis, 8); i++; break;
+                default: throw new IOException("ClassFileDecls: Unknown constant pool type: " + tag);
+            }
+        }
+
+        // Read access flags, class name, super class name and interface names
+        _flags = dis.readUnsignedShort();
+        _name = getClassName(utf8s, cnames, dis.readUnsignedShort());
+        _superName = getClassName(utf8s, cnames, dis.readUnsignedShort());
+        _interfaces = new String[dis.readUnsignedShort()];
+        for(int i=0;i<_interfaces.length;i++) _interfaces[i] = getClassName(utf8s, cnames, dis.readUnsignedShort());
+
+        // Read fields and methods
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) _fields.add(new MemberInfo(dis, utf8s));
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) _methods.add(new MemberInfo(dis, utf8s));
+
+        // Read class attributes: Signature and InnerClasses (for this class flags and declaring class, and member classes)
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) {
+            String aname = utf8s[dis.readUnsignedShort()]; int len = dis.readInt();
+            if(aname.equals("Signature")) _sig = utf8s[dis.readUnsignedShort()];
+            else if(aname.equals("InnerClasses")) {
+                for(int j=0, jMax=dis.readUnsignedShort(); j<jMax; j++) {
+                    String iname = getClassName(utf8s, cnames, dis.readUnsignedShort());
+                    String oname = getClassName(utf8s, cnames, dis.readUnsignedShort());
+                    int nind = dis.readUnsignedShort(), iflags = dis.readUnsignedShort();
+                    if(_name.equals(iname)) { _outerName = oname; _simpleName = nind>0? utf8s[nind] : ""; _flags = iflags; }
+                    else if(_name.equals(oname) && nind>0) _memberNames.add(iname);
+                }
+            }
+            else ClassFileData.skipFully(dis, len);
+        }
+    }
+
+    /** Returns the class modifiers (same as Class.getModifiers()). */
+    int getClassMods()  { return _flags & ~ACC_SUPER; }
+
+    /** Returns the class simple name (same as Class.getSimpleName()). */
+    String getSimpleName()  { return _simpleName!=null? _simpleName : _name.substring(_name.lastIndexOf('.')+1); }
+
+    /** Returns the class name for constant pool class index. */
+    static String getClassName(String theUtf8s[], int theCNames[], int anIndex)
+    {
+        return anIndex>0? theUtf8s[theCNames[anIndex]].replace('/', '.') : null;
+    }
+}
+
+/**
+ * A class to hold a field or method access flags, name, descriptor and generic signature.
+ */
+static class MemberInfo {
+
+    // The access flags
+    int                 _flags;
+
+    // The name, descriptor and generic signature
+    String              _name, _desc, _sig;
+
+    /** Reads member info from class file stream. */
+    MemberInfo(DataInputStream dis, String theUtf8s[]) throws IOException
+    {
+        _flags = dis.readUnsignedShort();
+        _name = theUtf8s[dis.readUnsignedShort()]; _desc = theUtf8s[dis.readUnsignedShort()];
+        for(int i=0, iMax=dis.readUnsignedShort(); i<iMax; i++) {
+            String aname = theUtf8s[dis.readUnsignedShort()]; int len = dis.readInt();
+            if(aname.equals("Signature")) _sig = theUtf8s[dis.readUnsignedShort()];
+            else ClassFileData.skipFully(dis, len);
+        }
+    }
+}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * A compact, sorted index of class names that answers prefix, camel-hump ("HM" for HashMap) and subsequence
+ * queries on class simple names with binary search instead of scanning every class.
+ *
+ * Class names are stored back to back in a single char pool, with primitive arrays of offsets and sort orders,
+ * so that a class is identified by an int id.
+ */
+public class ClassNameIndex {
+
+    // The pool of all class names (fully qualified, with '$' for inner classes) back to back
+    char          _pool[];
+
+    // The start offset of each class name in pool (with extra trailing entry for pool end)
+    int           _starts[];
+
+    // The start offset of each class simple name in pool
+    int           _snStarts[];
+
+    // The class ids sorted by simple name (case-insensitive)
+    int           _byName[];
+
+    // The pool of all class simple name humps ("HM" for HashMap) back to back
+    char          _humps[];
+
+    // The start offset of each class humps in humps pool (with extra trailing entry for pool end)
+    int           _humpStarts[];
+
+    // The class ids sorted by humps
+    int           _byHumps[];
+
+    // Shared empty index
+    public static final ClassNameIndex EMPTY = new ClassNameIndex(Collections.EMPTY_LIST);
+
+/**
+ * Creates a new ClassNameIndex for given list of class names.
+ */
+public ClassNameIndex(List <String> theNames)
+{
+    // Get total pool size for names
+    int count = theNames.size(), plen = 0;
+    for(String name : theNames) plen += name.length();
+
+    // Load names into pool and record name and simple name starts
+    _pool = new char[plen]; _starts = new int[count+1]; _snStarts = new int[count];
+    for(int i=0, off=0; i<count; i++) { String name = theNames.get(i); int len = name.length();
+        name.getChars(0, len, _pool, off); _starts[i] = off;
+        int sind = Math.max(name.lastIndexOf('.'), name.lastIndexOf('$'));
+        _snStarts[i] = off + sind + 1; off += len;
+    }
+    _starts[count] = plen;
+
+    // Load humps into humps pool
+    StringBuilder sb = new StringBuilder(count*3); _humpStarts = new int[count+1];
+    for(int i=0; i<count; i++) { _humpStarts[i] = sb.length();
+        appendHumps(_pool, _snStarts[i], _starts[i+1], sb); }
+    _humpStarts[count] = sb.length();
+    _humps = new char[sb.length()]; sb.getChars(0, sb.length(), _humps, 0);
+
+    // Sort ids by simple name and by humps
+    _byName = IntStream.range(0, count).boxed().sorted((a,b) -> compareNames(a,b)).mapToInt(i -> i).toArray();
+    _byHumps = IntStream.range(0, count).boxed().sorted((a,b) -> compareHumps(a,b)).mapToInt(i -> i).toArray();
+}
+
+/**
+ * Returns the number of classes in index.
+ */
+public int getClassCount()  { return _snStarts.length; }
+
+/**
+ * Returns the class name for given id.
+ */
+public String getClassName(int anId)  { return new String(_pool, _starts[anId], _starts[anId+1] - _starts[anId]); }
+
+/**
+ * Returns the class simple name for given id.
+ */
+public String getSimpleName(int anId)  { return new String(_pool, _snStarts[anId], _starts[anId+1]-_snStarts[anId]); }
+
+/**
+ * Returns class names whose simple name starts with given prefix (case-insensitive).
+ */
+public List <String> getPrefixNames(String aPrefix)  { return getClassNames(getPrefixIds(aPrefix)); }
+
+/**
+ * Returns class ids whose simple name starts with given prefix (case-insensitive), in simple name order.
+ */
+public int[] getPrefixIds(String aPrefix)
+{
+    int lo = lowerBoundName(aPrefix), hi = upperBoundName(aPrefix);
+    return Arrays.copyOfRange(_byName, lo, hi);
+}
+
+/**
+ * Returns class names whose simple name matches given camel-hump query (e.g.: "HM", "HaMa" for HashMap).
+ */
+public List <String> getCamelHumpNames(String aQuery)  { return getClassNames(getCamelHumpIds(aQuery)); }
+
+/**
+ * Returns class ids whose simple name matches given camel-hump query (e.g.: "HM", "HaMa" for HashMap).
+ */
+public int[] getCamelHumpIds(String aQuery)
+{
+    // Get hump initials of query (just return if empty)
+    StringBuilder sb = new StringBuilder(); char qchars[] = aQuery.toCharArray();
+    appendHumps(qchars, 0, qchars.length, sb); if(sb.length()==0) return new int[0];
+    String qhumps = sb.toString();
+
+    // Get range of classes with humps that start with query humps and filter for full camel-hump match
+    int lo = lowerBoundHumps(qhumps), hi = upperBoundHumps(qhumps), ids[] = new int[hi-lo], count = 0;
+    for(int i=lo; i<hi; i++) { int id = _byHumps[i];
+        if(isCamelHumpMatch(qchars, id))
+            ids[count++] = id; }
+    return Arrays.copyOf(ids, count);
+}
+
+/**
+ * Returns class names whose simple name contains given chars in order (case-insensitive) and starts with first.
+ */
+public List <String> getSubsequenceNames(String aQuery)  { return getClassNames(getSubsequenceIds(aQuery)); }
+
+/**
+ * Returns class ids whose simple name contains given chars in order (case-insensitive) and starts with first.
+ */
+public int[] getSubsequenceIds(String aQuery)
+{
+    // Get range of classes with first char (just return if empty query)
+    if(aQuery.length()==0) return new int[0];
+    int lo = lowerBoundName(aQuery.substring(0,1)), hi = upperBoundName(aQuery.substring(0,1));
+
+    // Iterate over range and add ids that contain query as subsequence
+    int ids[] = new int[hi-lo], count = 0;
+    for(int i=lo; i<hi; i++) { int id = _byName[i];
+        if(isSubsequence(aQuery, id))
+            ids[count++] = id; }
+    return Arrays.copyOf(ids, count);
+}
+
+/**
+ * Returns class names that match given query by prefix or camel-hump (prefix matches first, without duplicates).
+ */
+public List <String> getMatchingNames(String aQuery)
+{
+    int pids[] = getPrefixIds(aQuery), hids[] = getCamelHumpIds(aQuery);
+    List <String> names = new ArrayList(pids.length + hids.length);
+    for(int id : pids) names.add(getClassName(id));
+    if(hids.length==0) return names;
+
+    // Add hump matches that weren't prefix matches
+    BitSet added = new BitSet(getClassCount()); for(int id : pids) added.set(id);
+    for(int id : hids) if(!added.get(id)) names.add(getClassName(id));
+    return names;
+}
+
+/**
+ * Returns class names for ids.
+ */
+private List <String> getClassNames(int theIds[])
+{
+    List <String> names = new ArrayList(theIds.length);
+    for(int id : theIds) names.add(getClassName(id));
+    return names;
+}
+
+/**
+ * Returns whether query chars match camel humps of class simple name (each query hump is prefix of a name hump).
+ */
+private boolean isCamelHumpMatch(char theQChars[], int anId)
+{
+    return isCamelHumpMatch(theQChars, _pool, _snStarts[anId], _starts[anId+1]);
+}
+
+/**
+ * Returns whether query matches camel humps of given name (e.g.: "HM", "HaMa" for HashMap).
+ */
+public static boolean isCamelHumpMatch(String aQuery, String aName)
+{
+    return aQuery.length()>0 && isCamelHumpMatch(aQuery.toCharArray(), aName.toCharArray(), 0, aName.length());
+}
+
+/**
+ * Returns whether query chars match camel humps of name chars in given range.
+ */
+private static boolean isCamelHumpMatch(char theQChars[], char theChars[], int aStart, int anEnd)
+{
+    int ni = aStart, nend = anEnd, qi = 0, qlen = theQChars.length;
+    while(qi<qlen) {
+
+        // Get query hump start char and advance name to matching hump start
+        char qc = theQChars[qi];
+        if(qi>0) { while(ni<nend && !(isHumpStart(theChars, ni) && theChars[ni]==qc)) ni++; }
+        if(ni>=nend || Character.toUpperCase(theChars[ni])!=Character.toUpperCase(qc)) return false;
+        qi++; ni++;
+
+        // Match remaining lower case query chars within this name hump
+        while(qi<qlen && !Character.isUpperCase(theQChars[qi])) {
+            if(ni>=nend || Character.toLowerCase(theChars[ni])!=Character.toLowerCase(theQChars[qi])) return false;
+            qi++; ni++;
+        }
+    }
+    return true;
+}
+
+/**
+ * Returns whether query is a case-insensitive subsequence of class simple name, with matching first char.
+ */
+private boolean isSubsequence(String aQuery, int anId)
+{
+    int ni = _snStarts[anId], nend = _starts[anId+1];
+    for(int qi=0, qlen=aQuery.length(); qi<qlen; qi++) { char qc = Character.toLowerCase(aQuery.charAt(qi));
+        while(ni<nend && Character.toLowerCase(_pool[ni])!=qc) ni++;
+        if(ni>=nend) return false; ni++;
+    }
+    return true;
+}
+
+/**
+ * Returns the index in ByName of first class with simple name not less than prefix.
+ */
+private int lowerBoundName(String aPrefix)
+{
+    int lo = 0, hi = _byName.length;
+    while(lo<hi) { int mid = (lo + hi) >>> 1;
+        if(comparePrefix(_pool, _snStarts[_byName[mid]], _starts[_byName[mid]+1], aPrefix, true)<0) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * Returns the index in ByName after last class with simple name that starts with prefix.
+ */
+private int upperBoundName(String aPrefix)
+{
+    int lo = 0, hi = _byName.length;
+    while(lo<hi) { int mid = (lo + hi) >>> 1;
+        if(comparePrefix(_pool, _snStarts[_byName[mid]], _starts[_byName[mid]+1], aPrefix, true)<=0) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * Returns the index in ByHumps of first class with humps not less than prefix.
+ */
+private int lowerBoundHumps(String aPrefix)
+{
+    int lo = 0, hi = _byHumps.length;
+    while(lo<hi) { int mid = (lo + hi) >>> 1, id = _byHumps[mid];
+        if(comparePrefix(_humps, _humpStarts[id], _humpStarts[id+1], aPrefix, false)<0) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * Returns the index in ByHumps after last class with humps that start with prefix.
+ */
+private int upperBoundHumps(String aPrefix)
+{
+    int lo = 0, hi = _byHumps.length;
+    while(lo<hi) { int mid = (lo + hi) >>> 1, id = _byHumps[mid];
+        if(comparePrefix(_humps, _humpStarts[id], _humpStarts[id+1], aPrefix, false)<=0) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * Compares given chars to prefix, returning zero if chars start with prefix.
+ */
+private static int comparePrefix(char theChars[], int aStart, int anEnd, String aPrefix, boolean ignoreCase)
+{
+    for(int i=0, iMax=aPrefix.length(); i<iMax; i++) {
+        if(aStart+i>=anEnd) return -1;
+        char c1 = theChars[aStart+i], c2 = aPrefix.charAt(i);
+        if(ignoreCase) { c1 = Character.toLowerCase(c1); c2 = Character.toLowerCase(c2); }
+        if(c1!=c2) return c1<c2? -1 : 1;
+    }
+    return 0;
+}
+
+/**
+ * Compares two class ids by simple name (case-insensitive), then by full name.
+ */
+private int compareNames(int anId1, int anId2)
+{
+    int s1 = _snStarts[anId1], e1 = _starts[anId1+1], s2 = _snStarts[anId2], e2 = _starts[anId2+1];
+    int c = compareChars(_pool, s1, e1, _pool, s2, e2, true); if(c!=0) return c;
+    return compareChars(_pool, _starts[anId1], e1, _pool, _starts[anId2], e2, false);
+}
+
+/**
+ * Compares two class ids by humps.
+ */
+private int compareHumps(int anId1, int anId2)
+{
+    return compareChars(_humps, _humpStarts[anId1], _humpStarts[anId1+1], _humps, _humpStarts[anId2],
+        _humpStarts[anId2+1], false);
+}
+
+/**
+ * Compares two char ranges.
+ */
+private static int compareChars(char c1[], int s1, int e1, char c2[], int s2, int e2, boolean ignoreCase)
+{
+    for(int i=s1, j=s2; i<e1 && j<e2; i++, j++) { char a = c1[i], b = c2[j];
+        if(ignoreCase) { a = Character.toLowerCase(a); b = Character.toLowerCase(b); }
+        if(a!=b) return a<b? -1 : 1;
+    }
+    return (e1 - s1) - (e2 - s2);
+}
+
+/**
+ * Appends the humps (upper case first char of each word) of given chars.
+ */
+private static void appendHumps(char theChars[], int aStart, int anEnd, StringBuilder aSB)
+{
+    for(int i=aStart; i<anEnd; i++)
+        if(i==aStart || isHumpStart(theChars, i))
+            aSB.append(Character.toUpperCase(theChars[i]));
+}
+
+/**
+ * Returns whether char at index starts a hump (upper case char or digit after lower case char).
+ */
+private static boolean isHumpStart(char theChars[], int anIndex)
+{
+    char c = theChars[anIndex];
+    return Character.isUpperCase(c) || Character.isDigit(c) && anIndex>0 && !Character.isDigit(theChars[anIndex-1]);
+}
+
+}
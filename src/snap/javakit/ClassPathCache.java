@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+import snap.web.*;
+
+/**
+ * A class to provide class path indexes (packages, classes, class access flags and public constructor descriptors)
+ * for class path sites.
+ *
+ * Jar indexes are persisted to a cache directory, keyed by jar path, size and modified time, so that a jar is only
+ * walked once. Directory sites (like project build dirs) are walked every time.
+ */
+public class ClassPathCache {
+
+    // The directory to store index files
+    static File                     _cacheDir;
+
+    // The map of loaded jar indexes by jar path (index is replaced when jar size or modified time changes)
+    static Map <String,JarIndex>    _indexes = new HashMap();
+
+    // Constants for index file format
+    static final int INDEX_MAGIC = 0x534E4349, INDEX_VERSION = 3;
+    
+    // Shared empty constructor descriptors array
+    static final String NO_CONSTRS[] = new String[0];
+
+/**
+ * Returns the directory to store index files.
+ */
+public static File getCacheDir()
+{
+    if(_cacheDir!=null) return _cacheDir;
+    return _cacheDir = new File(System.getProperty("user.home"), ".SnapCode" + File.separator + "ClassPathCache");
+}
+
+/**
+ * Sets the directory to store index files.
+ */
+public static void setCacheDir(File aDir)  { _cacheDir = aDir; }
+
+/**
+ * Returns the index for given class path site.
+ */
+public static synchronized JarIndex getIndex(WebSite aSite)
+{
+    // If site isn't a jar file, just create index from site files
+    File jfile = getJarFile(aSite);
+    if(jfile==null)
+        return createSiteIndex(aSite);
+
+    // If index already loaded for jar and jar hasn't changed, just return
+    String path = jfile.getAbsolutePath(); long size = jfile.length(), mtime = jfile.lastModified();
+    JarIndex index = _indexes.get(path); if(index!=null && index._size==size && index._mtime==mtime) return index;
+
+    // Read index from cache file - if missing or stale, create index and write to cache file
+    File cfile = getCacheFile(jfile);
+    index = readIndex(cfile, jfile);
+    if(index==null) {
+        index = createJarIndex(jfile); if(index==null) return createSiteIndex(aSite);
+        writeIndex(index, cfile, jfile);
+    }
+
+    // Add to loaded indexes (replacing index for old version of jar) and return
+    index._size = size; index._mtime = mtime;
+    _indexes.put(path, index);
+    return index;
+}
+
+/**
+ * Returns the jar file for given site, if site is local jar or zip file.
+ */
+private static File getJarFile(WebSite aSite)
+{
+    File file; try { file = aSite.getURL().getJavaFile(); }
+    catch(Exception e) { return null; }
+    if(file==null || !file.isFile()) return null;
+    String name = file.getName().toLowerCase();
+    return name.endsWith(".jar") || name.endsWith(".zip")? file : null;
+}
+
+/**
+ * Returns the cache file for given jar file.
+ */
+private static File getCacheFile(File aJarFile)
+{
+    String path = aJarFile.getAbsolutePath();
+    String name = aJarFile.getName() + '-' + Integer.toHexString(path.hashCode()) + ".idx";
+    return new File(getCacheDir(), name);
+}
+
+/**
+ * Creates an index by reading jar file entries directly.
+ */
+private static JarIndex createJarIndex(File aJarFile)
+{
+    JarIndex index = new JarIndex(); index._jar = true;
+    try(ZipFile zfile = new ZipFile(aJarFile)) {
+        for(Enumeration <? extends ZipEntry> en=zfile.entries(); en.hasMoreElements();) { ZipEntry entry = en.nextElement();
+            String path = '/' + entry.getName(); if(entry.isDirectory()) continue;
+            if(!path.endsWith(".class") || !ClassPathInfo.isInterestingPath(path)) continue;
+            int flags = -1; List <String> constrs = new ArrayList();
+            try(DataInputStream dis = new DataInputStream(new BufferedInputStream(zfile.getInputStream(entry)))) {
+                flags = ClassFileData.readAccessFlags(dis, constrs); }
+            catch(Exception e) { constrs = null; }
+            index.addClass(path, flags, constrs);
+        }
+    }
+    catch(IOException e) { System.err.println("ClassPathCache.createJarIndex: " + e); return null; }
+    return index;
+}
+
+/**
+ * Creates an index by walking site files.
+ */
+private static JarIndex createSiteIndex(WebSite aSite)
+{
+    JarIndex index = new JarIndex();
+    addFiles(aSite.getRootDir(), index);
+    return index;
+}
+
+/**
+ * Adds class files in given dir (and subdirs) to given index.
+ */
+private static void addFiles(WebFile aDir, JarIndex anIndex)
+{
+    for(WebFile file : aDir.getFiles()) {
+        if(file.isDir()) {
+            if(file.getName().indexOf('.')>0) continue;
+            addFiles(file, anIndex);
+        }
+        else {
+            String path = file.getPath();
+            if(!path.endsWith(".class") || !ClassPathInfo.isInterestingPath(path)) continue;
+            int flags = -1; List <String> constrs = null; byte bytes[] = file.getBytes();
+            if(bytes!=null) try { constrs = new ArrayList();
+                flags = ClassFileData.readAccessFlags(new DataInputStream(new ByteArrayInputStream(bytes)), constrs); }
+            catch(Exception e) { constrs = null; }
+            anIndex.addClass(path, flags, constrs);
+        }
+    }
+}
+
+/**
+ * Reads index from given cache file, if it exists and matches given jar file.
+ */
+private static JarIndex readIndex(File aFile, File aJarFile)
+{
+    // If no cache file, just return
+    if(!aFile.exists()) return null;
+
+    // Read header - if wrong version or jar has changed, return null
+    try(DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile), 65536))) {
+        if(dis.readInt()!=INDEX_MAGIC || dis.readInt()!=INDEX_VERSION) return null;
+        if(!getString(dis).equals(aJarFile.getAbsolutePath())) return null;
+        if(dis.readLong()!=aJarFile.length() || dis.readLong()!=aJarFile.lastModified()) return null;
+
+        // Read packages and classes
+        JarIndex index = new JarIndex(); index._jar = true;
+        int pcount = dis.readInt();
+        for(int i=0; i<pcount; i++) index._pkgs.add(getString(dis));
+        int ccount = dis.readInt(); index._cnames = new ArrayList(ccount); index._flags = new int[ccount];
+        index._constrs = new String[ccount][];
+        for(int i=0; i<ccount; i++) { index._cnames.add(getString(dis)); index._flags[i] = dis.readInt();
+            int count = dis.readInt(); if(count<0) continue;
+            String constrs[] = index._constrs[i] = count>0? new String[count] : NO_CONSTRS;
+            for(int j=0; j<count; j++) constrs[j] = getString(dis);
+        }
+        index._ccount = ccount;
+        return index;
+    }
+
+    // If anything goes wrong, complain and return null so index is rebuilt
+    catch(Exception e) { System.err.println("ClassPathCache.readIndex: " + e + " for " + aFile); return null; }
+}
+
+/**
+ * Writes given index to given cache file.
+ */
+private static void writeIndex(JarIndex anIndex, File aFile, File aJarFile)
+{
+    // Write to temp file and rename, so readers never see partial file
+    File tfile = new File(aFile.getPath() + ".tmp"); aFile.getParentFile().mkdirs();
+    try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tfile)))) {
+        dos.writeInt(INDEX_MAGIC); dos.writeInt(INDEX_VERSION);
+        putString(dos, aJarFile.getAbsolutePath()); dos.writeLong(aJarFile.length());
+        dos.writeLong(aJarFile.lastModified());
+        dos.writeInt(anIndex._pkgs.size()); for(String pkg : anIndex._pkgs) putString(dos, pkg);
+        dos.writeInt(anIndex._ccount);
+        for(int i=0; i<anIndex._ccount; i++) { putString(dos, anIndex._cnames.get(i)); dos.writeInt(anIndex._flags[i]);
+            String constrs[] = anIndex._constrs[i]; dos.writeInt(constrs!=null? constrs.length : -1);
+            if(constrs!=null) for(String constr : constrs) putString(dos, constr);
+        }
+    }
+    catch(IOException e) { System.err.println("ClassPathCache.writeIndex: " + e + " for " + aFile); tfile.delete(); return; }
+
+    // Replace cache file with temp file
+    try { Files.move(tfile.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING); }
+    catch(IOException e) { System.err.println("ClassPathCache.writeIndex: " + e + " for " + aFile); tfile.delete(); }
+}
+
+/** Reads a string (int length + UTF-8 bytes) from stream. */
+private static String getString(DataInputStream aDIS) throws IOException
+{
+    byte bytes[] = new byte[aDIS.readInt()]; aDIS.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+}
+
+/** Writes a string (int length + UTF-8 bytes) to stream. */
+private static void putString(DataOutputStream aDOS, String aStr) throws IOException
+{
+    byte bytes[] = aStr.getBytes(StandardCharsets.UTF_8);
+    aDOS.writeInt(bytes.length); aDOS.write(bytes);
+}
+
+/**
+ * A class to hold the packages, class names, class access flags and constructor descriptors of a class path site.
+ */
+public static class JarIndex {
+
+    // The package names
+    Set <String>   _pkgs = new LinkedHashSet();
+
+    // The class names and access flags (-1 if unknown)
+    List <String>  _cnames = new ArrayList();
+    int            _flags[] = new int[64], _ccount;
+    
+    // The public constructor descriptors for each class (null if unknown)
+    String         _constrs[][] = new String[64][];
+    
+    // A map of class name to class index (created lazily)
+    Map <String,Integer>  _cindexes;
+    
+    // Whether index is for a jar (otherwise it is a snapshot of a directory that can change)
+    boolean        _jar;
+    
+    // The jar size and modified time when index was loaded (to replace index if jar changes)
+    long           _size, _mtime;
+
+    /** Returns whether index is for a jar (otherwise it is a snapshot of a directory that can change). */
+    public boolean isJar()  { return _jar; }
+
+    /** Returns the package names (all packages that contain classes or packages). */
+    public Set <String> getPackageNames()  { return _pkgs; }
+
+    /** Returns the class names. */
+    public List <String> getClassNames()  { return _cnames; }
+
+    /** Returns the class access flags for class at given index (-1 if unknown). */
+    public int getClassFlags(int anIndex)  { return _flags[anIndex]; }
+
+    /** Returns the public constructor descriptors for class at given index (null if unknown). */
+    public String[] getClassConstructors(int anIndex)  { return _constrs[anIndex]; }
+
+    /** Returns the index of given class name (or -1 if not in index). */
+    public synchronized int getClassIndex(String aName)
+    {
+        if(_cindexes==null) { _cindexes = new HashMap(_ccount*2);
+            for(int i=0; i<_ccount; i++) _cindexes.put(_cnames.get(i), i); }
+        Integer ind = _cindexes.get(aName);
+        return ind!=null? ind : -1;
+    }
+
+    /** Adds a class for given class file path. */
+    void addClass(String aPath, int theFlags, List <String> theConstrs)
+    {
+        // Add class name, flags and constructors
+        String cname = aPath.substring(1, aPath.length()-6).replace('/', '.');
+        if(_ccount==_flags.length) { _flags = Arrays.copyOf(_flags, _ccount*2); _constrs = Arrays.copyOf(_constrs, _ccount*2); }
+        _cnames.add(cname); _flags[_ccount] = theFlags;
+        _constrs[_ccount++] = theConstrs==null? null : theConstrs.size()>0? theConstrs.toArray(new String[0]) : NO_CONSTRS;
+
+        // Add package and parent packages
+        for(int ind=cname.lastIndexOf('.'); ind>0; ind=cname.lastIndexOf('.', ind-1)) {
+            String pname = cname.substring(0, ind);
+            if(!_pkgs.add(pname)) break;
+        }
+    }
+}
+
+}
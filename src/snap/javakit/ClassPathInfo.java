@@ -15,8 +15,21 @@ public class ClassPathInfo {
     // The shared list of class path sites
     List <WebSite>      _sites = new ArrayList();
     
-    // The list of all package files and class files
-    List <WebFile>      _apkgs, _acls;
+    // The list of all top level package names and class names (from ClassPathCache site indexes)
+    List <String>       _apkgNames, _aclsNames;
+    
+    // The set of all package names and class names in class path jars (for fast class existence checks)
+    Set <String>        _jarPkgNames, _jarClsNames;
+    
+    // The class path sites that aren't jars (build dirs, which can change)
+    List <WebSite>      _dirSites;
+    
+    // The class path site indexes, in class path order (for class access flags and constructor descriptors) - set last
+    // by createAllNames, so other names are set when it is (completion reads names on background thread)
+    volatile List <ClassPathCache.JarIndex>  _indexes;
+    
+    // The index of all class names for fast prefix/camel-hump lookup
+    ClassNameIndex      _cnIndex;
     
     // A listener for ClassPath PropChange
     PropChangeListener  _classPathPCL = pc -> classPathDidPropChange(pc);
@@ -82,8 +95,11 @@ public List <String> getPackageChildrenNames(String aPkgName, String aPrefix)
  */
 public List <String> getAllPackageNames(String aPrefix)
 {
-    List <WebFile> pfiles = getChildPackages(getAllPackages(), aPrefix);
-    return getPackageNames(pfiles);
+    List <String> pnames = new ArrayList();
+    for(String pname : getAllPackageNames())
+        if(StringUtils.startsWithIC(pname, aPrefix))
+            pnames.add(pname);
+    return pnames;
 }
 
 /**
@@ -91,8 +107,98 @@ public List <String> getAllPackageNames(String aPrefix)
  */
 public List <String> getAllClassNames(String aPrefix)
 {
-    List <WebFile> cfiles = getClassFiles(getAllClasses(), aPrefix);
-    return getClassNames(cfiles);
+    return getClassNameIndex().getMatchingNames(aPrefix);
+}
+
+/**
+ * Returns the index of all class names.
+ */
+public ClassNameIndex getClassNameIndex()
+{
+    if(_cnIndex!=null) return _cnIndex;
+    return _cnIndex = new ClassNameIndex(getAllClassNames());
+}
+
+/**
+ * Returns the list of all top level package names.
+ */
+public List <String> getAllPackageNames()  { if(_indexes==null) createAllNames(); return _apkgNames; }
+
+/**
+ * Returns the list of all class names.
+ */
+public List <String> getAllClassNames()  { if(_indexes==null) createAllNames(); return _aclsNames; }
+
+/**
+ * Loads all package and class names from class path site indexes (cached per jar by ClassPathCache).
+ */
+protected synchronized void createAllNames()
+{
+    // If already created (by another thread), just return
+    if(_indexes!=null) return;
+    
+    Set <String> pnames = new LinkedHashSet(); List <String> cnames = new ArrayList();
+    Set <String> jpnames = new HashSet(), jcnames = new HashSet(); List <WebSite> dsites = new ArrayList();
+    List <ClassPathCache.JarIndex> indexes = new ArrayList();
+    for(WebSite site : getSites()) {
+        ClassPathCache.JarIndex index = ClassPathCache.getIndex(site); indexes.add(index);
+        for(String pname : index.getPackageNames()) if(pname.indexOf('.')<0) pnames.add(pname);
+        cnames.addAll(index.getClassNames());
+        if(index.isJar()) { jpnames.addAll(index.getPackageNames()); jcnames.addAll(index.getClassNames()); }
+        else dsites.add(site);
+    }
+    _apkgNames = new ArrayList(pnames); _aclsNames = cnames;
+    _jarPkgNames = jpnames; _jarClsNames = jcnames; _dirSites = dsites; _indexes = indexes;
+}
+
+/**
+ * Returns the class file access flags for given class name from class path indexes (-1 if unknown).
+ */
+public int getClassFlags(String aName)
+{
+    if(_indexes==null) createAllNames();
+    for(ClassPathCache.JarIndex index : _indexes) { int ind = index.getClassIndex(aName);
+        if(ind>=0) return index.getClassFlags(ind); }
+    return -1;
+}
+
+/**
+ * Returns the public constructor descriptors for given class name from class path indexes (null if unknown).
+ */
+public String[] getClassConstructors(String aName)
+{
+    if(_indexes==null) createAllNames();
+    for(ClassPathCache.JarIndex index : _indexes) { int ind = index.getClassIndex(aName);
+        if(ind>=0) return index.getClassConstructors(ind); }
+    return null;
+}
+
+/**
+ * Returns whether given class name is certainly not on the class path (false if it is or if index can't tell).
+ * This lets class lookups skip the ClassLoader (and its ClassNotFoundException) for names that can't resolve.
+ */
+public boolean isClassNameMissing(String aName)
+{
+    // If array or no package, index can't tell
+    int ind = aName.lastIndexOf('.'); if(ind<=0 || aName.indexOf('[')>=0) return false;
+    if(_indexes==null) createAllNames();
+    
+    // If name (or name with trailing parts as inner classes) is in jars, return false
+    for(String name=aName; ind>0; ind=name.lastIndexOf('.')) {
+        if(_jarClsNames.contains(name)) return false;
+        name = name.substring(0,ind) + '$' + name.substring(ind+1);
+    }
+    if(_jarClsNames.contains(aName.replace('.', '$'))) return false;
+    
+    // If class file is in directory site, return false
+    String path = '/' + aName.replace('.', '/') + ".class";
+    for(WebSite site : _dirSites)
+        if(site.getFile(path)!=null)
+            return false;
+    
+    // Return true only if index covers package (jars can't have uninteresting or unlisted classes)
+    String pname = aName.substring(0, aName.lastIndexOf('.'));
+    return _jarPkgNames.contains(pname) && isInterestingPath(path);
 }
 
 /**
@@ -173,43 +279,10 @@ public List <WebFile> getChildPackages(List <WebFile> theFiles, String aPrefix)
     return pfiles;
 }
 
-/**
- * Returns the list of all packages.
- */
-public List <WebFile> getAllPackages()  { if(_apkgs==null) createAll(); return _apkgs; }
-
-/**
- * Returns the list of all classes.
- */
-public List <WebFile> getAllClasses()  { if(_acls==null) createAll(); return _acls; }
-
-protected void createAll()
-{
-    _acls = new ArrayList(); _apkgs = new ArrayList();
-    for(WebSite site : getSites()) getAll(site.getRootDir(), _acls, _apkgs);
-}
-
-private void getAll(WebFile aDir, List <WebFile> theClasses, List <WebFile> thePkgs)
-{
-    for(WebFile file : aDir.getFiles()) {
-        if(file.isDir()) {
-            if(file.getName().indexOf('.')>0) continue;
-            if(thePkgs!=null) thePkgs.add(file);
-            getAll(file, theClasses, null); // Send null because we only want top level packages
-        }
-        else {
-            String path = file.getPath();
-            if(!path.endsWith(".class")) continue;
-            if(!isInterestingPath(path)) continue;
-            theClasses.add(file);
-        }
-    }
-}
-
 /**
  * Adds an entry (override to ignore).
  */
-private static boolean isInterestingPath(String aPath)
+static boolean isInterestingPath(String aPath)
 {
     if(aPath.startsWith("/sun")) return false;
     if(aPath.startsWith("/apple")) return false;
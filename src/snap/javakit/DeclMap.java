@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A compact map of ids to JavaDecls for JavaDeclOwner.
+ *
+ * Decls are stored in a single open addressing (linear probing) table that uses each decl id as its key, so there
+ * are no entry or key objects per decl. The few entries whose key isn't the decl id (like a dotted inner class name)
+ * go in a small alias map. Decls are never removed.
+ *
+ * Reads don't lock. Decls added by the writer (the thread that called beginWrite()) are pending until the outermost
+ * endWrite(), so other threads never see decls that are still being created.
+ */
+class DeclMap {
+
+    // The table of decls (length is power of two)
+    volatile AtomicReferenceArray <JavaDecl>  _table = new AtomicReferenceArray(1024);
+
+    // The number of decls in table
+    int                                       _size;
+
+    // A map of other names to decls (for names that aren't decl id)
+    Map <String,JavaDecl>                     _aliases = new ConcurrentHashMap();
+
+    // The decls added in current write (by id or alias), the writer thread and its write depth
+    Map <String,JavaDecl>                     _pending = new HashMap();
+    volatile Thread                           _writer;
+    int                                       _writeDepth;
+
+/**
+ * Returns the decl for given id or alias.
+ */
+public JavaDecl get(String anId)
+{
+    // If writer thread, check pending decls first (they replace published decls with same id)
+    if(_writer==Thread.currentThread() && _pending.size()>0) {
+        JavaDecl jd = _pending.get(anId); if(jd!=null) return jd; }
+
+    // Probe table
+    AtomicReferenceArray <JavaDecl> table = _table; int mask = table.length() - 1;
+    for(int i=hash(anId) & mask; ; i=(i+1) & mask) { JavaDecl jd = table.get(i);
+        if(jd==null) break;
+        if(jd._id==anId || jd._id.equals(anId)) return jd;
+    }
+
+    // Check aliases
+    return _aliases.size()>0? _aliases.get(anId) : null;
+}
+
+/**
+ * Adds a decl for given id (or alias, if not decl id). Replaces decl with same id.
+ */
+public void put(String anId, JavaDecl aDecl)
+{
+    // If writing, add to pending (published in endWrite)
+    if(_writer==Thread.currentThread()) { _pending.put(anId, aDecl); return; }
+
+    // If key isn't decl id, add to aliases, otherwise add to table
+    if(!anId.equals(aDecl._id)) _aliases.put(anId, aDecl);
+    else putImpl(aDecl);
+}
+
+/**
+ * Starts a write by current thread (caller must hold owner lock). Writes can nest.
+ */
+void beginWrite()  { _writer = Thread.currentThread(); _writeDepth++; }
+
+/**
+ * Ends a write by current thread: If outermost, publishes pending decls.
+ */
+void endWrite()
+{
+    if(--_writeDepth>0) return;
+    for(Map.Entry <String,JavaDecl> entry : _pending.entrySet()) { String id = entry.getKey(); JavaDecl jd = entry.getValue();
+        if(!id.equals(jd._id)) _aliases.put(id, jd);
+        else putImpl(jd);
+    }
+    _pending.clear(); _writer = null;
+}
+
+/**
+ * Adds decl to table.
+ */
+private void putImpl(JavaDecl aDecl)
+{
+    // If table would be more than half full, grow
+    if((_size+1)*2>_table.length())
+        grow();
+
+    // Probe table for id or empty slot and set
+    AtomicReferenceArray <JavaDecl> table = _table; int mask = table.length() - 1; String id = aDecl._id;
+    for(int i=hash(id) & mask; ; i=(i+1) & mask) { JavaDecl jd = table.get(i);
+        if(jd==null) { table.set(i, aDecl); _size++; return; }
+        if(jd._id.equals(id)) { table.set(i, aDecl); return; }
+    }
+}
+
+/**
+ * Returns the number of decls (and aliases).
+ */
+public int size()  { return _size + _aliases.size() + _pending.size(); }
+
+/**
+ * Returns the table capacity.
+ */
+public int getCapacity()  { return _table.length(); }
+
+/**
+ * Doubles the table size and rehashes decls (new table is published when full, so readers see old or new table).
+ */
+private void grow()
+{
+    AtomicReferenceArray <JavaDecl> old = _table;
+    AtomicReferenceArray <JavaDecl> table = new AtomicReferenceArray(old.length()*2); int mask = table.length() - 1;
+    for(int j=0, jMax=old.length(); j<jMax; j++) { JavaDecl jd = old.get(j); if(jd==null) continue;
+        int i = hash(jd._id) & mask; while(table.get(i)!=null) i = (i+1) & mask;
+        table.set(i, jd);
+    }
+    _table = table;
+}
+
+/**
+ * Returns the spread hash code for id (String caches hash code).
+ */
+private static int hash(String anId)  { int h = anId.hashCode(); return h ^ (h>>>16); }
+
+}
@@ -167,6 +167,16 @@ public void setMemberDecls(List <JMemberDecl> theMDs)
     for(JMemberDecl md : _members) addChild(md, -1);
 }
 
+/**
+ * Replaces a member declaration (for incremental reparse).
+ */
+public void replaceMemberDecl(JMemberDecl oDecl, JMemberDecl nDecl)
+{
+    int index = ListUtils.indexOfId(_members, oDecl); if(index<0) return;
+    _members.set(index, nDecl); replaceChild(oDecl, nDecl);
+    _fieldDecls = null; _constrDecls = null; _methodDecls = null; _classDecls = null;
+}
+
 /**
  * Returns the class field declarations.
  */
@@ -78,7 +78,7 @@ private static JExpr setExpr(JExpr e1, JExpr e2)
 {
     // If given expression chain, pick off last expression, set it instead and return chain
     if(e1 instanceof JExprChain) { JExprChain ec = (JExprChain)e1; int ecnt = ec.getExprCount();
-         JExpr e = (JExpr)ec._children.remove(ecnt-1);
+         JExpr e = (JExpr)ec._children.remove(ecnt-1); ec._childOrder = 0;
          setExpr(e, e2); ec.addExpr(e2); return e1; }
         
     // Set Expr in MethodCall or MethodRef and return 
@@ -3,7 +3,9 @@
  */
 package snap.javakit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import snap.project.*;
+import snap.util.ListUtils;
 import snap.web.WebFile;
 
 /**
@@ -29,8 +31,19 @@ public class JFile extends JNode {
     // The parse exception, if one was hit
     Exception                _exception;
     
-    // A set to hold unused imports
-    Set <JImportDecl>        _unusedImports;
+    // A cache of names to resolved import info (cleared when package/imports or project ClassLoader change) - it is
+    // concurrent since background highlight, row header and parse threads resolve names too
+    Map <String,ImportEntry> _importCache = new ConcurrentHashMap();
+    
+    // The ClassLoader that ImportCache entries were resolved with
+    ClassLoader              _importCacheLdr;
+    
+    // The identifier and type nodes by simple name (for finding decl occurrences), created lazily
+    Map <String,Set<JNode>>  _idNodes;
+    
+    // A marker for cached names that don't resolve
+    static final JavaDecl    NOT_FOUND = new JavaDecl(null, null, "NOT_FOUND");
+    static final JImportDecl NOT_FOUND_IMPORT = new JImportDecl();
 
 /**
  * Returns the WebFile for this JFile.
@@ -55,7 +68,7 @@ public JPackageDecl getPackageDecl()  { return _packageDecl; }
 /**
  * Sets the package declaration.
  */
-public void setPackageDecl(JPackageDecl aPD)  { replaceChild(_packageDecl, _packageDecl = aPD); }
+public void setPackageDecl(JPackageDecl aPD)  { replaceChild(_packageDecl, _packageDecl = aPD); clearImportCache(); }
 
 /**
  * Returns the package name.
@@ -70,7 +83,7 @@ public List <JImportDecl> getImportDecls()  { return _importDecls; }
 /**
  * Adds an import declaration.
  */
-public void addImportDecl(JImportDecl anID)  { _importDecls.add(anID); addChild(anID, -1); }
+public void addImportDecl(JImportDecl anID)  { _importDecls.add(anID); addChild(anID, -1); clearImportCache(); }
 
 /**
  * Returns the JClassDecl for the file.
@@ -87,6 +100,104 @@ public List <JClassDecl> getClassDecls()  { return _classDecls; }
  */
 public void addClassDecl(JClassDecl aCD)  { _classDecls.add(aCD); addChild(aCD, -1); }
 
+/**
+ * Replaces a class declaration (for incremental reparse).
+ */
+public void replaceClassDecl(JClassDecl oCD, JClassDecl nCD)
+{
+    int index = ListUtils.indexOfId(_classDecls, oCD); if(index<0) return;
+    _classDecls.set(index, nCD); replaceChild(oCD, nCD);
+}
+
+/**
+ * Replaces the package and import declarations with those of given file (for incremental reparse).
+ */
+public void replaceImportDecls(JFile aJFile)
+{
+    // Remove old package and imports
+    removeChild(_packageDecl); for(JImportDecl imp : _importDecls) removeChild(imp);
+    if(_packageDecl!=null) removeIdNodes(_packageDecl); for(JImportDecl imp : _importDecls) removeIdNodes(imp);
+    
+    // Add new package and imports at front and reset start token
+    _packageDecl = aJFile._packageDecl; _importDecls = aJFile._importDecls; int index = 0;
+    if(_packageDecl!=null) addChild(_packageDecl, index++);
+    for(JImportDecl imp : _importDecls) addChild(imp, index++);
+    if(getChildCount()>0) setStartToken(getChild(0).getStartToken());
+    if(_packageDecl!=null) addIdNodes(_packageDecl); for(JImportDecl imp : _importDecls) addIdNodes(imp);
+    clearImportCache();
+}
+
+/**
+ * Returns the identifier and type nodes in this file that match given decl. Candidates come from an index of nodes by
+ * simple name, so only nodes with the decl name are resolved.
+ */
+public List <JNode> getMatches(JavaDecl aDecl)
+{
+    // Get candidate nodes for decl simple name (for ParamType, use class)
+    List <JNode> matches = new ArrayList();
+    JavaDecl kdecl = aDecl.isParamType()? aDecl.getClassType() : aDecl; if(kdecl==null || kdecl.getName()==null) return matches;
+    Set <JNode> nodes = getIdNodes().get(JavaDeclOwner.getSimpleName(kdecl.getName())); if(nodes==null) return matches;
+    
+    // Add nodes that resolve to matching decl (types only match type decls) and sort by location
+    for(JNode node : nodes) {
+        if(node instanceof JType && !aDecl.isType()) continue;
+        JavaDecl decl = node.getDecl();
+        if(decl!=null && aDecl.matches(decl))
+            matches.add(node);
+    }
+    matches.sort((n1,n2) -> n1.getStart() - n2.getStart());
+    return matches;
+}
+
+/**
+ * Returns the identifier and type nodes by simple name.
+ */
+protected Map <String,Set<JNode>> getIdNodes()
+{
+    if(_idNodes!=null) return _idNodes;
+    _idNodes = new HashMap(); addIdNodes(this);
+    return _idNodes;
+}
+
+/**
+ * Adds the identifier and type nodes in given node to name index, if created (for incremental reparse).
+ */
+public void addIdNodes(JNode aNode)
+{
+    if(_idNodes==null) return;
+    String name = getIdName(aNode);
+    if(name!=null) { Set <JNode> nodes = _idNodes.get(name);
+        if(nodes==null) _idNodes.put(name, nodes = new HashSet());
+        nodes.add(aNode);
+    }
+    for(JNode child : aNode.getChildren())
+        addIdNodes(child);
+}
+
+/**
+ * Removes the identifier and type nodes in given node from name index, if created (for incremental reparse).
+ */
+public void removeIdNodes(JNode aNode)
+{
+    if(_idNodes==null) return;
+    String name = getIdName(aNode);
+    if(name!=null) { Set <JNode> nodes = _idNodes.get(name);
+        if(nodes!=null) { nodes.remove(aNode); if(nodes.size()==0) _idNodes.remove(name); }
+    }
+    for(JNode child : aNode.getChildren())
+        removeIdNodes(child);
+}
+
+/**
+ * Returns the name index key for given node (simple name for type, name for identifier, otherwise null).
+ */
+private static String getIdName(JNode aNode)
+{
+    if(aNode instanceof JType) return ((JType)aNode).getSimpleName();
+    if(aNode instanceof JExprId) return aNode.getName();
+    return null;
+}
+
 /**
  * Override to return this file node.
  */
@@ -107,26 +218,40 @@ protected JavaDecl getDeclImpl()  { JClassDecl cd = getClassDecl(); return cd!=n
  */
 protected JavaDecl getDeclImpl(JNode aNode)
 {
-    // Get node info
-    String name = aNode.getName();
+    // Get node info (just return if no name)
+    String name = aNode.getName(); if(name==null) return super.getDeclImpl(aNode);
     
+    // Get cached decl for name (resolve and cache if not yet set)
+    ImportEntry entry = getImportEntry(name);
+    if(entry._decl==null) { JavaDecl decl = getDeclImpl(name); entry._decl = decl!=null? decl : NOT_FOUND; }
+    if(entry._decl!=NOT_FOUND)
+        return entry._decl;
+
+    // Do normal version
+    return super.getDeclImpl(aNode);
+}
+
+/**
+ * Returns the decl for a name from package name, import class name or static import class member.
+ */
+private JavaDecl getDeclImpl(String aName)
+{
     // If it's in JPackageDecl, it's a Package
-    if(isKnownPackageName(name))
-        return getJavaDecl(name);
+    if(isKnownPackageName(aName))
+        return getJavaDecl(aName);
     
     // See if it's a known class name using imports
-    String cname = getImportClassName(name);
-    JavaDecl cd = cname!=null? getJavaDecl(cname) : null;
+    JavaDecl cd = getImportClassDecl(aName);
     if(cd!=null)
         return cd;
         
     // See if it's a known static import class member
-    JavaDecl field = getImportClassMember(name, null);
+    JavaDecl field = getImportClassMember(aName, null);
     if(field!=null)
         return field;
 
-    // Do normal version
-    return super.getDeclImpl(aNode);
+    // Return null since not found
+    return null;
 }
 
 /**
@@ -142,6 +267,16 @@ public JavaDecl getJavaDecl(Object anObj)
  * Returns an import that can be used to resolve the given name.
  */
 public JImportDecl getImport(String aName)
+{
+    ImportEntry entry = getImportEntry(aName);
+    if(entry._imp==null) { JImportDecl imp = getImportImpl(aName); entry._imp = imp!=null? imp : NOT_FOUND_IMPORT; }
+    return entry._imp!=NOT_FOUND_IMPORT? entry._imp : null;
+}
+
+/**
+ * Returns an import that can be used to resolve the given name.
+ */
+private JImportDecl getImportImpl(String aName)
 {
     // Handle fully specified name
     if(isKnownClassName(aName)) return null;
@@ -169,9 +304,8 @@ public JImportDecl getImport(String aName)
                 match = imp; break; }}
     }
     
-    // Remove match from UnusedImports and return
-    if(match!=null) {
-        if(match.isInclusive()) match.addFoundClassName(aName); match._used = true; }
+    // Add name to found class names of inclusive match and return
+    if(match!=null && match.isInclusive()) match.addFoundClassName(aName);
     return match;
 }
 
@@ -179,6 +313,36 @@ public JImportDecl getImport(String aName)
  * Returns a Class name for given name referenced in file.
  */
 public String getImportClassName(String aName)
+{
+    ImportEntry entry = getImportEntry(aName); getImportClassDecl(entry, aName);
+    return entry._cname;
+}
+
+/**
+ * Returns a Class decl for given name referenced in file.
+ */
+public JavaDecl getImportClassDecl(String aName)
+{
+    JavaDecl cdecl = getImportClassDecl(getImportEntry(aName), aName);
+    return cdecl!=NOT_FOUND? cdecl : null;
+}
+
+/**
+ * Returns the class decl for given import entry (resolving and caching it if not yet set).
+ */
+private JavaDecl getImportClassDecl(ImportEntry anEntry, String aName)
+{
+    if(anEntry._cdecl==null) {
+        String cname = getImportClassNameImpl(aName); JavaDecl cdecl = cname!=null? getJavaDecl(cname) : null;
+        anEntry._cdecl = cdecl!=null? cdecl : NOT_FOUND; anEntry._cname = cname;
+    }
+    return anEntry._cdecl;
+}
+
+/**
+ * Returns a Class name for given name referenced in file.
+ */
+private String getImportClassNameImpl(String aName)
 {
     // Handle fully specified name
     if(isKnownClassName(aName))
@@ -237,7 +401,8 @@ private JImportDecl getStaticImport(String aName, JavaDecl theParams[])
         if(imp.isStatic()) {
             JavaDecl mbr = imp.getImportMember(aName, theParams);
             if(mbr!=null) {
-                if(imp.isInclusive()) imp.addFoundClassName(aName); imp._used = true;
+                if(imp.isInclusive()) imp.addFoundClassName(aName);
+                getImportEntry(aName)._staticImp = imp;
                 return imp;
             }
         }
@@ -248,15 +413,49 @@ private JImportDecl getStaticImport(String aName, JavaDecl theParams[])
 }
 
 /**
- * Returns unused imports for file.
+ * Returns the cached import info for given name (clearing cache first if project ClassLoader has changed).
+ */
+private ImportEntry getImportEntry(String aName)
+{
+    // If project ClassLoader has changed since cache was filled, clear cache
+    Project proj = getProject(); ClassLoader cldr = proj!=null? proj.getClassLoader() : null;
+    if(cldr!=_importCacheLdr) { _importCache.clear(); _importCacheLdr = cldr; }
+    
+    // Get entry for name (create if missing) and return
+    ImportEntry entry = _importCache.get(aName);
+    if(entry==null) entry = _importCache.computeIfAbsent(aName, n -> new ImportEntry());
+    return entry;
+}
+
+/**
+ * Clears the import cache (called when package declaration or imports change).
+ */
+protected void clearImportCache()  { _importCache.clear(); }
+
+/**
+ * A class to hold cached import resolution for a name (null fields are unresolved, NOT_FOUND markers are misses).
+ */
+private static class ImportEntry {
+    
+    // The decl for name from package, import class or static import member
+    volatile JavaDecl     _decl;
+    
+    // The import class decl and name for name
+    volatile JavaDecl     _cdecl; volatile String _cname;
+    
+    // The import that resolves name as class and the last static import that resolved name as member
+    volatile JImportDecl  _imp, _staticImp;
+}
+
+/**
+ * Returns unused imports for file (computed from current nodes each time, since reparses add and remove references).
  */
 public Set <JImportDecl> getUnusedImports()
 {
-    if(_unusedImports!=null) return _unusedImports;
-    resolveClassNames(this);
+    Set <JImportDecl> used = new HashSet(); getUsedImports(this, used);
     Set <JImportDecl> uimps = new HashSet();
-    for(JImportDecl imp : getImportDecls()) if(!imp._used) uimps.add(imp);
-    return _unusedImports = uimps;
+    for(JImportDecl imp : getImportDecls()) if(!used.contains(imp)) uimps.add(imp);
+    return uimps;
 }
 
 /** Print expanded imports. */
@@ -280,17 +479,22 @@ public Set <JImportDecl> getUnusedImports()
 }*/
 
 /**
- * Forces all nodes to resolve class names.
+ * Resolves type and identifier nodes in given node and adds the imports that resolved them to given set.
  */
-private void resolveClassNames(JNode aNode)
+private void getUsedImports(JNode aNode, Set <JImportDecl> theImps)
 {
-    // Handle JType
-    if(aNode instanceof JType || aNode instanceof JExprId)
-        aNode.getDecl();
+    // Handle JType or identifier: Resolve and add imports cached for name (or first part of dotted name)
+    if(aNode instanceof JType || aNode instanceof JExprId) { aNode.getDecl();
+        String name = aNode.getName(); int ind = name!=null? name.indexOf('.') : -1;
+        if(ind>0) name = name.substring(0, ind);
+        ImportEntry entry = name!=null? _importCache.get(name) : null;
+        if(entry!=null && entry._imp!=null && entry._imp!=NOT_FOUND_IMPORT) theImps.add(entry._imp);
+        if(entry!=null && entry._staticImp!=null) theImps.add(entry._staticImp);
+    }
         
     // Recurse for children
     for(JNode child : aNode.getChildren())
-        resolveClassNames(child);
+        getUsedImports(child, theImps);
 }
 
 /**
@@ -314,6 +518,7 @@ protected void init(JFile aJFile)
 
     _sourceFile = aJFile._sourceFile; _proj = aJFile._proj; _packageDecl = aJFile._packageDecl;
     _importDecls = aJFile._importDecls; _classDecls = aJFile._classDecls; _exception = aJFile._exception;
+    clearImportCache();
 }
 
 }
\ No newline at end of file
@@ -18,9 +18,6 @@ public class JImportDecl extends JNode {
     // Whether import is inclusive (ends with '.*')
     boolean        _inclusive;
     
-    // Whether import is used
-    boolean        _used;
-    
     // The list of child class names found by this import, if inclusive
     Set <String>  _found = Collections.EMPTY_SET;
     
@@ -122,7 +119,8 @@ public Set <String> getFoundClassNames()  { return _found; }
  */
 protected void addFoundClassName(String aName)
 {
-    if(_found==Collections.EMPTY_SET) _found = new HashSet();
+    if(_found==Collections.EMPTY_SET) synchronized(this) {
+        if(_found==Collections.EMPTY_SET) _found = java.util.concurrent.ConcurrentHashMap.newKeySet(); }
     _found.add(aName);
 }
 
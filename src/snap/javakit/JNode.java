@@ -4,6 +4,7 @@
 package snap.javakit;
 import java.util.*;
 import snap.parse.Token;
+import snap.project.Metrics;
 import snap.util.*;
 
 /**
@@ -23,6 +24,9 @@ public class JNode {
     // The list of child nodes
     List <JNode>        _children = Collections.EMPTY_LIST;
     
+    // Whether children are in order by position (0 = unknown, 1 = ordered, -1 = not), for child lookup by position
+    byte                _childOrder;
+    
     // The declaration most closely associated with this node
     JavaDecl            _decl;
     
@@ -62,7 +66,12 @@ public boolean isDecl()
 /**
  * Returns the JavaDecl most closely associated with this JNode.
  */
-public JavaDecl getDecl()  { return _decl!=null? _decl : (_decl=getDeclImpl()); }
+public JavaDecl getDecl()
+{
+    if(_decl!=null) return _decl;
+    Metrics.count("attrib.resolve");
+    return _decl = getDeclImpl();
+}
 
 /**
  * Returns the JavaDecl most closely associated with this JNode.
@@ -240,7 +249,7 @@ protected void addChild(JNode aNode, int anIndex)
 {
     if(aNode==null) return; if(anIndex<0) anIndex = _children.size();
     if(_children==Collections.EMPTY_LIST) _children = new ArrayList();
-    _children.add(anIndex, aNode); aNode.setParent(this);
+    _children.add(anIndex, aNode); aNode.setParent(this); _childOrder = 0;
     if(getStartToken()==null || getStart()>aNode.getStart()) {
         if(aNode.getStartToken()==null) System.err.println("JNode.addChild: Bogus start token");
         else setStartToken(aNode.getStartToken());
@@ -257,7 +266,7 @@ protected int removeChild(JNode aNode)
 {
     if(aNode==null) return -1;
     int index = ListUtils.indexOfId(_children, aNode);
-    if(index>=0) _children.remove(index);
+    if(index>=0) { _children.remove(index); _childOrder = 0; }
     //for(JNode n=this; n!=null; n=n.getParent()) n._string = null;
     return index;
 }
@@ -289,25 +298,60 @@ public void setBlock(JStmtBlock aBlock)  { }
 /**
  * Returns the node at given char index.
  */
-public JNode getNodeAtCharIndex(int anIndex)
-{
-    // Iterate over nodes and recurse in to one in range (return top level node in range)
-    for(int i=0, iMax=getChildCount(); i<iMax; i++) { JNode node = getChild(i);
-        if(node.getStart()<=anIndex && anIndex<=node.getEnd())
-            return node.getNodeAtCharIndex(anIndex); }
-    return this; // Return this node
-}
+public JNode getNodeAtCharIndex(int anIndex)  { return getNodeAtCharIndex(anIndex, anIndex); }
 
 /**
  * Returns the node at given char index.
  */
 public JNode getNodeAtCharIndex(int aStart, int anEnd)
 {
-    // Iterate over nodes and recurse in to one in range (return top level node in range)
-    for(int i=0, iMax=getChildCount(); i<iMax; i++) { JNode node = getChild(i);
+    // Get first child in range and recurse in to it (return top level node in range)
+    int index = getChildIndexAt(aStart, anEnd);
+    return index>=0? getChild(index).getNodeAtCharIndex(aStart, anEnd) : this; // Return this node
+}
+
+/**
+ * Returns the index of first child that contains given char range (or -1). If children are in order by position,
+ * this does binary search for last child that starts at or before range and checks back from there.
+ */
+protected int getChildIndexAt(int aStart, int anEnd)
+{
+    // If few children or children not in order, just check each
+    int ccount = getChildCount();
+    if(ccount<8 || !isChildOrder()) {
+        for(int i=0; i<ccount; i++) { JNode node = getChild(i);
+            if(node.getStart()<=aStart && anEnd<=node.getEnd())
+                return i; }
+        return -1;
+    }
+    
+    // Binary search for last child that starts at or before range start
+    int lo = 0, hi = ccount - 1;
+    while(lo<hi) { int mid = (lo + hi + 1)/2;
+        if(getChild(mid).getStart()<=aStart) lo = mid;
+        else hi = mid - 1;
+    }
+    
+    // Check back from there for first child that contains range (stop at first child that ends before range)
+    int match = -1;
+    for(int i=lo; i>=0; i--) { JNode node = getChild(i); if(node.getEnd()<aStart) break;
         if(node.getStart()<=aStart && anEnd<=node.getEnd())
-            return node.getNodeAtCharIndex(aStart, anEnd); }
-    return this; // Return this node
+            match = i; }
+    return match;
+}
+
+/**
+ * Returns whether children are in order by position (each starts at or after the previous one ends).
+ */
+protected boolean isChildOrder()
+{
+    if(_childOrder!=0) return _childOrder>0;
+    boolean ordered = true;
+    for(int i=1, iMax=getChildCount(); i<iMax && ordered; i++)
+        if(getChild(i).getStart()<getChild(i-1).getEnd())
+            ordered = false;
+    _childOrder = ordered? (byte)1 : (byte)-1;
+    return ordered;
 }
 
 /**
@@ -25,6 +25,11 @@ public void addStatement(JStmt aStmt)  { addChild(aStmt, -1); }
  */
 public int removeStatement(JStmt aStmt)  { return removeChild(aStmt); }
 
+/**
+ * Replaces a statement.
+ */
+public void replaceStatement(JStmt oStmt, JStmt nStmt)  { replaceChild(oStmt, nStmt); }
+
 /**
  * Returns whether statement has a block associated with it.
  */
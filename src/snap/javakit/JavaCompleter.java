@@ -4,7 +4,10 @@
 package snap.javakit;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
+import snap.project.Metrics;
+import snap.project.Project;
 import snap.util.*;
 
 /**
@@ -15,36 +18,253 @@ public class JavaCompleter {
     // The node
     JNode            _node;
     
+    // The JavaDeclOwner for class path metadata suggestions
+    JavaDeclOwner    _owner;
+    
+    // The node name when suggestions were added/narrowed
+    String           _prefix = "";
+    
     // The list of suggestions
     List <JavaDecl>  _list = new ArrayList();
     
+    // The sources that have been added
+    Set <Source>     _sources = EnumSet.noneOf(Source.class);
+    
+    // The receiving class assignable scores for suggestions
+    Map <JavaDecl,Integer>  _scores = new IdentityHashMap();
+    
+    // Whether completer has been cancelled
+    volatile boolean _cancelled;
+    
+    // The node context for class path sources (set by setNode, so class path sources don't read node tree)
+    ClassPathInfo    _cpinfo;
+    String           _cpPrefix, _cpPkgName, _cpRecName;
+    boolean          _cpType, _cpAlloc, _cpParExpr;
+    
+    // Constants for suggestion sources (in order of increasing cost)
+    public enum Source { Locals, Members, Classes, Packages }
+    
+    // Total time, count and max time spent in each source (for latency stats)
+    static AtomicLongArray  _sourceNanos = new AtomicLongArray(4), _sourceMaxNanos = new AtomicLongArray(4);
+    static AtomicLongArray  _sourceCounts = new AtomicLongArray(4);
+    
+    // The metric names for each source
+    static String    _sourceMetrics[] = { "complete.Locals", "complete.Members", "complete.Classes", "complete.Packages" };
+    
 /**
  * Returns completion for JNode (should be JType or JIdentifier).
  */
 public JavaDecl[] getSuggestions(JNode aNode)
 {
-    // Set node
-    _node = aNode;
+    // Set node and add suggestions from all sources
+    setNode(aNode);
+    for(Source source : Source.values())
+        addSuggestions(source);
+    
+    // Return sorted suggestions
+    return getSortedSuggestions();
+}
+
+/**
+ * Returns the node.
+ */
+public JNode getNode()  { return _node; }
+
+/**
+ * Sets the node (should be JType or JIdentifier) and resets suggestions.
+ */
+public void setNode(JNode aNode)
+{
+    _node = aNode; _prefix = aNode.getName()!=null? aNode.getName() : "";
+    Project proj = aNode.getFile()!=null? aNode.getFile().getProject() : null;
+    _owner = proj!=null? proj.getJavaDeclOwner() : null;
+    _list = new ArrayList(); _sources.clear(); _scores.clear();
+    
+    // Set node context for class path sources: Class path, prefix, whether type (and alloc type) and parent package
+    _cpinfo = ClassPathInfo.get(aNode); _cpPrefix = _prefix; _cpType = aNode instanceof JType;
+    _cpAlloc = _cpType && aNode.getParent() instanceof JExprAlloc; _cpPkgName = null;
+    JExpr parExpr = aNode instanceof JExprId? ((JExprId)aNode).getParentExpr() : null; _cpParExpr = parExpr!=null;
+    if(parExpr instanceof JExprId && ((JExprId)parExpr).isPackageName())
+        _cpPkgName = ((JExprId)parExpr).getPackageName();
+    JavaDeclClass reccls = getReceivingClass(aNode);
+    _cpRecName = reccls!=null && !reccls.isPrimitive() && !reccls.isArray()? reccls.getName() : null;
+}
+
+/**
+ * Adds suggestions for node from given source (recording time spent).
+ */
+public void addSuggestions(Source aSource)
+{
+    // If cancelled or source already added, just return
+    if(_cancelled || _sources.contains(aSource)) return;
+    
+    // If class path source, add its suggestions
+    if(isClassPathSource(aSource)) {
+        List <JavaDecl> decls = getClassPathSuggestions(aSource);
+        if(decls!=null) addSuggestions(aSource, decls);
+        return;
+    }
     
     // Add suggestions for node
-    if(aNode instanceof JType)
-        getSuggestions((JType)aNode);
-    else if(aNode instanceof JExprId)
-        getSuggestions((JExprId)aNode);
-    
-    // Get receiving class and, if 2 letters or less, filter out suggestions that don't apply (unless none do)
-    Class reccls = getReceivingClass(aNode);
-    if(reccls!=null && _list.size()>10 && aNode.getName().length()<=2) {
-        List l2 = _list.stream().filter(p -> isRecivingClassAssignable(p, reccls)).collect(Collectors.toList());
-        if(l2.size()>0) _list = l2;
+    long time = System.nanoTime();
+    if(_node instanceof JExprId)
+        getSuggestions((JExprId)_node, aSource);
+    
+    // Add source and record latency
+    _sources.add(aSource);
+    addSourceTime(aSource, System.nanoTime() - time);
+}
+
+/**
+ * Adds given suggestions for given source (from getClassPathSuggestions, which can be called on another thread).
+ */
+public void addSuggestions(Source aSource, List <JavaDecl> theDecls)
+{
+    if(_cancelled || _sources.contains(aSource)) return;
+    _list.addAll(theDecls); _sources.add(aSource);
+}
+
+/**
+ * Returns whether given source is a class path source (Classes or Packages): These are the expensive sources and only
+ * use class path metadata and node context set by setNode, so they can be found on a background thread.
+ */
+public static boolean isClassPathSource(Source aSource)  { return aSource==Source.Classes || aSource==Source.Packages; }
+
+/**
+ * Returns the suggestions for given class path source (recording time spent), or null if cancelled. This doesn't read
+ * the node tree or change completer suggestions, so it can be called on a background thread.
+ */
+public List <JavaDecl> getClassPathSuggestions(Source aSource)
+{
+    // Get class path info and prefix (just return empty list if not class path source)
+    List <JavaDecl> decls = new ArrayList(); ClassPathInfo cpinfo = _cpinfo;
+    if(!isClassPathSource(aSource) || cpinfo==null) return decls; String prefix = _cpPrefix; long time = System.nanoTime();
+    
+    // Handle parent is Package: Add packages and classes with prefix
+    if(_cpPkgName!=null) {
+        List <String> names = aSource==Source.Classes? cpinfo.getPackageClassNames(_cpPkgName, prefix) :
+            cpinfo.getPackageChildrenNames(_cpPkgName, prefix);
+        for(String name : names) { if(_cancelled) return null;
+            if(aSource==Source.Classes) addClassDecl(cpinfo, name, false, decls);
+            else addDecl(name, decls);
+        }
+    }
+    
+    // Handle Classes (if type or no parent expression): Add class names with prefix (constructors, if alloc type)
+    else if(aSource==Source.Classes && (_cpType || !_cpParExpr)) {
+        List <String> cnames = prefix.length()>3? cpinfo.getAllClassNames(prefix) : cpinfo.getCommonClassNames(prefix);
+        for(String cname : cnames) { if(_cancelled) return null;
+            if(_cpAlloc) addConstructorDecls(cpinfo, cname, decls);
+            else addClassDecl(cpinfo, cname, !_cpType, decls);
+        }
+    }
+    
+    // Handle Packages (if identifier with no parent expression): Add packages with prefix
+    else if(aSource==Source.Packages && !_cpType && !_cpParExpr) {
+        for(String name : cpinfo.getAllPackageNames(prefix)) { if(_cancelled) return null;
+            addDecl(name, decls); }
+    }
+    
+    // If receiving class, read class file super types of class stubs here (so scoring doesn't read them)
+    if(_cpRecName!=null && _owner!=null)
+        for(JavaDecl jd : decls) { if(_cancelled) return null;
+            if(jd instanceof JavaDeclStub) _owner.isSubtypeName(jd.getClassName(), _cpRecName); }
+    
+    // Record latency and return
+    addSourceTime(aSource, System.nanoTime() - time);
+    return decls;
+}
+
+/**
+ * Returns whether suggestions have been added for all sources.
+ */
+public boolean isComplete()  { return _sources.size()==Source.values().length; }
+
+/**
+ * Returns current suggestions, filtered and sorted by receiving class, then type and name.
+ */
+public JavaDecl[] getSortedSuggestions()
+{
+    // Get receiving class and score of each suggestion against it (computed once, before sorting)
+    JavaDeclClass reccls = getReceivingClass(_node);
+    for(JavaDecl jd : _list)
+        if(!_scores.containsKey(jd))
+            _scores.put(jd, getRecivingClassAssignableScore(jd, reccls));
+    
+    // If 2 letters or less, filter out suggestions that don't apply (unless none do)
+    List <JavaDecl> list = _list;
+    if(reccls!=null && list.size()>10 && _prefix.length()<=2) {
+        List l2 = list.stream().filter(p -> _scores.get(p)>0).collect(Collectors.toList());
+        if(l2.size()>0) list = l2;
     }
         
     // Get array and sort
-    JavaDecl decls[] = _list.toArray(new JavaDecl[0]);
-    Arrays.sort(decls, new DeclCompare(reccls));
+    JavaDecl decls[] = list.toArray(new JavaDecl[0]);
+    Arrays.sort(decls, new DeclCompare(_scores));
     return decls;
 }
 
+/**
+ * Returns suggestions for given node by narrowing the current suggestions, if node just extends the current
+ * node name at the same location (returns null if suggestions need to be recomputed).
+ */
+public JavaDecl[] getNarrowedSuggestions(JNode aNode)
+{
+    // If node can't narrow current suggestions, return null
+    if(!isNarrowable(aNode)) return null;
+    
+    // Set node and remove suggestions that don't match new prefix
+    String prefix = aNode.getName(); _node = aNode; _prefix = prefix;
+    List <JavaDecl> list = new ArrayList(_list.size());
+    for(JavaDecl jd : _list) if(isPrefixMatch(jd, prefix)) list.add(jd);
+    _list = list;
+    
+    // Return sorted suggestions
+    return getSortedSuggestions();
+}
+
+/**
+ * Returns whether given node is a continuation of the current node that can narrow current suggestions.
+ */
+protected boolean isNarrowable(JNode aNode)
+{
+    // If no current node, or not complete, or nodes are different types or locations, return false
+    if(_node==null || !isComplete() || _cancelled) return false;
+    if(aNode.getClass()!=_node.getClass() || aNode.getStart()!=_node.getStart()) return false;
+    
+    // If new name doesn't extend current name, or crosses common/all class names threshold, return false
+    String prefix = aNode.getName(); if(prefix==null || prefix.length()<=_prefix.length()) return false;
+    if(!prefix.toLowerCase().startsWith(_prefix.toLowerCase())) return false;
+    if((prefix.length()>3)!=(_prefix.length()>3)) return false;
+    
+    // Make sure node contexts are the same: JType alloc or JExprId parent expression type
+    if(aNode instanceof JType)
+        return (aNode.getParent() instanceof JExprAlloc)==(_node.getParent() instanceof JExprAlloc);
+    JExpr pexpr1 = ((JExprId)aNode).getParentExpr(), pexpr2 = ((JExprId)_node).getParentExpr();
+    if(pexpr1==null || pexpr2==null) return pexpr1==pexpr2;
+    return pexpr1.getEvalType()==pexpr2.getEvalType() && pexpr1.getClass()==pexpr2.getClass();
+}
+
+/**
+ * Returns whether given suggestion matches given prefix (simple name prefix or camel-hump for classes).
+ */
+private static boolean isPrefixMatch(JavaDecl aDecl, String aPrefix)
+{
+    String sname = aDecl.isPackage()? JavaDeclOwner.getSimpleName(aDecl.getName()) : aDecl.getSimpleName();
+    if(StringUtils.startsWithIC(sname, aPrefix)) return true;
+    return (aDecl.isClass() || aDecl.isConstructor()) && ClassNameIndex.isCamelHumpMatch(aPrefix, sname);
+}
+
+/**
+ * Cancels this completer (suggestions stop being added).
+ */
+public void cancel()  { _cancelled = true; }
+
+/**
+ * Returns whether this completer has been cancelled.
+ */
+public boolean isCancelled()  { return _cancelled; }
+
 /**
  * Adds a JavaDecl for object.
  */
@@ -65,50 +285,73 @@ private void addDecl(JavaDecl aDecl)
 }
 
 /**
- * Find suggestions for JType.
+ * Adds a JavaDecl for class or package name to given list (from project decl owner, so node tree isn't read).
  */
-private void getSuggestions(JType aJType)
+private void addDecl(String aName, List <JavaDecl> theDecls)
 {
-    ClassPathInfo cpinfo = ClassPathInfo.get(aJType);
-    String prefix = aJType.getName();
-
-    List <String> cnames = prefix.length()>3? cpinfo.getAllClassNames(prefix) : cpinfo.getCommonClassNames(prefix);
-    for(String cname : cnames) {
-        if(aJType.getParent() instanceof JExprAlloc) {
-            Class cls = cpinfo.getClass(cname);
-            if(cls==null || !Modifier.isPublic(cls.getModifiers())) continue;
-            Constructor cstrs[] = null; try { cstrs = cls.getConstructors(); } catch(Throwable t) { }
-            if(cstrs!=null) for(Constructor cstr : cstrs)
-                if(!cstr.isSynthetic()) addDecl(cstr);
-        }
-        else addDecl(cname);
+    JavaDecl jd = _owner!=null? _owner.getJavaDecl(aName) : null;
+    if(jd!=null) theDecls.add(jd);
+}
+
+/**
+ * Adds a class suggestion for class name from class path metadata (only loads class if name isn't in class path index).
+ */
+private void addClassDecl(ClassPathInfo aCPI, String aName, boolean doPublic, List <JavaDecl> theDecls)
+{
+    int flags = getClassFlags(aCPI, aName);
+    if(flags<0 || doPublic && !Modifier.isPublic(flags)) return;
+    if(_owner!=null) theDecls.add(new JavaDeclStub(_owner, aName, flags, null));
+}
+
+/**
+ * Adds public constructor suggestions for class name from class path metadata (only loads class if constructors
+ * aren't in class path index).
+ */
+private void addConstructorDecls(ClassPathInfo aCPI, String aName, List <JavaDecl> theDecls)
+{
+    // If class isn't public, just return
+    int flags = getClassFlags(aCPI, aName);
+    if(flags<0 || !Modifier.isPublic(flags)) return;
+    
+    // If constructor descriptors are indexed, add stubs and return
+    String constrs[] = aCPI.getClassConstructors(aName);
+    if(constrs!=null && _owner!=null) {
+        for(String desc : constrs) theDecls.add(new JavaDeclStub(_owner, aName, flags, desc));
+        return;
     }
+    
+    // Otherwise, load class and add constructors
+    Class cls = _owner!=null? aCPI.getClass(aName) : null; if(cls==null) return;
+    Constructor cstrs[] = null; try { cstrs = cls.getConstructors(); } catch(Throwable t) { }
+    if(cstrs!=null) for(Constructor cstr : cstrs) { JavaDecl jd = cstr.isSynthetic()? null : _owner.getJavaDecl(cstr);
+        if(jd!=null) theDecls.add(jd); }
+}
+
+/**
+ * Returns the class access flags for class name from class path index (or loaded class if not indexed).
+ */
+private static int getClassFlags(ClassPathInfo aCPI, String aName)
+{
+    int flags = aCPI.getClassFlags(aName); if(flags>=0) return flags;
+    Class cls = aCPI.getClass(aName);
+    return cls!=null? cls.getModifiers() : -1;
 }
 
 /**
  * Find suggestions for JExprId.
  */
-private void getSuggestions(JExprId anId)
+private void getSuggestions(JExprId anId, Source aSource)
 {
     // Get prefix string
     String prefix = anId.getName();
-    ClassPathInfo cpinfo = ClassPathInfo.get(anId);
     
-    // If there is a parent expression, work from it
+    // If there is a parent expression, work from it (package parent only has class path suggestions)
     JExpr parExpr = anId.getParentExpr();
     if(parExpr!=null) {
         
-        // Handle parent is Package: Add packages and classes with prefix
-        if(parExpr instanceof JExprId && ((JExprId)parExpr).isPackageName()) { JExprId parId = (JExprId)parExpr;
-            String parPkg = parId.getPackageName();
-            for(String cname : cpinfo.getPackageClassNames(parPkg, prefix))
-                addDecl(cname);
-            for(String pname : cpinfo.getPackageChildrenNames(parPkg, prefix))
-                addDecl(pname);
-        }
-        
-        // Handle anything else with a parent class
-        else if(parExpr.getEvalType()!=null) { JavaDeclClass parDecl = parExpr.getEvalType().getClassType();
+        // Handle anything with a parent class
+        if(aSource==Source.Members && _cpPkgName==null && parExpr.getEvalType()!=null) {
+            JavaDeclClass parDecl = parExpr.getEvalType().getClassType();
             List <JavaDecl> fields = parDecl.getPrefixFields(prefix);
             for(JavaDecl fd : fields) addDecl(fd);
             List <JavaDecl> meths = parDecl.getPrefixMethods(prefix);
@@ -117,61 +360,78 @@ private void getSuggestions(JExprId anId)
     }
     
     // If no JExpr prefix, get variables with prefix
-    else {
+    else switch(aSource) {
         
         // Get variables with prefix of name and add to suggestions
-        List <JVarDecl> varDecls = anId.getVarDecls(prefix, new ArrayList());
-        for(JVarDecl vdecl : varDecls)
-            addDecl(vdecl.getDecl());
+        case Locals: {
+            List <JVarDecl> varDecls = anId.getVarDecls(prefix, new ArrayList());
+            for(JVarDecl vdecl : varDecls)
+                addDecl(vdecl.getDecl());
+            break;
+        }
         
         // Add methods of enclosing class
-        JClassDecl ecd = anId.getEnclosingClassDecl();
-        Class ec = ecd!=null? ecd.getEvalClass() : null;
-        while(ecd!=null && ec!=null) {
-            for(Method meth : ClassExtras.getMethods(ec, prefix))
-                addDecl(meth);
-            ecd = ecd.getEnclosingClassDecl(); ec = ecd!=null? ecd.getEvalClass() : null;
+        case Members: {
+            JClassDecl ecd = anId.getEnclosingClassDecl();
+            Class ec = ecd!=null? ecd.getEvalClass() : null;
+            while(ecd!=null && ec!=null) {
+                for(Method meth : ClassExtras.getMethods(ec, prefix))
+                    addDecl(meth);
+                ecd = ecd.getEnclosingClassDecl(); ec = ecd!=null? ecd.getEvalClass() : null;
+            }
+            break;
         }
+    }
+}
 
-        // If starts with upper case or is greater than 3 chars, add classes with prefix that are public
-        List <String> cnames = prefix.length()>3? cpinfo.getAllClassNames(prefix) : cpinfo.getCommonClassNames(prefix);
-        for(String cname : cnames) {
-            Class cls = cpinfo.getClass(cname);
-            if(cls==null || !Modifier.isPublic(cls.getModifiers())) continue;
-            addDecl(cname);
-        }
+/**
+ * Adds time spent for given source to latency stats (lock free, since class path sources are added from background).
+ */
+private static void addSourceTime(Source aSource, long theNanos)
+{
+    int ind = aSource.ordinal();
+    _sourceNanos.addAndGet(ind, theNanos); _sourceCounts.incrementAndGet(ind);
+    _sourceMaxNanos.accumulateAndGet(ind, theNanos, Math::max);
+    if(Metrics.Enabled) Metrics.recordTime(_sourceMetrics[ind], theNanos);
+}
 
-        // Add packages with prefix
-        List <String> pnames = cpinfo.getAllPackageNames(prefix);
-        for(String name : pnames)
-            addDecl(name);
+/**
+ * Returns a string describing average and max latency of each suggestion source.
+ */
+public static String getSourceLatencyStats()
+{
+    StringBuffer sb = new StringBuffer("Completion latencies:");
+    for(Source source : Source.values()) { int ind = source.ordinal(); long count = _sourceCounts.get(ind);
+        double avg = count>0? _sourceNanos.get(ind)/1e6/count : 0, max = _sourceMaxNanos.get(ind)/1e6;
+        sb.append(String.format(" %s(n=%d, avg=%.2fms, max=%.2fms)", source, count, avg, max));
     }
+    return sb.toString();
 }
 
 /** Returns the assignable type of given node assuming it's the receiving expression of assign or a method arg. */
-private static Class getReceivingClass(JNode aNode)
+private static JavaDeclClass getReceivingClass(JNode aNode)
 {
     // If MethocCall arg, return arg class
     JavaDecl argType = getMethodCallArgType(aNode);
     if(argType!=null)
-        return argType.getEvalClass();
+        return argType.getClassType();
     
     // If node is Assign Right-Hand-Side, return assignment Left-Hand-Side class
     JExprMath assExpr = getExpression(aNode, JExprMath.Op.Assign);
     JExpr lhs = assExpr!=null? assExpr.getOperand(0) : null;
     if(lhs!=null)
-        return lhs.getEvalClass();
+        return getClassType(lhs.getEvalType());
     
     // If node is JVarDecl Initializer, return JVarDecl class
     JVarDecl vd = getVarDeclForInitializer(aNode);
     if(vd!=null)
-        return vd.getEvalClass();
+        return getClassType(vd.getEvalType());
         
     // If node is JExprMath, return op class
     JExprMath me = aNode.getParent(JExprMath.class);
     if(me!=null) {
-        switch(me.getOp()) { case Or: case And: case Not: return Boolean.class; }
-        return Double.class;
+        switch(me.getOp()) { case Or: case And: case Not: return getClassType(aNode.getJavaDecl(Boolean.class)); }
+        return getClassType(aNode.getJavaDecl(Double.class));
     }
     
     // If node is expression and top parent is conditional statement, return boolean
@@ -180,13 +440,16 @@ private static Class getReceivingClass(JNode aNode)
         while(exp.getParent() instanceof JExpr) exp = (JExpr)exp.getParent();
         JNode par = exp.getParent();
         if(par instanceof JStmtIf || par instanceof JStmtWhile || par instanceof JStmtDo)
-            return Boolean.class;
+            return getClassType(aNode.getJavaDecl(Boolean.class));
     }
 
     // Return null since no assignment type found for class
     return null;
 }
 
+/** Returns the class type of given type decl, if available. */
+private static JavaDeclClass getClassType(JavaDecl aDecl)  { return aDecl!=null? aDecl.getClassType() : null; }
+
 /** Returns the method call parent of given node, if available. */
 private static JExprMethodCall getMethodCall(JNode aNode)
 {
@@ -250,21 +513,26 @@ private static JVarDecl getVarDeclForInitializer(JNode aNode)
 }
 
 /**
- * Returns whether suggestion is receiving class.
+ * Returns whether suggestion is receiving class (2 if same class, 1 if assignable, 0 if not).
  */
-private static final boolean isRecivingClassAssignable(JavaDecl aJD, Class aRC)
-{
-    return getRecivingClassAssignableScore(aJD, aRC)>0;
-}
-    
-/**
- * Returns whether suggestion is receiving class.
- */
-private static final int getRecivingClassAssignableScore(JavaDecl aJD, Class aRC)
+private static final int getRecivingClassAssignableScore(JavaDecl aJD, JavaDeclClass aRC)
 {
+    // If no receiving class or package suggestion, just return
     if(aRC==null || aJD.isPackage()) return 0;
-    Class dcls = aJD.getEvalClass(); if(dcls==null) return 0;
-    return aRC==dcls? 2 : ClassUtils.isAssignable(aRC, dcls)? 1 : 0;
+    
+    // If class path stub, check assignable from class file super types (class isn't loaded)
+    if(aJD instanceof JavaDeclStub) { String cname = aJD.getClassName();
+        if(aRC.getName().equals(cname)) return 2;
+        return !aRC.isPrimitive() && !aRC.isArray() && aRC._owner.isSubtypeName(cname, aRC.getName())? 1 : 0; }
+    
+    // Get suggestion eval class
+    JavaDeclClass dcls = getClassType(aJD.getEvalType()); if(dcls==null) return 0;
+    if(aRC==dcls) return 2;
+    
+    // Check assignable with cached supertypes (and via primitive for number wrapper receiving classes)
+    if(aRC.isAssignable(dcls)) return 1;
+    JavaDeclClass prim = aRC.getPrimitive();
+    return prim!=null && prim!=aRC && prim.isAssignable(dcls)? 1 : 0;
 }
     
 /**
@@ -272,18 +540,18 @@ private static final int getRecivingClassAssignableScore(JavaDecl aJD, Class aRC
  */
 private static class DeclCompare implements Comparator <JavaDecl> {
 
-    // The receiving class for suggestions
-    Class _rclass = null;
+    // The precomputed receiving class assignable score for each suggestion
+    Map <JavaDecl,Integer> _scores;
     
     /** Creates a DeclCompare. */
-    DeclCompare(Class aRC)  { _rclass = aRC; }
+    DeclCompare(Map <JavaDecl,Integer> theScores)  { _scores = theScores; }
 
     /** Standard compare to method.  */
     public int compare(JavaDecl o1, JavaDecl o2)
     {
         // Get whether either suggestion is of Assignable to ReceivingClass
-        int rca1 = getRecivingClassAssignableScore(o1, _rclass);
-        int rca2 = getRecivingClassAssignableScore(o2, _rclass);
+        int rca1 = _scores.get(o1);
+        int rca2 = _scores.get(o2);
         if(rca1!=rca2) return rca1>rca2? -1 : 1;
                 
         // If Suggestion Types differ, return by type
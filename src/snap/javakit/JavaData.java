@@ -15,8 +15,8 @@ public class JavaData {
     // The Project that owns this file
     Project          _proj;
 
-    // The set of declarations in this JavaFile
-    Set <JavaDecl>   _decls = new HashSet();
+    // The set of declarations in this JavaFile (unmodifiable, replaced when loaded, null when cleared)
+    volatile Set <JavaDecl>  _decls;
     
     // The set of references in this JavaFile
     Set <JavaDecl>   _refs = new HashSet();
@@ -30,11 +30,26 @@ public class JavaData {
     // The parsed version of this JavaFile
     JFile            _jfile;
     
+    // The text length and line count above which a Java file is large (editor defers or skips semantic features)
+    public static int  LargeFileLength = 1000000, LargeFileLineCount = 20000;
+    
 /**
  * Creates a new JavaData for given file.
  */
 public JavaData(WebFile aFile)  { _file = aFile; }
 
+/**
+ * Returns whether given Java text is large (longer than LargeFileLength or more lines than LargeFileLineCount).
+ */
+public static boolean isLargeText(CharSequence theChars)
+{
+    if(theChars==null) return false;
+    int length = theChars.length(); if(length>LargeFileLength) return true;
+    if(length<LargeFileLineCount) return false;
+    int lines = 1; for(int i=0; i<length; i++) if(theChars.charAt(i)=='\n' && ++lines>LargeFileLineCount) return true;
+    return false;
+}
+
 /**
  * Returns the project for this JavaFile.
  */
@@ -53,23 +68,25 @@ public WebFile[] getClassFiles()
 /**
  * Returns the declarations in this JavaFile.
  */
-public synchronized Set <JavaDecl> getDecls()
+public Set <JavaDecl> getDecls()
 {
     // If already loaded, just return
-    if(_decls.size()>0) return _decls;
+    Set <JavaDecl> decls = _decls; if(decls!=null) return decls;
     
     // Iterate over JavaFile.Class files
-    Project proj = getProject();
+    Project proj = getProject(); Set <JavaDecl> set = new HashSet();
     WebFile cfiles[] = getClassFiles();
     for(WebFile cfile : cfiles) {
         String cname = proj.getClassName(cfile);
         JavaDeclClass cdecl = proj.getClassDecl(cname);
         if(cdecl==null) { System.err.println("JavaData.getDecls: Can't find decl " + cname); continue; }
-        _decls.addAll(cdecl.getAllDecls());
+        set.addAll(cdecl.getAllDecls());
     }
     
-    // Return decls
-    return _decls;
+    // Publish decls (if none found, class files may not be built yet, so load again next time) and return
+    decls = Collections.unmodifiableSet(set);
+    if(set.size()>0) _decls = decls;
+    return decls;
 }
 
 /**
@@ -115,7 +132,7 @@ public synchronized boolean updateDependencies()
     
     // If declarations have changed, clear cached list
     if(declsChanged)
-        _decls.clear();
+        _decls = null;
     
     // Get new refs
     Set <JavaDecl> nrefs = new HashSet(); _dset = true; _jfile = null;
@@ -170,7 +187,7 @@ public synchronized boolean updateDependencies()
 public void removeDependencies()
 {
     for(WebFile dep : _dependencies) JavaData.get(dep)._dependents.remove(_file);
-    _dependencies.clear(); _decls.clear(); _refs.clear(); _dset = false;
+    _dependencies.clear(); _decls = null; _refs.clear(); _dset = false;
 }
 
 /**
@@ -196,7 +213,8 @@ protected JFile createJFile()
  */
 public List <BuildIssue> getUnusedImports()
 {
-    String string = _file.getText();
+    // If large file, just return (unused import check needs full parse and eval)
+    String string = _file.getText(); if(isLargeText(string)) return Collections.EMPTY_LIST;
     Parser ip = JavaParser.getShared().getImportsParser();
     ParseNode node = null; try { node = string!=null && string.length()>0? ip.parse(string) : null; }
     catch(ParseException e) { System.err.println("JavaData.getUnusedImports Parse Exception"); e.printStackTrace(); }
@@ -55,7 +55,7 @@ public class JavaDecl implements Comparable<JavaDecl> {
     
     // Shared empty TypeVar array
     private static JavaDecl NULL_DECL = new JavaDecl(null, null, "NULL_DECL");
-    private static JavaDecl[] EMPTY_DECLS = new JavaDecl[0];
+    static JavaDecl[] EMPTY_DECLS = new JavaDecl[0];
     
 /**
  * Creates a new JavaDecl for Class, Field, Constructor, Method, VarDecl or package name string.
@@ -96,13 +96,22 @@ public JavaDecl(JavaDeclOwner anOwner, JavaDecl aPar, Object anObj, String anId)
     // Handle Package
     else if(anObj instanceof String) { String str = (String)anObj;
         _type = DeclType.Package;
-        _name = str; _sname = JavaDeclOwner.getSimpleName(str);
+        _name = _id = str; _sname = JavaDeclOwner.getSimpleName(str);
     }
     
     // Throw exception for unknown type
     else throw new RuntimeException("JavaDecl.init: Unsupported type " + anObj);
 }
 
+/**
+ * Creates a new JavaDecl for given type, id, name and modifiers (other attributes are set by creator).
+ */
+JavaDecl(JavaDeclOwner anOwner, JavaDecl aPar, DeclType aType, String anId, String aName, int theMods)
+{
+    _owner = anOwner; _par = aPar; _type = aType; _id = anId;
+    _name = _sname = aName!=null? aName.intern() : null; _mods = theMods;
+}
+
 /**
  * Initialize types (Class, ParameterizedType, TypeVariable).
  */
@@ -116,7 +125,7 @@ private void initType(Type aType)
         Type typArgs[] = pt.getActualTypeArguments();
         _paramTypes = new JavaDecl[typArgs.length];
         for(int i=0,iMax=typArgs.length;i<iMax;i++) _paramTypes[i] = _owner.getTypeDecl(typArgs[i]);
-        _evalType = this;
+        _paramTypes = _owner.getSharedDecls(_paramTypes); _evalType = this;
         _sname = _par.getSimpleName() + '<' + StringUtils.join(getParamTypeSimpleNames(),",") + '>';
         _owner._decls.put(_id, this);
     }
@@ -154,7 +163,7 @@ private void initMember(Member aMmbr)
         
         // Get TypeVars
         TypeVariable tvars[] = exec.getTypeParameters();
-        _typeVars = new JavaDecl[tvars.length];
+        if(tvars.length>0) _typeVars = new JavaDecl[tvars.length];
         for(int i=0,iMax=tvars.length;i<iMax;i++) _typeVars[i] = new JavaDecl(_owner,this,tvars[i]);
         _varArgs = exec.isVarArgs();
         
@@ -168,6 +177,7 @@ private void initMember(Member aMmbr)
         _paramTypes = new JavaDecl[ptypes.length];
         for(int i=0,iMax=ptypes.length; i<iMax; i++)
             _paramTypes[i] = _owner.getTypeDecl(ptypes[i]);
+        _paramTypes = _owner.getSharedDecls(_paramTypes);
 
         // Set default
         if(exec instanceof Method)
@@ -181,7 +191,7 @@ private void initMember(Member aMmbr)
 private void initParamType(JavaDecl theTypeDecls[])
 {
     _type = DeclType.ParamType; _name = _id; _evalType = this;
-    _paramTypes = Arrays.copyOf(theTypeDecls, theTypeDecls.length);
+    _paramTypes = _owner.getSharedDecls(Arrays.copyOf(theTypeDecls, theTypeDecls.length));
     _sname = _par.getSimpleName() + '<' + StringUtils.join(getParamTypeSimpleNames(),",") + '>';
 }
 
@@ -17,30 +17,57 @@ public class JavaDeclClass extends JavaDecl {
     // Whether class decl is enum, interface, primitive
     boolean               _enum, _interface, _primitive;
     
-    // The array of interfaces
+    // The array of interfaces (working copy while updating)
     JavaDeclClass         _interfaces[];
     
-    // The field decls
+    // The field decls (working list while updating: copied from snapshot when update starts, null if first update)
     List <JavaDecl>       _fdecls;
 
-    // The method decls
-    List <JavaDecl>       _mdecls = new ArrayList();
+    // The method decls (working list while updating)
+    List <JavaDecl>       _mdecls;
 
-    // The constructor decls
-    List <JavaDecl>       _cdecls = new ArrayList();
+    // The constructor decls (working list while updating)
+    List <JavaDecl>       _cdecls;
 
-    // The inner class decls
-    List <JavaDeclClass>  _icdecls = new ArrayList();
+    // The inner class decls (working list while updating)
+    List <JavaDeclClass>  _icdecls;
     
-    // The type var decls
-    List <JavaDecl>       _tvdecls = new ArrayList();
+    // The type var decls (working list while updating)
+    List <JavaDecl>       _tvdecls;
     
-    // A cached list of all decls
-    List <JavaDecl>       _allDecls;
+    // The published snapshot of interfaces and member decls (replaced when update finishes, so readers don't lock)
+    volatile Members      _members;
+    
+    // Whether decls are being updated (by thread holding lock) and a snapshot view of working lists for that thread
+    boolean               _updating;
+    Members               _workMembers;
     
     // The Array item type (if Array)
     JavaDecl              _arrayItemType;
     
+    // A version number incremented when member decls of this class change after first update (for lookup caches)
+    volatile int                    _membersVersion;
+    
+    // A cache of compatible method lookups by name and arg types, and the stamp it is valid for (Owner.HierarchyVersion
+    // and members versions of class and supertypes, so member change only clears caches of class and its subtypes)
+    volatile Map <MethodKey,Object> _compatCache;
+    volatile long                   _compatCacheStamp;
+    
+    // The unique id of this class decl in owner (for compact supertype sets)
+    int                          _classId;
+    
+    // The supertypes of this class (ids and decls, sorted by id) for the Owner.HierarchyVersion they were created for
+    volatile SuperTypes          _superTypes;
+    
+    // The helper that creates member decls from class file (if class decl was created from class file)
+    ClassFileDecls               _cfdecls;
+    
+    // The helper that overlays member decls from parsed source (if class is declared in a project source file)
+    volatile SourceDecls         _srcdecls;
+    
+    // A marker for cached lookups that found nothing
+    private static final Object  NOT_FOUND = new Object();
+    
 /**
  * Creates a new JavaDeclClass for given owner, parent and Class.
  */
@@ -51,12 +78,14 @@ public JavaDeclClass(JavaDeclOwner anOwner, JavaDecl aPar, Class aClass)
     
     // Set class attributes
     _mods = aClass.getModifiers(); _type = DeclType.Class;
-    _name = JavaKitUtils.getId(aClass); _sname = aClass.getSimpleName();
+    _name = _id; _sname = aClass.getSimpleName().intern();
     _enum = aClass.isEnum(); _interface = aClass.isInterface(); _primitive = aClass.isPrimitive();
     _evalType = this; _sdecl = null; // Set by owner
         
-    // Add to Owner.Decls map
+    // Add to Owner.Decls map and get unique class id (and source decls if declared in project source)
     _owner._decls.put(_id, this);
+    _classId = _owner._classCount++;
+    _srcdecls = _owner.createSourceDecls(this);
         
     // Get type super type and set in decl
     AnnotatedType superAType = aClass.getAnnotatedSuperclass();
@@ -69,20 +98,32 @@ public JavaDeclClass(JavaDeclOwner anOwner, JavaDecl aPar, Class aClass)
     // Handle Array
     if(aClass.isArray()) {
         
-        // Set ArrayItemType and add alternate name to Owner.Decls map
+        // Set ArrayItemType (JVM array names are mapped to type names by owner, so no alternate name needed)
         _arrayItemType = getJavaDecl(aClass.getComponentType());
-        _owner._decls.put(aClass.getName(), this);
         
         // Set Decls from Object[] for efficiency
         if(aClass!=Object[].class) {
             JavaDeclClass aryDecl = (JavaDeclClass)getJavaDecl(Object[].class);
-            _fdecls = aryDecl.getFields(); _interfaces = aryDecl._interfaces;
-            _mdecls = aryDecl._mdecls; _cdecls = aryDecl._cdecls; _icdecls = aryDecl._icdecls;
-            _tvdecls = aryDecl._tvdecls; _allDecls = aryDecl.getAllDecls();
+            _members = aryDecl.getMembers();
         }
     }
 }
 
+/**
+ * Creates a new JavaDeclClass for given owner, parent, id, simple name and modifiers (for decls not created from Class).
+ */
+JavaDeclClass(JavaDeclOwner anOwner, JavaDecl aPar, String anId, String aSimpleName, int theMods)
+{
+    // Do normal version and set class attributes
+    super(anOwner, aPar, DeclType.Class, anId, anId, theMods);
+    _name = _id; _sname = aSimpleName.intern(); _evalType = this; _sdecl = null;
+    
+    // Add to Owner.Decls map and get unique class id (and source decls if declared in project source)
+    _owner._decls.put(_id, this);
+    _classId = _owner._classCount++;
+    _srcdecls = _owner.createSourceDecls(this);
+}
+
 /**
  * Returns whether is a class reference.
  */
@@ -173,23 +214,39 @@ public boolean isAssignable(JavaDecl aDecl)
         return false;
     }
     
-    // Iterate up given class superclasses and check class and interfaces
-    for(JavaDeclClass ct1=ctype1; ct1!=null; ct1=ct1.getSuper()) {
-        
-        // If classes match, return true
-        if(ct1==this)
-            return true;
-            
-        // If any interface of this decl match, return true
-        if(isInterface()) {
-            for(JavaDeclClass infc : ct1.getInterfaces())
-                if(isAssignable(infc))
-                    return true;
-        }
-    }
+    // Return whether given class has this class in supertypes
+    return ctype1.isSubtypeOf(this);
+}
+
+/**
+ * Returns whether this class is given class or has given class as superclass or interface (checks cached set).
+ */
+public boolean isSubtypeOf(JavaDeclClass aClass)
+{
+    if(aClass==this) return true;
+    return Arrays.binarySearch(getSuperIds(), aClass._classId)>=0;
+}
+
+/**
+ * Returns the sorted ids of this class and all its supertypes (superclasses and interfaces).
+ */
+protected int[] getSuperIds()  { return getSuperTypes()._ids; }
+
+/**
+ * Returns the supertypes of this class: Merges sorted supertypes of super class and interfaces and adds this class.
+ */
+SuperTypes getSuperTypes()
+{
+    // If already set and hierarchy hasn't changed, just return
+    SuperTypes stypes = _superTypes; int version = _owner._hierarchyVersion;
+    if(stypes!=null && stypes._version==version) return stypes;
     
-    // Return false since no match found
-    return false;
+    // Merge this class with super class and interface supertypes
+    stypes = new SuperTypes(new int[] { _classId }, new JavaDeclClass[] { this }, version);
+    JavaDeclClass scls = getSuper(); if(scls!=null) stypes = stypes.merge(scls.getSuperTypes(), version);
+    JavaDeclClass infcs[] = getInterfaces();
+    if(infcs!=null) for(JavaDeclClass infc : infcs) stypes = stypes.merge(infc.getSuperTypes(), version);
+    return _superTypes = stypes;
 }
 
 /**
@@ -244,8 +301,88 @@ public JavaDecl getResolvedType(JavaDecl aDecl)
  */
 public boolean updateDecls()
 {
-    // If first time, set decls
+    // If declared in project source, resolve source types first without lock (resolving can load classes)
+    SourceDecls srcdecls = _srcdecls;
+    if(srcdecls!=null) srcdecls.resolve();
+    
+    // Lock decls (if already updating, nested call from this thread, just return)
+    _owner.lockDecls();
+    if(_updating) { _owner.unlockDecls(); return false; }
+    
+    // Start update with working copies of snapshot lists, update and publish new snapshot
+    beginUpdate();
+    try {
+        
+        // If declared in project source, update from class (if compiled) and overlay source decls
+        if(srcdecls!=null)
+            return srcdecls.updateDecls();
+        return updateClassDecls();
+    }
+    finally { endUpdate(); _owner.unlockDecls(); }
+}
+
+/**
+ * Starts an update: Sets working lists to copies of snapshot lists (or empty lists with null fields if first update).
+ */
+private void beginUpdate()
+{
+    Members members = _members; _updating = true; _workMembers = null;
+    _fdecls = members!=null? new ArrayList(members._fdecls) : null;
+    _mdecls = members!=null? new ArrayList(members._mdecls) : new ArrayList();
+    _cdecls = members!=null? new ArrayList(members._cdecls) : new ArrayList();
+    _icdecls = members!=null? new ArrayList(members._icdecls) : new ArrayList();
+    _tvdecls = members!=null? new ArrayList(members._tvdecls) : new ArrayList();
+    _interfaces = members!=null? members._interfaces : null;
+}
+
+/**
+ * Finishes an update: Publishes working lists as new snapshot (they aren't changed after this) and clears them.
+ */
+private void endUpdate()
+{
     if(_fdecls==null) _fdecls = new ArrayList();
+    if(_interfaces==null) _interfaces = new JavaDeclClass[0];
+    _members = new Members(this);
+    _fdecls = _mdecls = _cdecls = _tvdecls = null; _icdecls = null; _interfaces = null;
+    _workMembers = null; _updating = false;
+}
+
+/**
+ * Returns the current snapshot of interfaces and member decls (updating decls first, if needed).
+ */
+Members getMembers()
+{
+    // If snapshot is set and source hasn't changed, just return it (no lock)
+    Members members = _members; SourceDecls srcdecls = _srcdecls;
+    if(members!=null && (srcdecls==null || !srcdecls.isDirty())) return members;
+    
+    // If source changed, resolve source types first without lock (resolving can load classes)
+    if(srcdecls!=null) srcdecls.resolve();
+    
+    // Otherwise lock and update (if this thread is already updating, return view of working lists)
+    _owner.lockDecls();
+    try {
+        if(_updating) return _workMembers!=null? _workMembers : (_workMembers = new Members(this));
+        if(_members==null || _srcdecls!=null && _srcdecls.isDirty()) updateDecls();
+        return _members;
+    }
+    finally { _owner.unlockDecls(); }
+}
+
+/**
+ * Updates JavaDecls from class file or class.
+ * 
+ * @return whether the decls changed since last update.
+ */
+boolean updateClassDecls()
+{
+    // If created from class file, update from class file
+    if(_cfdecls!=null)
+        return _cfdecls.updateDecls();
+        
+    // If first time, set decls
+    boolean firstTime = _fdecls==null;
+    if(firstTime) _fdecls = new ArrayList();
     
     // Get class
     Class cls = getEvalClass();
@@ -254,13 +391,13 @@ public boolean updateDecls()
         System.err.println("JavaDeclClass: Failed to load class: " + cname); return false; }
         
     // Get interfaces
-    Class interfaces[] = cls.getInterfaces();
+    Class interfaces[] = cls.getInterfaces(); JavaDeclClass oldInfcs[] = _interfaces;
     _interfaces = new JavaDeclClass[interfaces.length];
     for(int i=0,iMax=interfaces.length;i<iMax;i++) { Class infc = interfaces[i];
         _interfaces[i] = getClassDecl(infc); }
     
     // Create set for added/removed decls
-    int addedDecls = 0;
+    boolean infcsChanged = oldInfcs!=null && !Arrays.equals(oldInfcs, _interfaces); int addedDecls = 0;
     HashSet <JavaDecl> removedDecls = new HashSet(getAllDecls());
 
     // Make sure class decl is up to date
@@ -276,11 +413,11 @@ public boolean updateDecls()
         else removedDecls.remove(decl);
     }
     
-    // Inner Classes: Add JavaDecl for each inner class
+    // Inner Classes: Add JavaDecl for each inner class (skip lookups first time, since member maps rebuild per add)
     Class iclss[]; try { iclss = cls.getDeclaredClasses(); }
     catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
     for(Class icls : iclss) {   //if(icls.isSynthetic()) continue;
-        JavaDecl decl = getClassDecl(icls.getSimpleName());
+        JavaDecl decl = firstTime? null : getClassDecl(icls.getSimpleName());
         if(decl==null) { decl = getJavaDecl(icls); addDecl(decl); addedDecls++; }
         else removedDecls.remove(decl);
     }
@@ -289,7 +426,7 @@ public boolean updateDecls()
     Field fields[]; try { fields = cls.getDeclaredFields(); }
     catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
     for(Field field : fields) {
-        JavaDecl decl = getField(field);
+        JavaDecl decl = firstTime? null : getField(field);
         if(decl==null) { decl = new JavaDecl(_owner,this,field); addDecl(decl); addedDecls++; }
         else removedDecls.remove(decl);
     }
@@ -299,7 +436,7 @@ public boolean updateDecls()
     catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
     for(Method meth : methods) {
         if(meth.isSynthetic()) continue;
-        JavaDecl decl = getMethodDecl(meth);
+        JavaDecl decl = firstTime? null : getMethodDecl(meth);
         if(decl==null) { decl = new JavaDecl(_owner,this,meth); addDecl(decl); addedDecls++; }
         else removedDecls.remove(decl);
     }
@@ -309,7 +446,7 @@ public boolean updateDecls()
     catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
     for(Constructor constr : constrs) {
         if(constr.isSynthetic()) continue;
-        JavaDecl decl = getConstructorDecl(constr);
+        JavaDecl decl = firstTime? null : getConstructorDecl(constr);
         if(decl==null) { decl = new JavaDecl(_owner,this,constr); addDecl(decl); addedDecls++; }
         else removedDecls.remove(decl);
     }
@@ -323,55 +460,56 @@ public boolean updateDecls()
     // Remove unused decls
     for(JavaDecl jd : removedDecls) removeDecl(jd);
     
-    // Return whether decls were changed
-    boolean changed = addedDecls>0 || removedDecls.size()>0; if(changed) _allDecls = null;
+    // Return whether decls were changed (if changed after first time, bump versions to clear lookup caches)
+    boolean changed = infcsChanged || addedDecls>0 || removedDecls.size()>0;
+    if(changed && !firstTime) declsChanged(infcsChanged);
     return changed;
 }
 
+/**
+ * Called when an update (after the first) changed decls: Bumps members version of class (so lookup caches of class
+ * and its subtypes are cleared) and owner hierarchy version if super type or interfaces changed.
+ */
+void declsChanged(boolean hierarchyChanged)
+{
+    _membersVersion++;
+    if(hierarchyChanged) _owner._hierarchyVersion++;
+}
+
 /**
  * Returns the interfaces this class implments.
  */
-public JavaDeclClass[] getInterfaces()  { getFields(); return _interfaces; }
+public JavaDeclClass[] getInterfaces()  { return getMembers()._interfaces; }
 
 /**
  * Returns the fields.
  */
-public List <JavaDecl> getFields()  { if(_fdecls==null) updateDecls(); return _fdecls; }
+public List <JavaDecl> getFields()  { return getMembers()._fdecls; }
 
 /**
  * Returns the methods.
  */
-public List <JavaDecl> getMethods()  { getFields(); return _mdecls; }
+public List <JavaDecl> getMethods()  { return getMembers()._mdecls; }
 
 /**
  * Returns the Constructors.
  */
-public List <JavaDecl> getConstructors()  { getFields(); return _cdecls; }
+public List <JavaDecl> getConstructors()  { return getMembers()._cdecls; }
 
 /**
  * Returns the inner classes.
  */
-public List <JavaDeclClass> getClasses()  { getFields(); return _icdecls; }
+public List <JavaDeclClass> getClasses()  { return getMembers()._icdecls; }
 
 /**
  * Returns the inner classes.
  */
-public List <JavaDecl> getTypeVars2()  { getFields(); return _tvdecls; }
+public List <JavaDecl> getTypeVars2()  { return getMembers()._tvdecls; }
 
 /**
  * Returns the list of all decls.
  */
-public List <JavaDecl> getAllDecls()
-{
-    // If already set, just return
-    if(_allDecls!=null) return _allDecls;
-    
-    // Create new AllDecls cached list with decls for fields, methods, constructors, inner classes and this class
-    List <JavaDecl> fdecls = getFields();
-    List <JavaDecl> decls = new ArrayList(fdecls.size() + _mdecls.size() + _cdecls.size() + _icdecls.size() + 1);
-    decls.add(this); decls.addAll(_fdecls); decls.addAll(_mdecls); decls.addAll(_cdecls); decls.addAll(_icdecls);
-    return _allDecls = decls;
-}
+public List <JavaDecl> getAllDecls()  { return getMembers().getAllDecls(); }
 
 /**
  * Returns the field decl for field.
@@ -389,12 +527,7 @@ public JavaDecl getField(Field aField)
 /**
  * Returns a field decl for field name.
  */
-public JavaDecl getField(String aName)
-{
-    List <JavaDecl> fdecls = getFields();
-    for(JavaDecl jd : fdecls) if(jd.getName().equals(aName)) return jd;
-    return null;
-}
+public JavaDecl getField(String aName)  { return getMembers().getFieldsByName().get(aName); }
 
 /**
  * Returns a field decl for field name.
@@ -421,25 +554,29 @@ public JavaDecl getMethodDecl(Method aMeth)
 /**
  * Returns the method decl for id string.
  */
-public JavaDecl getMethodDecl(String anId)
-{
-    List <JavaDecl> mdecls = getMethods();
-    for(JavaDecl jd : mdecls) if(jd.getId().equals(anId)) return jd;
-    return null;
-}
+public JavaDecl getMethodDecl(String anId)  { return getMembers().getMethodsById().get(anId); }
 
 /**
  * Returns a method decl for method name and parameter types.
  */
 public JavaDecl getMethodDecl(String aName, JavaDecl theTypes[])
 {
-    List <JavaDecl> mdecls = getMethods();
+    List <JavaDecl> mdecls = getMethods(aName);
     for(JavaDecl jd : mdecls)
-        if(jd.getName().equals(aName) && isClassTypesEqual(jd.getParamTypes(), theTypes))
+        if(isClassTypesEqual(jd.getParamTypes(), theTypes))
             return jd;
     return null;
 }
 
+/**
+ * Returns the method decls declared in this class for given name.
+ */
+public List <JavaDecl> getMethods(String aName)
+{
+    List <JavaDecl> mdecls = getMembers().getMethodsByName().get(aName);
+    return mdecls!=null? mdecls : Collections.EMPTY_LIST;
+}
+
 /**
  * Returns a method decl for method name and parameter types.
  */
@@ -485,11 +622,10 @@ public List <JavaDecl> getPrefixMethods(String aPrefix)
     // Iterate over classes
     for(JavaDeclClass cls=this;cls!=null;cls=cls.getSuper()) {
         
-        // Get Class methods
-        List <JavaDecl> mdecls = cls.getMethods();
-        for(JavaDecl md : mdecls)
-            if(StringUtils.startsWithIC(md.getName(), aPrefix))
-                pmeths.add(md);
+        // Get Class methods (check each method name once)
+        for(Map.Entry <String,List<JavaDecl>> entry : cls.getMembers().getMethodsByName().entrySet())
+            if(StringUtils.startsWithIC(entry.getKey(), aPrefix))
+                pmeths.addAll(entry.getValue());
                 
         // If interface, iterate over class interfaces, too (should probably do this anyway to catch default methods).
         if(cls.isInterface()) {
@@ -508,6 +644,18 @@ public List <JavaDecl> getPrefixMethods(String aPrefix)
  * Returns a compatibile method for given name and param types.
  */
 public JavaDecl getCompatibleConstructor(JavaDecl theTypes[])
+{
+    // Get cached value for key (if not set, find and cache)
+    MethodKey key = new MethodKey("<init>", theTypes, false);
+    Map <MethodKey,Object> cache = getCompatCache(); Object val = cache.get(key);
+    if(val==null) { JavaDecl decl = getCompatibleConstructorImpl(theTypes); cache.put(key, val = decl!=null? decl : NOT_FOUND); }
+    return val!=NOT_FOUND? (JavaDecl)val : null;
+}
+
+/**
+ * Returns a compatibile method for given name and param types.
+ */
+private JavaDecl getCompatibleConstructorImpl(JavaDecl theTypes[])
 {
     List <JavaDecl> cdecls = getConstructors();
     JavaDecl constr = null; int rating = 0;
@@ -523,13 +671,12 @@ public JavaDecl getCompatibleConstructor(JavaDecl theTypes[])
  */
 public JavaDecl getCompatibleMethod(String aName, JavaDecl theTypes[])
 {
-    List <JavaDecl> mdecls = getMethods();
+    List <JavaDecl> mdecls = getMethods(aName);
     JavaDecl meth = null; int rating = 0;
-    for(JavaDecl md : mdecls)
-        if(md.getName().equals(aName)) {
-            int rtg = getMethodRating(md, theTypes);
-            if(rtg>rating) { meth = md; rating = rtg; }
-        }
+    for(JavaDecl md : mdecls) {
+        int rtg = getMethodRating(md, theTypes);
+        if(rtg>rating) { meth = md; rating = rtg; }
+    }
     return meth;
 }
 
@@ -551,6 +698,18 @@ public JavaDecl getCompatibleMethodDeep(String aName, JavaDecl theTypes[])
  * Returns a compatibile method for given name and param types.
  */
 public JavaDecl getCompatibleMethodAll(String aName, JavaDecl theTypes[])
+{
+    // Get cached value for key (if not set, find and cache)
+    MethodKey key = new MethodKey(aName, theTypes, false);
+    Map <MethodKey,Object> cache = getCompatCache(); Object val = cache.get(key);
+    if(val==null) { JavaDecl decl = getCompatibleMethodAllImpl(aName, theTypes); cache.put(key, val = decl!=null? decl : NOT_FOUND); }
+    return val!=NOT_FOUND? (JavaDecl)val : null;
+}
+
+/**
+ * Returns a compatibile method for given name and param types.
+ */
+private JavaDecl getCompatibleMethodAllImpl(String aName, JavaDecl theTypes[])
 {
     // Search this class and superclasses for compatible method
     JavaDecl decl = getCompatibleMethodDeep(aName, theTypes);
@@ -582,13 +741,12 @@ public JavaDecl getCompatibleMethodAll(String aName, JavaDecl theTypes[])
 public List <JavaDecl> getCompatibleMethods(String aName, JavaDecl theTypes[])
 {
     List <JavaDecl> matches = Collections.EMPTY_LIST;
-    List <JavaDecl> mdecls = getMethods();
-    for(JavaDecl md : mdecls)
-        if(md.getName().equals(aName)) {
-            int rtg = getMethodRating(md, theTypes);
-            if(rtg>0) {
-                if(matches==Collections.EMPTY_LIST) matches = new ArrayList(); matches.add(md); }
-        }
+    List <JavaDecl> mdecls = getMethods(aName);
+    for(JavaDecl md : mdecls) {
+        int rtg = getMethodRating(md, theTypes);
+        if(rtg>0) {
+            if(matches==Collections.EMPTY_LIST) matches = new ArrayList(); matches.add(md); }
+    }
     return matches;
 }
 
@@ -611,38 +769,76 @@ public List <JavaDecl> getCompatibleMethodsDeep(String aName, JavaDecl theTypes[
  * Returns a compatibile method for given name and param types.
  */
 public List <JavaDecl> getCompatibleMethodsAll(String aName, JavaDecl theTypes[])
+{
+    // Get cached value for key (if not set, find and cache)
+    MethodKey key = new MethodKey(aName, theTypes, true);
+    Map <MethodKey,Object> cache = getCompatCache(); Object val = cache.get(key);
+    if(val==null) cache.put(key, val = getCompatibleMethodsAllImpl(aName, theTypes));
+    return (List <JavaDecl>)val;
+}
+
+/**
+ * Returns compatibile methods for given name and param types (unmodifiable).
+ */
+private List <JavaDecl> getCompatibleMethodsAllImpl(String aName, JavaDecl theTypes[])
 {
     // Search this class and superclasses for compatible method
-    List <JavaDecl> matches = Collections.EMPTY_LIST;
-    List <JavaDecl> decls = getCompatibleMethodsDeep(aName, theTypes);
-    if(decls.size()>0) {
-        if(matches==Collections.EMPTY_LIST) matches = decls; else matches.addAll(decls); }
+    List <JavaDecl> matches = new ArrayList(getCompatibleMethodsDeep(aName, theTypes));
     
     // Search this class and superclasses for compatible interface
     for(JavaDeclClass cls=this;cls!=null;cls=cls.getSuper()) {
-        for(JavaDeclClass infc : cls.getInterfaces()) {
-            decls = infc.getCompatibleMethodsAll(aName, theTypes);
-            if(decls.size()>0) {
-                if(matches==Collections.EMPTY_LIST) matches = decls; else matches.addAll(decls); }
-        }
+        for(JavaDeclClass infc : cls.getInterfaces())
+            matches.addAll(infc.getCompatibleMethodsAll(aName, theTypes));
     }
     
     // If this class is Interface, check Object
     if(isInterface()) {
         JavaDeclClass objDecl = getClassDecl(Object.class);
-        decls = objDecl.getCompatibleMethodsDeep(aName, theTypes);
-        if(decls.size()>0) {
-            if(matches==Collections.EMPTY_LIST) matches = decls; else matches.addAll(decls); }
+        matches.addAll(objDecl.getCompatibleMethodsDeep(aName, theTypes));
     }
     
-    // Remove supers and duplicates
-    for(int i=0;i<matches.size();i++) { JavaDecl decl = matches.get(i);
-        for(JavaDecl sd=decl.getSuper();sd!=null;sd=sd.getSuper()) matches.remove(sd);
-        for(int j=i+1;j<matches.size();j++) if(matches.get(j)==decl) matches.remove(j);
+    // If no matches, just return
+    if(matches.size()==0) return Collections.EMPTY_LIST;
+    
+    // Remove supers and duplicates (with identity sets instead of repeated List.remove)
+    if(matches.size()>1) {
+        Set <JavaDecl> supers = Collections.newSetFromMap(new IdentityHashMap());
+        for(JavaDecl decl : matches)
+            for(JavaDecl sd=decl.getSuper();sd!=null;sd=sd.getSuper()) supers.add(sd);
+        Set <JavaDecl> added = Collections.newSetFromMap(new IdentityHashMap());
+        List <JavaDecl> list = new ArrayList(matches.size());
+        for(JavaDecl decl : matches)
+            if(!supers.contains(decl) && added.add(decl))
+                list.add(decl);
+        matches = list;
     }
     
-    // Return null since compatible method not found
-    return matches;
+    // Return matches
+    return Collections.unmodifiableList(matches);
+}
+
+/**
+ * Returns the compatible method cache (cleared if hierarchy or members of class or supertypes have changed since it
+ * was filled).
+ */
+private Map <MethodKey,Object> getCompatCache()
+{
+    Map <MethodKey,Object> cache = _compatCache; long stamp = getMembersStamp();
+    if(cache==null || _compatCacheStamp!=stamp) {
+        _compatCache = cache = new java.util.concurrent.ConcurrentHashMap(); _compatCacheStamp = stamp; }
+    return cache;
+}
+
+/**
+ * Returns a stamp that changes when hierarchy or members of this class or its supertypes change (interface lookups
+ * also check Object).
+ */
+private long getMembersStamp()
+{
+    SuperTypes stypes = getSuperTypes(); long sum = 0;
+    for(JavaDeclClass stype : stypes._types) sum += stype._membersVersion;
+    if(isInterface()) sum += getClassDecl(Object.class)._membersVersion;
+    return (long)stypes._version<<32 | sum & 0xffffffffL;
 }
 
 /**
@@ -753,12 +949,7 @@ public JavaDecl getConstructorDecl(Constructor aConstr)
 /**
  * Returns the Constructor decl for id string.
  */
-public JavaDecl getConstructorDecl(String anId)
-{
-    List <JavaDecl> cdecls = getConstructors();
-    for(JavaDecl jd : cdecls) if(jd.getId().equals(anId)) return jd;
-    return null;
-}
+public JavaDecl getConstructorDecl(String anId)  { return getMembers().getConstrsById().get(anId); }
 
 /**
  * Returns a constructor decl for parameter types.
@@ -833,6 +1024,12 @@ public int getTypeVarIndex(String aName)
  */
 public void addDecl(JavaDecl aDecl)
 {
+    // If not updating, lock and do as update (so change is published in new snapshot)
+    if(!_updating || !_owner._lock.isHeldByCurrentThread()) { _owner.lockDecls(); getMembers(); beginUpdate();
+        try { addDecl(aDecl); } finally { endUpdate(); _owner.unlockDecls(); } return; }
+    
+    // Add to working list
+    _workMembers = null;
     JavaDecl.DeclType type = aDecl.getType();
     switch(type) {
         case Field: _fdecls.add(aDecl); break;
@@ -849,6 +1046,12 @@ public void addDecl(JavaDecl aDecl)
  */
 public void removeDecl(JavaDecl aDecl)
 {
+    // If not updating, lock and do as update (so change is published in new snapshot)
+    if(!_updating || !_owner._lock.isHeldByCurrentThread()) { _owner.lockDecls(); getMembers(); beginUpdate();
+        try { removeDecl(aDecl); } finally { endUpdate(); _owner.unlockDecls(); } return; }
+    
+    // Remove from working list
+    _workMembers = null;
     JavaDecl.DeclType type = aDecl.getType();
     switch(type) {
         case Field: _fdecls.remove(aDecl); break;
@@ -865,6 +1068,138 @@ public void removeDecl(JavaDecl aDecl)
  */
 public String toString()  { return "ClassDecl { ClassName=" + getClassName() + " }"; }
 
+/**
+ * A snapshot of the interfaces and member decls of a class decl. Lists aren't changed once published (updates work
+ * on copies), so snapshot can be read by any thread without locks. Lookup maps are created lazily.
+ */
+static class Members {
+    
+    // The class decl and interfaces
+    final JavaDeclClass                  _cdecl, _interfaces[];
+    
+    // The field, method, constructor, inner class and type var decls
+    final List <JavaDecl>                _fdecls, _mdecls, _cdecls, _tvdecls;
+    final List <JavaDeclClass>           _icdecls;
+    
+    // The list of all decls (created lazily)
+    volatile List <JavaDecl>             _allDecls;
+    
+    // Maps of field decls by name, method decls by name and id, constructor decls by id (created lazily, ConstrsById last)
+    volatile Map <String,JavaDecl>       _fieldsByName, _methodsById, _constrsById;
+    volatile Map <String,List<JavaDecl>> _methodsByName;
+    
+    /** Creates a new Members for the current (working) lists of given class decl. */
+    Members(JavaDeclClass aCD)
+    {
+        _cdecl = aCD; _interfaces = aCD._interfaces;
+        _fdecls = aCD._fdecls!=null? aCD._fdecls : Collections.EMPTY_LIST;
+        _mdecls = aCD._mdecls; _cdecls = aCD._cdecls; _icdecls = aCD._icdecls; _tvdecls = aCD._tvdecls;
+    }
+    
+    /** Returns the list of all decls: this class, fields, methods, constructors and inner classes. */
+    List <JavaDecl> getAllDecls()
+    {
+        List <JavaDecl> decls = _allDecls; if(decls!=null) return decls;
+        decls = new ArrayList(_fdecls.size() + _mdecls.size() + _cdecls.size() + _icdecls.size() + 1);
+        decls.add(_cdecl); decls.addAll(_fdecls); decls.addAll(_mdecls); decls.addAll(_cdecls); decls.addAll(_icdecls);
+        return _allDecls = decls;
+    }
+    
+    /** Returns the map of fields by name. */
+    Map <String,JavaDecl> getFieldsByName()  { if(_constrsById==null) createMaps(); return _fieldsByName; }
+    
+    /** Returns the map of methods by name. */
+    Map <String,List<JavaDecl>> getMethodsByName()  { if(_constrsById==null) createMaps(); return _methodsByName; }
+    
+    /** Returns the map of methods by id. */
+    Map <String,JavaDecl> getMethodsById()  { if(_constrsById==null) createMaps(); return _methodsById; }
+    
+    /** Returns the map of constructors by id. */
+    Map <String,JavaDecl> getConstrsById()  { if(_constrsById==null) createMaps(); return _constrsById; }
+    
+    /** Creates the maps of fields, methods and constructors by name/id (threads may race to create equal maps). */
+    private void createMaps()
+    {
+        // Create field map
+        Map <String,JavaDecl> fmap = new HashMap(_fdecls.size()*2);
+        for(JavaDecl jd : _fdecls) fmap.put(jd.getName(), jd);
+        
+        // Create method maps
+        Map <String,List<JavaDecl>> mmap = new HashMap(_mdecls.size()*2); Map <String,JavaDecl> midmap = new HashMap();
+        for(JavaDecl jd : _mdecls) { midmap.put(jd.getId(), jd);
+            List <JavaDecl> list = mmap.get(jd.getName());
+            if(list==null) mmap.put(jd.getName(), list = new ArrayList(2));
+            list.add(jd);
+        }
+        
+        // Create constructor map
+        Map <String,JavaDecl> cmap = new HashMap(_cdecls.size()*2);
+        for(JavaDecl jd : _cdecls) cmap.put(jd.getId(), jd);
+        
+        // Set maps (ConstrsById last, since it marks maps as set)
+        _fieldsByName = fmap; _methodsByName = mmap; _methodsById = midmap; _constrsById = cmap;
+    }
+}
+
+/**
+ * The supertypes of a class: Ids and decls of class and all its superclasses and interfaces (sorted by id).
+ */
+static class SuperTypes {
+
+    // The sorted ids, the decls for ids and the Owner.HierarchyVersion
+    int             _ids[];
+    JavaDeclClass   _types[];
+    int             _version;
+    
+    /** Creates a new SuperTypes. */
+    SuperTypes(int theIds[], JavaDeclClass theTypes[], int aVersion)  { _ids = theIds; _types = theTypes; _version = aVersion; }
+    
+    /** Returns new SuperTypes with ids and types of both (merged in id order, without duplicates). */
+    SuperTypes merge(SuperTypes other, int aVersion)
+    {
+        int ids1[] = _ids, ids2[] = other._ids, len1 = ids1.length, len2 = ids2.length, i = 0, j = 0, k = 0;
+        int ids[] = new int[len1 + len2]; JavaDeclClass types[] = new JavaDeclClass[len1 + len2];
+        while(i<len1 || j<len2) {
+            if(j>=len2 || i<len1 && ids1[i]<ids2[j]) { ids[k] = ids1[i]; types[k++] = _types[i++]; }
+            else if(i>=len1 || ids2[j]<ids1[i]) { ids[k] = ids2[j]; types[k++] = other._types[j++]; }
+            else { ids[k] = ids1[i]; types[k++] = _types[i++]; j++; }
+        }
+        return new SuperTypes(k<ids.length? Arrays.copyOf(ids, k) : ids, k<types.length? Arrays.copyOf(types, k) : types,
+            aVersion);
+    }
+}
+
+/**
+ * A key for compatible method lookups: name, arg types (by identity) and whether lookup is for all methods.
+ */
+private static class MethodKey {
+    
+    // The name, arg types, whether for all methods and hash code
+    String _name; JavaDecl _types[]; boolean _all; int _hash;
+    
+    /** Creates a new MethodKey. */
+    MethodKey(String aName, JavaDecl theTypes[], boolean isAll)
+    {
+        _name = aName; _types = theTypes.clone(); _all = isAll;
+        int hash = aName.hashCode()*31 + (isAll? 1 : 0);
+        for(JavaDecl type : _types) hash = hash*31 + System.identityHashCode(type);
+        _hash = hash;
+    }
+    
+    /** Standard equals implementation (arg types compared by identity). */
+    public boolean equals(Object anObj)
+    {
+        MethodKey other = anObj instanceof MethodKey? (MethodKey)anObj : null; if(other==null) return false;
+        if(other._hash!=_hash || other._all!=_all || !other._name.equals(_name) || other._types.length!=_types.length)
+            return false;
+        for(int i=0;i<_types.length;i++) if(other._types[i]!=_types[i]) return false;
+        return true;
+    }
+    
+    /** Standard hashCode implementation. */
+    public int hashCode()  { return _hash; }
+}
+
 // Bogus class to get length
 private static class Array { public int length; }
 private static Field getLenField() { try { return Array.class.getField("length"); } catch(Exception e) { return null; }}
@@ -1,32 +1,115 @@
 package snap.javakit;
+import java.io.*;
+import java.lang.ref.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import snap.project.Metrics;
 import snap.util.ClassUtils;
 
 /**
  * A class that manages all the JavaDecls for a project.
+ *
+ * Decls can be read from any thread without locks. Creating decls and updating class decl members happens with the
+ * decls lock held (see lockDecls()), and new decls and member snapshots are only published when complete.
  */
 public abstract class JavaDeclOwner {
 
     // A map of class/package names to JavaDecls to provide JavaDecls for project
-    Map <String,JavaDecl>   _decls = new HashMap();
+    DeclMap                 _decls = new DeclMap();
     
+    // A set of shared param type and type var arrays (so identical arrays are stored once), weakly referenced so arrays
+    // of decls that are gone are pruned
+    Map <SharedDecls,SharedDecls>  _sharedDecls = new HashMap();
+    ReferenceQueue <JavaDecl[]>    _sharedDeclsQueue = new ReferenceQueue();
+    
+    // The lock held to create decls and update class decl members
+    ReentrantLock           _lock = new ReentrantLock();
+    
+    // A set of names known not to be classes for current ClassLoader (cleared when ClassLoader changes)
+    Set <String>            _missNames = ConcurrentHashMap.newKeySet();
+    
+    // The ClassLoader that MissNames applies to
+    volatile ClassLoader    _missNamesLdr;
+    
+    // The super class and interface names of classes, from class files (for assignability of classes not loaded)
+    Map <String,String[]>   _superTypeNames = new ConcurrentHashMap();
+    
+    // A version number incremented when existing class decls change super type or interfaces (to invalidate supertype
+    // sets and lookup caches that depend on assignability)
+    volatile int            _hierarchyVersion;
+    
+    // The number of class decls created (used to assign class decl ids)
+    int                     _classCount;
+    
+    // Whether to create class decls from class file bytes instead of reflection
+    boolean                 _classFileDecls = CLASS_FILE_DECLS;
+    
+    // Whether owners create class decls from class file bytes by default (-Dsnapcode.ClassFileDecls=true)
+    public static boolean   CLASS_FILE_DECLS = Boolean.getBoolean("snapcode.ClassFileDecls");
+    
+    // Whether to share identical decl arrays (turned off only by bench owners to measure footprint without sharing)
+    boolean                 _shareDecls = true;
+    
+    // A map of class names to snapshots of parsed classes from project source files (for classes not yet compiled)
+    Map <String,SourceDecls.SourceClass> _srcClassDecls = new ConcurrentHashMap();
+    
+    // Counts of class lookups: answered by MissNames, answered by class path index, loaded, not found by loader
+    LongAdder               _missCacheHits = new LongAdder(), _missIndexHits = new LongAdder();
+    LongAdder               _loadHits = new LongAdder(), _loadMisses = new LongAdder();
+    
+/**
+ * Creates a new JavaDeclOwner.
+ */
+public JavaDeclOwner()  { }
+
+/**
+ * Creates a new JavaDeclOwner with option to not share identical decl arrays (to measure footprint without sharing).
+ */
+protected JavaDeclOwner(boolean shareDecls)  { _shareDecls = shareDecls; }
+
 /**
  * Returns a JavaDecl for object.
  */
 public JavaDecl getJavaDecl(Object anObj)
+{
+    // If String (Class or package name) and decl exists for name, just return (no lock)
+    if(anObj instanceof String) { JavaDecl jd = _decls.get((String)anObj); if(jd!=null) return jd; }
+    
+    // Get or create decl with decls locked
+    lockDecls();
+    try { return getJavaDeclImpl(anObj); }
+    finally { unlockDecls(); }
+}
+
+/**
+ * Returns a JavaDecl for object (called with decls locked).
+ */
+private JavaDecl getJavaDeclImpl(Object anObj)
 {
     // Handle String (Class or package name)
     if(anObj instanceof String) { String id = (String)anObj;
     
-        // If decl exists for name, just return
+        // If decl exists for name (could have been added before lock), just return
         JavaDecl jd = _decls.get(id); if(jd!=null) return jd;
         
+        // If JVM array name (like "[Ljava.lang.String;"), get decl for type name (arrays are only mapped by type name)
+        if(id.startsWith("["))
+            return getJavaDecl(ClassFileDecls.getTypeName(id));
+        
+        // If creating decls from class files and class file exists, return its decl
+        if(isClassFileDecls()) {
+            jd = getClassFileDecl(id); if(jd!=null) return jd; }
+        
         // If class exists, forward to getClassDecl()
         Class cls = getClass(id);
         if(cls!=null)
             return getClassDecl(cls);
-        return null;
+        
+        // If class is declared in project source (not compiled yet), return decl from source
+        return getSourceDecl(id);
     }
     
     // Handle Class
@@ -80,13 +163,37 @@ public JavaDeclClass getJavaDeclClass(Object anObj)
     return cd instanceof JavaDeclClass? (JavaDeclClass)cd : null;
 }
 
+/**
+ * Returns whether given subtype class decl is given supertype class decl or has it as superclass or interface.
+ */
+public boolean isSubtype(JavaDeclClass aSubtype, JavaDeclClass aSupertype)
+{
+    if(aSubtype==null || aSupertype==null) return false;
+    return aSubtype.isSubtypeOf(aSupertype);
+}
+
 /**
  * Returns a JavaDecl for type.
  */
 public JavaDecl getTypeDecl(Type aType)
 {
+    // If decl exists for id, just return (no lock)
     String id = JavaKitUtils.getId(aType);
     JavaDecl decl = _decls.get(id); if(decl!=null) return decl;
+    
+    // Get or create decl with decls locked
+    lockDecls();
+    try { return getTypeDeclImpl(aType, id); }
+    finally { unlockDecls(); }
+}
+
+/**
+ * Returns a JavaDecl for type (called with decls locked).
+ */
+private JavaDecl getTypeDeclImpl(Type aType, String anId)
+{
+    // If decl exists for id (could have been added before lock), just return
+    JavaDecl decl = _decls.get(anId); if(decl!=null) return decl;
 
     // Handle ParameterizedType
     if(aType instanceof ParameterizedType) {
@@ -112,10 +219,14 @@ public JavaDecl getTypeDecl(Type aType)
  */
 private JavaDeclClass getClassDecl(Class aClass)
 {
-    // Lookup class decl by name and return if already set
-    String cname = aClass.getName();
+    // Lookup class decl by id and return if already set
+    String cname = JavaKitUtils.getId(aClass);
     JavaDeclClass decl = (JavaDeclClass)_decls.get(cname); if(decl!=null) return decl;
     
+    // If creating decls from class files, try that first
+    if(isClassFileDecls() && !aClass.isPrimitive()) {
+        decl = getClassFileDecl(JavaKitUtils.getId(aClass)); if(decl!=null) return decl; }
+    
     // Create decl and return
     JavaDecl parDecl = getParentDecl(aClass);
     decl = new JavaDeclClass(this, parDecl, aClass);
@@ -143,12 +254,17 @@ private JavaDecl getParentDecl(Class aClass)
 /**
  * Returns a package decl.
  */
-private JavaDecl getPackageDecl(String aName)
+JavaDecl getPackageDecl(String aName)
 {
     if(aName==null || aName.length()==0) return null;  // If bogus package name, just return
-    JavaDecl pdecl = _decls.get(aName);
-    if(pdecl==null) _decls.put(aName, pdecl = createPackageDecl(aName));
-    return pdecl;
+    JavaDecl pdecl = _decls.get(aName); if(pdecl!=null) return pdecl;
+    lockDecls();
+    try {
+        pdecl = _decls.get(aName);
+        if(pdecl==null) _decls.put(aName, pdecl = createPackageDecl(aName));
+        return pdecl;
+    }
+    finally { unlockDecls(); }
 }
 
 /**
@@ -175,9 +291,63 @@ protected JavaDecl getParamTypeDecl(JavaDecl aDecl, JavaDecl theTypeDecls[])
     String id = JavaKitUtils.getParamTypeId(aDecl, theTypeDecls);
     JavaDecl jd = _decls.get(id); if(jd!=null) return jd;
     
-    // Create new decl, add to map and return
-    _decls.put(id, jd = new JavaDecl(this, aDecl, theTypeDecls, id));
-    return jd;
+    // Create new decl with decls locked (unless added before lock), add to map and return
+    lockDecls();
+    try {
+        jd = _decls.get(id); if(jd!=null) return jd;
+        _decls.put(id, jd = new JavaDecl(this, aDecl, theTypeDecls, id));
+        return jd;
+    }
+    finally { unlockDecls(); }
+}
+
+/**
+ * Locks decls to create decls or update class decl members (reentrant). Decls created while locked are published to
+ * other threads when outermost lock is released.
+ */
+public void lockDecls()
+{
+    _lock.lock();
+    if(_lock.getHoldCount()==1) _decls.beginWrite();
+}
+
+/**
+ * Unlocks decls.
+ */
+public void unlockDecls()
+{
+    if(_lock.getHoldCount()==1) _decls.endWrite();
+    _lock.unlock();
+}
+
+/**
+ * Returns a shared array of decls equal to given array (so identical param type and type var arrays are stored once).
+ * Shared arrays are weakly referenced, and entries of collected arrays are pruned on each call.
+ */
+synchronized JavaDecl[] getSharedDecls(JavaDecl theDecls[])
+{
+    // If not sharing or empty, just return
+    if(!_shareDecls) return theDecls;
+    if(theDecls.length==0) return JavaDecl.EMPTY_DECLS;
+    
+    // Prune entries of collected arrays
+    for(Reference ref=_sharedDeclsQueue.poll(); ref!=null; ref=_sharedDeclsQueue.poll())
+        _sharedDecls.remove(ref);
+    
+    // Return shared array, if found, otherwise add given array
+    SharedDecls shared = _sharedDecls.get(new SharedDecls(theDecls, null));
+    JavaDecl decls[] = shared!=null? shared.get() : null; if(decls!=null) return decls;
+    shared = new SharedDecls(theDecls, _sharedDeclsQueue); _sharedDecls.put(shared, shared);
+    return theDecls;
+}
+
+/**
+ * Returns a string describing decl table size and sharing.
+ */
+public String getDeclStats()
+{
+    return "Decls: Count=" + _decls.size() + ", TableCapacity=" + _decls.getCapacity() +
+        ", SharedArrays=" + _sharedDecls.size() + ", Classes=" + _classCount;
 }
 
 /**
@@ -194,12 +364,198 @@ public Class getClass(String aName)
     if(aName.indexOf('<')>0) { int ind = aName.indexOf('<');
         System.err.println("JavaDeclOwner.getClass: Shouldn't happen: " + aName); aName = aName.substring(0,ind); }
     
-    // Get Class loader, find class and return
+    // Get Class loader (if new, clear known missing names and super type names)
     ClassLoader cldr = getClassLoader();
+    if(cldr!=_missNamesLdr) { _missNames.clear(); _superTypeNames.clear(); _missNamesLdr = cldr; }
+    
+    // If name is known to be missing, or class path index says it is, just return
+    if(_missNames.contains(aName)) { _missCacheHits.increment(); Metrics.count("classLoad.missCacheHits"); return null; }
+    if(isClassNameMissing(aName)) { _missNames.add(aName); _missIndexHits.increment(); Metrics.count("classLoad.missIndexHits");
+        return null; }
+    
+    // Find class (add to missing names if not found) and return
+    long time = Metrics.start();
     Class cls = ClassUtils.getClass(aName, cldr);
+    Metrics.stop("classLoad.loadClass", time);
+    if(cls!=null) _loadHits.increment();
+    else { _missNames.add(aName); _loadMisses.increment(); }
     return cls;
 }
 
+/**
+ * Returns whether class decls are created from class file bytes instead of reflection (classes aren't loaded).
+ */
+public boolean isClassFileDecls()  { return _classFileDecls; }
+
+/**
+ * Sets whether class decls are created from class file bytes instead of reflection (should be set before decls).
+ */
+public void setClassFileDecls(boolean aValue)  { _classFileDecls = aValue; }
+
+/**
+ * Returns a class decl created from class file for given class name (or null if class file not found).
+ */
+protected JavaDeclClass getClassFileDecl(String aName)
+{
+    // Handle JVM array name (like "[Ljava.lang.String;") and primitive (reflection is fine, since always loaded)
+    String name = ClassFileDecls.getTypeName(aName);
+    if(ClassFileDecls.isPrimitiveName(name)) return null;
+    
+    // If decl exists for name, just return
+    JavaDecl jd = _decls.get(name); if(jd instanceof JavaDeclClass) return (JavaDeclClass)jd;
+    
+    // Handle array: Get item decl and create array decl
+    if(name.endsWith("[]")) {
+        JavaDeclClass idecl = getJavaDeclClass(name.substring(0, name.length()-2));
+        return idecl!=null? ClassFileDecls.createArrayDecl(this, idecl) : null;
+    }
+    
+    // Get class file bytes and create decl (if name was inner class with dots, it might be registered now)
+    byte bytes[] = getClassBytes(name); if(bytes==null) return null;
+    JavaDeclClass decl = ClassFileDecls.createClassDecl(this, bytes);
+    if(decl!=null && !decl.getName().equals(name)) _decls.put(name, decl);
+    return decl;
+}
+
+/**
+ * Returns the class file bytes for given class name (tries inner class names for dotted names, like Map.Entry).
+ */
+protected byte[] getClassBytes(String aName)
+{
+    // Get Class loader (if new, clear known missing names and super type names)
+    ClassLoader cldr = getClassLoader();
+    if(cldr!=_missNamesLdr) { _missNames.clear(); _superTypeNames.clear(); _missNamesLdr = cldr; }
+    
+    // If name is known to be missing, or class path index says it is, just return
+    if(_missNames.contains(aName)) { _missCacheHits.increment(); Metrics.count("classLoad.missCacheHits"); return null; }
+    if(isClassNameMissing(aName)) { _missNames.add(aName); _missIndexHits.increment(); Metrics.count("classLoad.missIndexHits");
+        return null; }
+    
+    // Read class file resource for name (and inner class names)
+    long time = Metrics.start();
+    for(String name=aName; name!=null; ) {
+        byte bytes[] = getResourceBytes(cldr, name.replace('.', '/') + ".class");
+        if(bytes!=null) { Metrics.stop("classLoad.classBytes", time); return bytes; }
+        int ind = name.lastIndexOf('.'); name = ind>0? name.substring(0,ind) + '$' + name.substring(ind+1) : null;
+    }
+    
+    // Add to missing names and return null
+    _missNames.add(aName); _loadMisses.increment();
+    return null;
+}
+
+/**
+ * Returns whether class for given name is given super type name or has it as superclass or interface, from class file
+ * super type data (so classes aren't loaded and decls aren't created).
+ */
+public boolean isSubtypeName(String aName, String aSuperName)
+{
+    if(aName.equals(aSuperName) || aSuperName.equals("java.lang.Object")) return true;
+    for(String sname : getSuperTypeNames(aName))
+        if(sname!=null && isSubtypeName(sname, aSuperName)) return true;
+    return false;
+}
+
+/**
+ * Returns the super class name (null for Object) and interface names for given class name, from class file (cached).
+ */
+private String[] getSuperTypeNames(String aName)
+{
+    // If already read, just return
+    String names[] = _superTypeNames.get(aName); if(names!=null) return names;
+    
+    // Read from class file (empty if not found)
+    byte bytes[] = getClassBytes(aName); names = new String[0];
+    if(bytes!=null)
+        try { names = ClassFileData.readSuperTypeNames(new DataInputStream(new ByteArrayInputStream(bytes))); }
+        catch(IOException e) { System.err.println("JavaDeclOwner.getSuperTypeNames: " + e + " in " + aName); }
+    _superTypeNames.put(aName, names);
+    return names;
+}
+
+/**
+ * Returns the bytes for given resource path from given ClassLoader.
+ */
+private static byte[] getResourceBytes(ClassLoader aLoader, String aPath)
+{
+    InputStream is = aLoader!=null? aLoader.getResourceAsStream(aPath) : ClassLoader.getSystemResourceAsStream(aPath);
+    if(is==null) return null;
+    try(InputStream is2 = is) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(); byte buf[] = new byte[8192];
+        for(int len=is2.read(buf); len>0; len=is2.read(buf)) bos.write(buf, 0, len);
+        return bos.toByteArray();
+    }
+    catch(IOException e) { System.err.println("JavaDeclOwner.getResourceBytes: " + e); return null; }
+}
+
+/**
+ * Sets the parsed project source file for the classes it declares, so their decls include members (and classes)
+ * that haven't been compiled yet. Called by the thread that owns the parsed file (editor event thread), which is the
+ * only thread that reads parsed nodes: It takes immutable snapshots of the classes without decls lock, and class decls
+ * resolve and apply the new snapshot on next read.
+ */
+public void setSourceFile(JFile aJFile)
+{
+    for(SourceDecls.SourceClass src : SourceDecls.getSourceClasses(aJFile))
+        setSourceClass(src);
+}
+
+/**
+ * Sets the parsed class snapshot for its class name (and member classes).
+ */
+private void setSourceClass(SourceDecls.SourceClass aSrc)
+{
+    // Add to map (existing source decls see it as dirty) and attach source decls to existing class decl, if needed
+    _srcClassDecls.put(aSrc._name, aSrc);
+    JavaDecl jd = _decls.get(aSrc._name);
+    if(jd instanceof JavaDeclClass && ((JavaDeclClass)jd)._srcdecls==null)
+        ((JavaDeclClass)jd)._srcdecls = new SourceDecls((JavaDeclClass)jd);
+    
+    // Iterate over member classes
+    for(SourceDecls.SourceClass mc : aSrc._classes)
+        setSourceClass(mc);
+}
+
+/**
+ * Returns the source decls for given new class decl, if class is declared in project source.
+ */
+SourceDecls createSourceDecls(JavaDeclClass aClassDecl)
+{
+    boolean isSrc = _srcClassDecls.size()>0 && _srcClassDecls.containsKey(aClassDecl.getId());
+    return isSrc? new SourceDecls(aClassDecl) : null;
+}
+
+/**
+ * Returns a class decl created from project source for given class name (or null if not declared in source).
+ */
+protected JavaDeclClass getSourceDecl(String aName)
+{
+    // Handle array: Get item decl and create array decl (if item is from source, otherwise class would have found it)
+    if(aName.endsWith("[]")) {
+        JavaDecl idecl = getJavaDecl(aName.substring(0, aName.length()-2));
+        JavaDeclClass icdecl = idecl instanceof JavaDeclClass? (JavaDeclClass)idecl : null;
+        return icdecl!=null && icdecl._srcdecls!=null? ClassFileDecls.createArrayDecl(this, icdecl) : null;
+    }
+    
+    // Get parsed class snapshot and create decl
+    SourceDecls.SourceClass src = _srcClassDecls.get(aName);
+    return src!=null? SourceDecls.createClassDecl(this, aName, src) : null;
+}
+
+/**
+ * Returns whether given class name is certainly not available (override to check class path index).
+ */
+protected boolean isClassNameMissing(String aName)  { return false; }
+
+/**
+ * Returns a string describing class lookup counts (how many misses were served without the ClassLoader).
+ */
+public String getClassLookupStats()
+{
+    return "Class lookups: MissCacheHits=" + _missCacheHits.sum() + ", MissIndexHits=" + _missIndexHits.sum() +
+        ", LoadHits=" + _loadHits.sum() + ", LoadMisses=" + _loadMisses.sum() + ", MissNames=" + _missNames.size();
+}
+
 /**
  * Returns reference nodes in given JNode that match given JavaDecl.
  */
@@ -285,4 +641,30 @@ public static String getSimpleName(String cname)
     return cname;
 }
 
-}
\ No newline at end of file
+/**
+ * A weak reference to a shared decl array, with hash and equality of array contents (a cleared reference only equals
+ * itself, so it can still be removed).
+ */
+private static class SharedDecls extends WeakReference <JavaDecl[]> {
+
+    // The hash of array contents
+    int        _hash;
+
+    /** Creates a new SharedDecls. */
+    SharedDecls(JavaDecl theDecls[], ReferenceQueue <JavaDecl[]> aQueue)
+    { super(theDecls, aQueue); _hash = Arrays.hashCode(theDecls); }
+
+    /** Standard equals implementation. */
+    public boolean equals(Object anObj)
+    {
+        if(anObj==this) return true;
+        if(!(anObj instanceof SharedDecls)) return false;
+        JavaDecl decls[] = get(), decls2[] = ((SharedDecls)anObj).get();
+        return decls!=null && Arrays.equals(decls, decls2);
+    }
+
+    /** Standard hashCode implementation. */
+    public int hashCode()  { return _hash; }
+}
+
+}
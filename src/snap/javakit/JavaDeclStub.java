@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.lang.reflect.Modifier;
+
+/**
+ * A JavaDecl for a Class or Constructor known only from class path metadata (class name, access flags and
+ * constructor descriptor), so it can be offered as a suggestion without loading the class.
+ * The real decl is resolved on demand with getDecl().
+ */
+public class JavaDeclStub extends JavaDecl {
+
+    // The class name
+    String         _cname;
+
+    // The Constructor parameter type names and simple names
+    String         _ptypeNames[], _ptypeSNames[];
+
+    // The real decl (once resolved)
+    JavaDecl       _decl;
+
+    // The class file access flags that are also class modifiers
+    static final int CLASS_MODIFIERS = Modifier.PUBLIC | Modifier.FINAL | Modifier.INTERFACE | Modifier.ABSTRACT;
+
+/**
+ * Creates a new JavaDeclStub for given class name, class file access flags and constructor descriptor
+ * (or null for class).
+ */
+public JavaDeclStub(JavaDeclOwner anOwner, String aClassName, int theMods, String aDesc)
+{
+    super(anOwner, null, aClassName, aDesc!=null? getConstructorId(aClassName, aDesc) : aClassName);
+
+    // Set class name and modifiers (constructors are always public, class drops class file only flags like ACC_SUPER)
+    _cname = aClassName; _mods = aDesc!=null? Modifier.PUBLIC : theMods & CLASS_MODIFIERS;
+    _type = aDesc!=null? DeclType.Constructor : DeclType.Class;
+    _name = aDesc!=null? _sname : aClassName;
+
+    // If constructor, get param type names
+    if(aDesc!=null) {
+        _ptypeNames = ClassFileDecls.getParamTypeNames(aDesc); _ptypeSNames = new String[_ptypeNames.length];
+        for(int i=0;i<_ptypeNames.length;i++) _ptypeSNames[i] = JavaDeclOwner.getSimpleName(_ptypeNames[i]);
+    }
+}
+
+/**
+ * Override to return true for class stub.
+ */
+public boolean isClass()  { return _type==DeclType.Class; }
+
+/**
+ * Override to return null, since class isn't loaded.
+ */
+public JavaDeclClass getClassType()  { return null; }
+
+/**
+ * Override to return class name.
+ */
+public String getClassName()  { return _cname; }
+
+/**
+ * Override to return class simple name.
+ */
+public String getClassSimpleName()  { return JavaDeclOwner.getSimpleName(_cname); }
+
+/**
+ * Override to return declaring class name or package name.
+ */
+public String getParentName()
+{
+    int ind = _cname.lastIndexOf('$'); if(ind<0) ind = _cname.lastIndexOf('.');
+    return ind>0? _cname.substring(0, ind) : "";
+}
+
+/**
+ * Override to return top level class name.
+ */
+public String getRootClassName()
+{
+    int ind = _cname.indexOf('$');
+    return ind>0? _cname.substring(0, ind) : _cname;
+}
+
+/**
+ * Override to return whether class is member class.
+ */
+public boolean isMemberClass()  { return isClass() && _cname.indexOf('$')>0; }
+
+/**
+ * Override to return constructor param count.
+ */
+public int getParamCount()  { return _ptypeNames!=null? _ptypeNames.length : 0; }
+
+/**
+ * Override to return constructor param type names.
+ */
+public String[] getParamTypeNames()  { return _ptypeNames!=null? _ptypeNames : new String[0]; }
+
+/**
+ * Override to return constructor param type simple names.
+ */
+public String[] getParamTypeSimpleNames()  { return _ptypeSNames!=null? _ptypeSNames : new String[0]; }
+
+/**
+ * Returns the real decl for this stub (loads class).
+ */
+public JavaDecl getDecl()
+{
+    if(_decl!=null) return _decl;
+    JavaDeclClass cdecl = _owner.getJavaDeclClass(_cname); if(cdecl==null) return null;
+    return _decl = isClass()? cdecl : cdecl.getConstructorDecl(getId());
+}
+
+/**
+ * Returns a constructor id (same as JavaKitUtils.getId(Constructor)) for class name and descriptor.
+ */
+private static String getConstructorId(String aClassName, String aDesc)
+{
+    StringBuffer sb = new StringBuffer(aClassName).append('(');
+    String names[] = ClassFileDecls.getParamTypeNames(aDesc);
+    for(int i=0;i<names.length;i++) { if(i>0) sb.append(','); sb.append(names[i]); }
+    return sb.append(')').toString();
+}
+
+}
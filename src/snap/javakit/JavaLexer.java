@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+
+/**
+ * A hand-written lexer for Java text (no regex and no objects per token): Returns token codes with start/end for
+ * identifiers, keywords, operators, literals and comments. Token codes match the token kinds of JavaTokenizer, so a
+ * JavaTokenizer token of the same code can stand in for name and pattern.
+ *
+ * Returns ERROR for anything it doesn't classify exactly like JavaTokenizer would (non-ASCII chars, bad escapes,
+ * unterminated literals), so callers can fall back to JavaTokenizer.
+ */
+public class JavaLexer {
+
+    // The input and input end
+    CharSequence     _input;
+    int              _end;
+
+    // The current char index
+    int              _index;
+
+    // The last token start and end
+    int              _tokenStart, _tokenEnd;
+
+    // Whether lexer is in multi-line comment (at start, or after last token)
+    boolean          _inComment;
+
+    // The keywords (token code is index)
+    public static final String KEYWORDS[] = { "abstract", "assert", "boolean", "break", "byte", "case", "catch",
+        "char", "class", "continue", "default", "do", "double", "else", "enum", "extends", "false", "final", "finally",
+        "float", "for", "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "null",
+        "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch",
+        "synchronized", "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while" };
+
+    // The operators (token code is KEYWORDS.length + index)
+    public static final String OPERATORS[] = { "!", "!=", "%", "%=", "&", "&&", "&=", "(", ")", "*", "*=", "+", "++",
+        "+=", ",", "-", "--", "-=", "->", ".", "...", "/", "/=", ":", "::", ";", "<", "<<", "<<=", "<=", "=", "==",
+        ">", ">=", ">>=", ">>>=", "?", "@", "[", "]", "^", "^=", "{", "|", "|=", "||", "}", "~" };
+
+    // Token codes for other kinds (INT_FLOAT and OCTAL_FLOAT are numbers that both patterns match to same length)
+    public static final int IDENTIFIER = KEYWORDS.length + OPERATORS.length;
+    public static final int INT_LITERAL = IDENTIFIER + 1, INT_FLOAT_LITERAL = IDENTIFIER + 2;
+    public static final int HEX_LITERAL = IDENTIFIER + 3, OCTAL_LITERAL = IDENTIFIER + 4;
+    public static final int OCTAL_FLOAT_LITERAL = IDENTIFIER + 5, FLOAT_LITERAL = IDENTIFIER + 6;
+    public static final int CHAR_LITERAL = IDENTIFIER + 7, STRING_LITERAL = IDENTIFIER + 8;
+    public static final int SINGLE_LINE_COMMENT = IDENTIFIER + 9, MULTI_LINE_COMMENT = IDENTIFIER + 10;
+    public static final int CODE_COUNT = IDENTIFIER + 11, ERROR = CODE_COUNT, END = -1;
+
+    // The keyword perfect hash table (keyword index + 1 for hash, collision free for KEYWORDS)
+    static final byte    _keywordHash[] = new byte[256];
+
+    // The operator codes by first char (longest first)
+    static final int     _opCodes[][] = new int[128][];
+
+    // Char classes for identifier chars
+    static final boolean _idStart[] = new boolean[128], _idPart[] = new boolean[128];
+
+    // Initialize tables
+    static {
+        for(int i=0; i<KEYWORDS.length; i++) { String kw = KEYWORDS[i]; int h = hash(kw, 0, kw.length());
+            if(_keywordHash[h]!=0) throw new RuntimeException("JavaLexer: Keyword hash collision: " + kw);
+            _keywordHash[h] = (byte)(i + 1); }
+        for(int len=4; len>0; len--) for(int i=0; i<OPERATORS.length; i++) { String op = OPERATORS[i];
+            if(op.length()!=len) continue; char c = op.charAt(0);
+            int codes[] = _opCodes[c]!=null? Arrays.copyOf(_opCodes[c], _opCodes[c].length + 1) : new int[1];
+            codes[codes.length-1] = KEYWORDS.length + i; _opCodes[c] = codes; }
+        for(char c=0; c<128; c++) {
+            _idStart[c] = c>='a' && c<='z' || c>='A' && c<='Z' || c=='_' || c=='$';
+            _idPart[c] = _idStart[c] || c>='0' && c<='9';
+        }
+    }
+
+/**
+ * Sets the input and whether input starts in multi-line comment.
+ */
+public void setInput(CharSequence theChars, boolean inComment)
+{
+    _input = theChars; _end = theChars.length(); _index = 0; _inComment = inComment;
+}
+
+/**
+ * Returns the last token start.
+ */
+public int getTokenStart()  { return _tokenStart; }
+
+/**
+ * Returns the last token end.
+ */
+public int getTokenEnd()  { return _tokenEnd; }
+
+/**
+ * Returns whether lexer is in multi-line comment (last token is unterminated multi-line comment).
+ */
+public boolean isInComment()  { return _inComment; }
+
+/**
+ * Returns the code of next token (END if no more tokens, ERROR if next token can't be classified).
+ */
+public int next()
+{
+    // If in multi-line comment, read to comment end (just return if at end)
+    if(_inComment) { if(_index>=_end) return END;
+        _tokenStart = _index; return readCommentMore(_index); }
+
+    // Skip whitespace (just return if at end)
+    CharSequence input = _input; int end = _end, i = _index;
+    while(i<end) { char c = input.charAt(i); if(c==' ' || c=='\t' || c=='\n' || c=='\r' || c=='\f') i++; else break; }
+    _tokenStart = _index = i; if(i>=end) return END;
+    char c = input.charAt(i), c2 = i+1<end? input.charAt(i+1) : 0;
+    if(c>=128) return ERROR;
+
+    // Handle identifier or keyword
+    if(_idStart[c]) {
+        int j = i + 1; while(j<end) { char cj = input.charAt(j); if(cj<128 && _idPart[cj]) j++; else break; }
+        if(j<end && input.charAt(j)>=128) return ERROR;
+        return token(j, getKeyword(input, i, j));
+    }
+
+    // Handle number
+    if(c>='0' && c<='9' || c=='.' && c2>='0' && c2<='9')
+        return readNumber(i);
+
+    // Handle comments
+    if(c=='/' && c2=='/') {
+        int j = i + 2; while(j<end && input.charAt(j)!='\n' && input.charAt(j)!='\r') j++;
+        return token(j, SINGLE_LINE_COMMENT);
+    }
+    if(c=='/' && c2=='*')
+        return readCommentMore(i + 2);
+
+    // Handle string and char literals
+    if(c=='"') return readString(i);
+    if(c=='\'') return readChar(i);
+
+    // Handle operator (longest match)
+    int codes[] = _opCodes[c];
+    if(codes!=null) for(int code : codes) { String op = OPERATORS[code - KEYWORDS.length]; int len = op.length();
+        if(i+len<=end && regionMatches(input, i, op)) return token(i + len, code); }
+    return ERROR;
+}
+
+/**
+ * Sets token end and returns given code.
+ */
+private int token(int anEnd, int aCode)  { _tokenEnd = _index = anEnd; return aCode; }
+
+/**
+ * Reads multi-line comment from given index to comment end or input end.
+ */
+private int readCommentMore(int aStart)
+{
+    CharSequence input = _input; int end = _end, i = aStart;
+    while(i+1<end && !(input.charAt(i)=='*' && input.charAt(i+1)=='/')) i++;
+    _inComment = i+1>=end;
+    return token(_inComment? end : i + 2, MULTI_LINE_COMMENT);
+}
+
+/**
+ * Reads number at given index: Gets longest match of Int, Hex, Octal and Float patterns.
+ */
+private int readNumber(int aStart)
+{
+    CharSequence input = _input; int end = _end, i = aStart; char c = input.charAt(i);
+
+    // Get Hex length
+    if(c=='0' && i+1<end && (input.charAt(i+1)=='x' || input.charAt(i+1)=='X')) {
+        int j = skipDigits(i + 2, 16); if(j==i+2) return ERROR;
+        return token(skipSuffix(j, "lL"), HEX_LITERAL);
+    }
+
+    // Get Int or Octal length
+    int ilen = 0; boolean octal = c=='0';
+    if(octal) ilen = skipSuffix(skipDigits(i + 1, 8), "lL") - i;
+    else if(c!='.') ilen = skipSuffix(skipDigits(i, 10), "lL") - i;
+
+    // Get Float length (digits, optional dot and fraction, optional exponent, optional suffix)
+    int j = skipDigits(i, 10);
+    if(j<end && input.charAt(j)=='.' && (j>i || j+1<end && isDigit(input.charAt(j+1)))) j = skipDigits(j + 1, 10);
+    j = skipSuffix(skipExponent(j), "fFdD"); int flen = j - i;
+
+    // Make sure number isn't followed by identifier chars (JavaTokenizer would split them differently)
+    int nend = i + Math.max(ilen, flen);
+    if(nend<end) { char ce = input.charAt(nend); if(ce>=128 || _idPart[ce] || ce=='.' && flen>ilen) return ERROR; }
+
+    // Return longest (or tie)
+    if(flen>ilen) return token(i + flen, FLOAT_LITERAL);
+    if(flen==ilen) return token(i + ilen, octal? OCTAL_FLOAT_LITERAL : INT_FLOAT_LITERAL);
+    return token(i + ilen, octal? OCTAL_LITERAL : INT_LITERAL);
+}
+
+/**
+ * Reads string literal at given index.
+ */
+private int readString(int aStart)
+{
+    CharSequence input = _input; int end = _end;
+    for(int i=aStart+1; i<end; ) { char c = input.charAt(i);
+        if(c=='"') return token(i + 1, STRING_LITERAL);
+        if(c=='\n' || c=='\r' || c>=128) return ERROR;
+        if(c=='\\') { int j = skipEscape(i); if(j<0) return ERROR; i = j; }
+        else i++;
+    }
+    return ERROR;
+}
+
+/**
+ * Reads char literal at given index (char or escape, then quote - octal escape can be 1-3 digits).
+ */
+private int readChar(int aStart)
+{
+    CharSequence input = _input; int end = _end, i = aStart + 1; if(i>=end) return ERROR;
+    char c = input.charAt(i); if(c=='\'' || c=='\n' || c=='\r' || c>=128) return ERROR;
+
+    // Handle octal escape: Check quote after each possible length
+    if(c=='\\' && i+1<end && input.charAt(i+1)>='0' && input.charAt(i+1)<='7') {
+        int max = input.charAt(i+1)<='3'? 3 : 2;
+        for(int len=1, j=i+1; len<=max && j<end && input.charAt(j)>='0' && input.charAt(j)<='7'; len++, j++)
+            if(j+1<end && input.charAt(j+1)=='\'') return token(j + 2, CHAR_LITERAL);
+        return ERROR;
+    }
+
+    // Handle char or other escape
+    int j = c=='\\'? skipEscape(i) : i + 1;
+    if(j<0 || j>=end || input.charAt(j)!='\'') return ERROR;
+    return token(j + 1, CHAR_LITERAL);
+}
+
+/**
+ * Returns index after escape at given index (backslash), or -1 if invalid.
+ */
+private int skipEscape(int anIndex)
+{
+    CharSequence input = _input; int end = _end, i = anIndex + 1; if(i>=end) return -1;
+    char c = input.charAt(i);
+    if("ntbrf\\'\"".indexOf(c)>=0) return i + 1;
+    if(c>='0' && c<='7') return i + 1;
+    if(c=='u') { int j = skipDigits(i + 1, 16); return j-i-1>=4? i + 5 : -1; }
+    return -1;
+}
+
+/**
+ * Returns index after digits (for radix 8, 10 or 16) at given index.
+ */
+private int skipDigits(int anIndex, int aRadix)
+{
+    int i = anIndex; while(i<_end && Character.digit(_input.charAt(i), aRadix)>=0 && _input.charAt(i)<128) i++;
+    return i;
+}
+
+/**
+ * Returns index after exponent at given index (if complete exponent).
+ */
+private int skipExponent(int anIndex)
+{
+    int i = anIndex; if(i>=_end || (_input.charAt(i)!='e' && _input.charAt(i)!='E')) return i;
+    int j = i + 1; if(j<_end && (_input.charAt(j)=='+' || _input.charAt(j)=='-')) j++;
+    int k = skipDigits(j, 10);
+    return k>j? k : i;
+}
+
+/**
+ * Returns index after optional suffix char at given index.
+ */
+private int skipSuffix(int anIndex, String theChars)
+{
+    return anIndex<_end && theChars.indexOf(_input.charAt(anIndex))>=0? anIndex + 1 : anIndex;
+}
+
+/**
+ * Returns whether char is decimal digit.
+ */
+private static boolean isDigit(char c)  { return c>='0' && c<='9'; }
+
+/**
+ * Returns the keyword code for given identifier chars (or IDENTIFIER if not keyword).
+ */
+private static int getKeyword(CharSequence theChars, int aStart, int anEnd)
+{
+    int len = anEnd - aStart; if(len<2 || len>12) return IDENTIFIER;
+    int index = _keywordHash[hash(theChars, aStart, anEnd)] - 1; if(index<0) return IDENTIFIER;
+    String kw = KEYWORDS[index];
+    return kw.length()==len && regionMatches(theChars, aStart, kw)? index : IDENTIFIER;
+}
+
+/**
+ * Returns the keyword perfect hash for given chars (collision free for KEYWORDS).
+ */
+private static int hash(CharSequence theChars, int aStart, int anEnd)
+{
+    int len = anEnd - aStart; char c0 = theChars.charAt(aStart), c1 = theChars.charAt(aStart+1);
+    return (len + c0*7 + c1*16 + theChars.charAt(anEnd-1)*5) & 255;
+}
+
+/**
+ * Returns whether chars at given index match given string.
+ */
+private static boolean regionMatches(CharSequence theChars, int aStart, String aStr)
+{
+    for(int i=0, iMax=aStr.length(); i<iMax; i++) if(theChars.charAt(aStart+i)!=aStr.charAt(i)) return false;
+    return true;
+}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.io.*;
+import java.util.*;
+import snap.parse.*;
+
+/**
+ * A conformance check for JavaLexer: Lexes lines of Java files in given dirs with JavaLexer and JavaTokenizer and
+ * prints tokens whose range or name/pattern differ (token codes map to name/pattern of first JavaTokenizer token with
+ * that code).
+ *
+ *     java snap.javakit.JavaLexerCheck /path/to/jdk/src
+ */
+public class JavaLexerCheck {
+
+    // The lexer and tokenizer
+    JavaLexer                 _lexer = new JavaLexer();
+    JavaParser.JavaTokenizer  _tokenizer = JavaParser.getShared().getTokenizer();
+
+    // The first tokenizer token for each lexer token code
+    Token                     _protos[] = new Token[JavaLexer.CODE_COUNT];
+
+    // The number of files, tokens, lines with ERROR and mismatched lines
+    int                       _fileCount, _tokenCount, _errorCount, _mismatchCount;
+
+/**
+ * Checks given Java file.
+ */
+public void checkFile(File aFile) throws IOException
+{
+    // Iterate over file lines
+    try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(aFile), "UTF-8"))) {
+        boolean inComment = false; _fileCount++;
+        for(String line=reader.readLine(); line!=null; line=reader.readLine())
+            inComment = checkLine(aFile, line, inComment);
+    }
+}
+
+/**
+ * Checks given line (starting in multi-line comment, if given) and returns whether line ends in multi-line comment.
+ */
+protected boolean checkLine(File aFile, String aLine, boolean inComment)
+{
+    // Get tokenizer tokens
+    List <Token> tokens = new ArrayList(); _tokenizer.setInput(aLine); boolean uterm = inComment;
+    try {
+        Token token = inComment? _tokenizer.getMultiLineCommentTokenMore(null) : _tokenizer.getNextSpecialToken();
+        if(token==null) token = _tokenizer.getNextToken();
+        while(token!=null) { tokens.add(token);
+            uterm = token.getName().equals("MultiLineComment") && !token.getString().endsWith("*/");
+            token = _tokenizer.getNextSpecialToken(); if(token==null) token = _tokenizer.getNextToken(); }
+    }
+    catch(Exception e) { tokens = null; }
+
+    // Compare lexer tokens
+    JavaLexer lexer = _lexer; lexer.setInput(aLine, inComment); int index = 0;
+    for(int code=lexer.next(); code!=JavaLexer.END; code=lexer.next(), index++) {
+        if(code==JavaLexer.ERROR) { _errorCount++; break; }
+        Token token = tokens!=null && index<tokens.size()? tokens.get(index) : null; _tokenCount++;
+        if(token!=null && _protos[code]==null) _protos[code] = token;
+        if(token==null || token.getInputStart()!=lexer.getTokenStart() || token.getInputEnd()!=lexer.getTokenEnd() ||
+            !Objects.equals(token.getName(), _protos[code].getName()) ||
+            !Objects.equals(token.getPattern(), _protos[code].getPattern())) {
+            System.err.println(aFile + ": " + aLine.substring(lexer.getTokenStart())); _mismatchCount++; break; }
+    }
+
+    // Check comment state
+    if(lexer.isInComment()!=uterm) System.err.println(aFile + " (comment state): " + aLine);
+    return uterm;
+}
+
+/**
+ * Returns the summary text.
+ */
+public String getSummary()
+{
+    return "Files: " + _fileCount + ", tokens: " + _tokenCount + ", lines with ERROR (fallback): " + _errorCount +
+        ", mismatches: " + _mismatchCount;
+}
+
+/**
+ * Adds Java files in given file or dir to list.
+ */
+private static void getJavaFiles(File aFile, List <File> theFiles)
+{
+    if(aFile.isDirectory()) { File files[] = aFile.listFiles(); if(files!=null) for(File f : files) getJavaFiles(f, theFiles); }
+    else if(aFile.getName().endsWith(".java")) theFiles.add(aFile);
+}
+
+/**
+ * Main method: Checks Java files in given files or dirs and prints summary.
+ */
+public static void main(String args[]) throws IOException
+{
+    List <File> files = new ArrayList(); for(String arg : args) getJavaFiles(new File(arg), files);
+    JavaLexerCheck check = new JavaLexerCheck();
+    for(File file : files) check.checkFile(file);
+    System.out.println(check.getSummary());
+}
+
+}
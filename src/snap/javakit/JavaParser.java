@@ -5,6 +5,7 @@ package snap.javakit;
 import java.lang.reflect.Modifier;
 import java.util.*;
 import snap.parse.*;
+import snap.project.Metrics;
 
 /**
  * A parser for java files.
@@ -48,21 +49,67 @@ public Parser getImportsParser()
 /**
  * Creates the rule.
  */
-protected ParseRule createRule()
+protected ParseRule createRule()  { return getSharedRule(); }
+
+/**
+ * Returns the shared rule (loaded once, by first caller or preload thread).
+ */
+private static synchronized ParseRule getSharedRule()
 {
-    if(_sharedRule!=null) return _sharedRule;
-    ParseRule rule = ParseUtils.loadRule(JavaParser.class, null);
-    ParseUtils.installHandlers(JavaParser.class, rule);
-    return _sharedRule = rule.getRule("JavaFile");
+    return _sharedRule!=null? _sharedRule : (_sharedRule=loadRule());
 } static ParseRule _sharedRule;
 
+/**
+ * Loads a new JavaFile rule graph with handlers. The rule graph is read from JavaParser.txt by ParseUtils (this is
+ * most of the load time). Handlers are bound by JavaParserHandlers without reflective handler lookup, unless grammar
+ * is missing a rule JavaParserHandlers was generated for (then reflective install is used). Handler classes added
+ * since JavaParserHandlers was generated are reported by JavaParserGen -check.
+ */
+protected static ParseRule loadRule()
+{
+    ParseRule rule = ParseUtils.loadRule(JavaParser.class, null);
+    if(!JavaParserHandlers.install(rule)) {
+        System.err.println("JavaParser.loadRule: JavaParserHandlers out of date (run JavaParserGen)");
+        ParseUtils.installHandlers(JavaParser.class, rule);
+    }
+    return rule.getRule("JavaFile");
+}
+
+/**
+ * Returns a new rule graph for an unshared parser (the spare graph loaded by preload thread, if not taken yet).
+ */
+static ParseRule getUnsharedRule()
+{
+    synchronized(_spareLock) { ParseRule rule = _spareRule; _spareRule = null; _spareTaken = true;
+        if(rule!=null) return rule; }
+    return loadRule();
+}
+
+/**
+ * Loads the spare rule graph for first unshared parser (the editor background parser), unless already taken.
+ */
+private static void loadSpareRule()
+{
+    synchronized(_spareLock) { if(!_spareTaken && _spareRule==null) _spareRule = loadRule(); }
+} static ParseRule _spareRule; static boolean _spareTaken; static final Object _spareLock = new Object();
+
+/**
+ * Loads the shared rule in a background thread (and a spare rule for background parser), so they are ready when first
+ * Java file is opened.
+ */
+public static void preloadRule()
+{
+    Thread thread = new Thread(() -> { getSharedRule(); loadSpareRule(); }, "JavaParser Preload");
+    thread.setDaemon(true); thread.start();
+}
+
 /**
  * Returns a JavaFile for input Java.
  */
 public JFile getJavaFile(CharSequence anInput)
 {
     // Clear exception
-    _exception = null;
+    _exception = null; long time = Metrics.start();
     
     // Get parse node
     ParseNode node = null; try { node = anInput!=null && anInput.length()>0? parse(anInput) : null; }
@@ -74,6 +121,7 @@ public JFile getJavaFile(CharSequence anInput)
     // Set JFile
     JFile jfile = node!=null? node.getCustomNode(JFile.class) : null; if(jfile==null) jfile = new JFile(); 
     jfile.setException(_exception);
+    Metrics.stop("parse.file", time);
     return jfile;
 }
 
@@ -98,6 +146,16 @@ public JavaTokenizer getTokenizer()  { return (JavaTokenizer)super.getTokenizer(
  */
 protected Tokenizer createTokenizerImpl()  { return new JavaTokenizer(); }
 
+/**
+ * A JavaParser with its own rules and rule handlers (not shared with other JavaParsers), so it can parse in a
+ * background thread while other parsers are in use.
+ */
+public static class UnsharedParser extends JavaParser {
+
+    /** Override to load own rules. */
+    protected ParseRule createRule()  { return getUnsharedRule(); }
+}
+
 /**
  * A tokenizer for Java input.
  */
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.regex.*;
+import snap.parse.*;
+
+/**
+ * Generates JavaParserHandlers.java (the precompiled binding of JavaParser.txt rules to JavaParser handler classes, so
+ * rules don't need reflection to install handlers). Run after adding, removing or renaming rules or handlers:
+ *
+ *     java snap.javakit.JavaParserGen src/snap/javakit
+ *
+ * With "-check", reports whether JavaParserHandlers.java is out of date (and handler classes without grammar rule).
+ * With "-bench" instead of directory, prints rule load and first parse times for reflective and generated handlers.
+ */
+public class JavaParserGen {
+
+/**
+ * Returns the names of rules in JavaParser.txt that have a handler class in JavaParser (in grammar order).
+ */
+public static List <String> getHandlerRuleNames()
+{
+    // Get handler rule names (from concrete ParseHandler classes named for their rule)
+    Set <String> hnames = new HashSet();
+    for(Class cls : getHandlerClasses())
+        hnames.add(getHandlerRuleName(cls));
+
+    // Get grammar rule names that have handler
+    List <String> names = new ArrayList();
+    String grammar = getText(JavaParser.class.getResourceAsStream("JavaParser.txt"));
+    Matcher matcher = Pattern.compile("^(\\w+)\\s*\\{", Pattern.MULTILINE).matcher(grammar);
+    while(matcher.find()) { String name = matcher.group(1);
+        if(hnames.contains(name) && !names.contains(name)) names.add(name); }
+    return names;
+}
+
+/**
+ * Returns the handler classes (concrete public ParseHandler classes in JavaParser named for their rule).
+ */
+public static List <Class> getHandlerClasses()
+{
+    List <Class> classes = new ArrayList();
+    for(Class cls : JavaParser.class.getClasses())
+        if(ParseHandler.class.isAssignableFrom(cls) && !Modifier.isAbstract(cls.getModifiers()) &&
+            cls.getSimpleName().endsWith("Handler"))
+            classes.add(cls);
+    return classes;
+}
+
+/**
+ * Returns the rule name for given handler class (simple name without "Handler").
+ */
+public static String getHandlerRuleName(Class aClass)
+{
+    String name = aClass.getSimpleName();
+    return name.substring(0, name.length() - "Handler".length());
+}
+
+/**
+ * Checks JavaParserHandlers.java in given directory against current grammar and handler classes: Prints handler
+ * classes without grammar rule and returns whether file is the same as generated source.
+ */
+public static boolean checkHandlers(File aDir) throws IOException
+{
+    // Report handler classes that have no rule in grammar (they are never installed)
+    List <String> names = getHandlerRuleNames();
+    for(Class cls : getHandlerClasses())
+        if(!names.contains(getHandlerRuleName(cls)))
+            System.err.println("JavaParserGen: No grammar rule for handler: " + cls.getSimpleName());
+
+    // Compare file with generated source
+    File file = new File(aDir, "JavaParserHandlers.java");
+    String text = file.exists()? getText(new FileInputStream(file)) : null;
+    boolean same = getHandlersSource().equals(text);
+    System.out.println(file + (same? " is up to date" : " is out of date (run JavaParserGen)"));
+    return same;
+}
+
+/**
+ * Returns the source of JavaParserHandlers.java.
+ */
+public static String getHandlersSource()
+{
+    StringBuffer sb = new StringBuffer();
+    sb.append("/*\n * Copyright (c) 2010, ReportMill Software. All rights reserved.\n */\n");
+    sb.append("package snap.javakit;\nimport snap.parse.*;\nimport snap.javakit.JavaParser.*;\n\n");
+    sb.append("/**\n * Installs JavaParser handlers in JavaParser rules without reflection.\n");
+    sb.append(" *\n * Generated by JavaParserGen from JavaParser.txt and JavaParser handler classes - do not edit.\n */\n");
+    sb.append("class JavaParserHandlers {\n\n");
+    sb.append("/**\n * Installs handlers in given rule graph. Returns false if grammar is missing a rule (JavaParserHandlers ");
+    sb.append("needs to be\n * generated again).\n */\n");
+    sb.append("static boolean install(ParseRule aRule)\n{\n    boolean found = true;\n");
+    for(String name : getHandlerRuleNames())
+        sb.append("    found &= set(aRule, \"").append(name).append("\", new ").append(name).append("Handler());\n");
+    sb.append("    return found;\n}\n\n");
+    sb.append("/**\n * Sets handler for named rule in given rule graph. Returns false if rule not found.\n */\n");
+    sb.append("private static boolean set(ParseRule aRule, String aName, ParseHandler aHandler)\n");
+    sb.append("{\n    ParseRule rule = aRule.getRule(aName); if(rule==null) return false;\n");
+    sb.append("    rule.setHandler(aHandler); return true;\n}\n\n}\n");
+    return sb.toString();
+}
+
+/**
+ * Prints rule load time with reflective and generated handlers, and time of first parse of given Java text.
+ */
+public static void printBenchmark(String aJavaText)
+{
+    // Time grammar load, reflective handler install and generated handler install
+    long t0 = System.nanoTime();
+    ParseRule rule = ParseUtils.loadRule(JavaParser.class, null);
+    long t1 = System.nanoTime();
+    ParseUtils.installHandlers(JavaParser.class, rule);
+    long t2 = System.nanoTime();
+    ParseRule rule2 = ParseUtils.loadRule(JavaParser.class, null);
+    long t3 = System.nanoTime();
+    JavaParserHandlers.install(rule2);
+    long t4 = System.nanoTime();
+
+    // Time first parse (rules are loaded on first use)
+    JavaParser parser = new JavaParser.UnsharedParser();
+    long t5 = System.nanoTime();
+    parser.getJavaFile(aJavaText);
+    long t6 = System.nanoTime();
+
+    // Print times
+    System.out.println("Grammar load: " + (t1-t0)/1000000 + "ms (again: " + (t3-t2)/1000000 + "ms)");
+    System.out.println("Reflective handlers: " + (t2-t1)/1000 + "us, generated handlers: " + (t4-t3)/1000 + "us");
+    System.out.println("First parse (" + aJavaText.length() + " chars, with rule load): " + (t6-t5)/1000000 + "ms");
+}
+
+/**
+ * Returns the text of given stream (UTF-8).
+ */
+private static String getText(InputStream aStream)
+{
+    try(InputStream stream = aStream) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(); byte buf[] = new byte[8192];
+        for(int len=stream.read(buf); len>0; len=stream.read(buf)) bytes.write(buf, 0, len);
+        return bytes.toString("UTF-8");
+    }
+    catch(IOException e) { throw new RuntimeException(e); }
+}
+
+/**
+ * Main method: Writes JavaParserHandlers.java to given directory (or checks it for "-check", or prints benchmark for
+ * "-bench").
+ */
+public static void main(String args[]) throws IOException
+{
+    // Handle check: Check file in given directory (exit with error status if out of date)
+    if(args.length>0 && args[0].equals("-check")) {
+        if(!checkHandlers(new File(args.length>1? args[1] : "src/snap/javakit"))) System.exit(1);
+        return;
+    }
+
+    // Handle benchmark: Parse given file (or generated source, if no file)
+    if(args.length>0 && args[0].equals("-bench")) {
+        File file = args.length>1? new File(args[1]) : null;
+        String text = file!=null && file.exists()? getText(new FileInputStream(file)) : getHandlersSource();
+        printBenchmark(text); return;
+    }
+
+    // Write source
+    File dir = new File(args.length>0? args[0] : "src/snap/javakit");
+    File file = new File(dir, "JavaParserHandlers.java");
+    try(Writer writer = new FileWriter(file)) { writer.write(getHandlersSource()); }
+    System.out.println("Wrote " + file + " (" + getHandlerRuleNames().size() + " handlers)");
+}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import snap.parse.*;
+import snap.javakit.JavaParser.*;
+
+/**
+ * Installs JavaParser handlers in JavaParser rules without reflection.
+ *
+ * Generated by JavaParserGen from JavaParser.txt and JavaParser handler classes - do not edit.
+ */
+class JavaParserHandlers {
+
+/**
+ * Installs handlers in given rule graph. Returns false if grammar is missing a rule (JavaParserHandlers needs to be
+ * generated again).
+ */
+static boolean install(ParseRule aRule)
+{
+    boolean found = true;
+    found &= set(aRule, "JavaFile", new JavaFileHandler());
+    found &= set(aRule, "JavaFileImports", new JavaFileImportsHandler());
+    found &= set(aRule, "PackageDecl", new PackageDeclHandler());
+    found &= set(aRule, "ImportDecl", new ImportDeclHandler());
+    found &= set(aRule, "TypeDecl", new TypeDeclHandler());
+    found &= set(aRule, "ClassDecl", new ClassDeclHandler());
+    found &= set(aRule, "ClassBody", new ClassBodyHandler());
+    found &= set(aRule, "ClassBodyDecl", new ClassBodyDeclHandler());
+    found &= set(aRule, "Initializer", new InitializerHandler());
+    found &= set(aRule, "EnumDecl", new EnumDeclHandler());
+    found &= set(aRule, "EnumConstant", new EnumConstantHandler());
+    found &= set(aRule, "FieldDecl", new FieldDeclHandler());
+    found &= set(aRule, "ConstrDecl", new ConstrDeclHandler());
+    found &= set(aRule, "ConstrCall", new ConstrCallHandler());
+    found &= set(aRule, "MethodDecl", new MethodDeclHandler());
+    found &= set(aRule, "ThrowsList", new ThrowsListHandler());
+    found &= set(aRule, "TypeParams", new TypeParamsHandler());
+    found &= set(aRule, "TypeParam", new TypeParamHandler());
+    found &= set(aRule, "AnnotationDecl", new AnnotationDeclHandler());
+    found &= set(aRule, "Statement", new StatementHandler());
+    found &= set(aRule, "Block", new BlockHandler());
+    found &= set(aRule, "BlockStatement", new BlockStatementHandler());
+    found &= set(aRule, "Modifiers", new ModifiersHandler());
+    found &= set(aRule, "VarDeclStmt", new VarDeclStmtHandler());
+    found &= set(aRule, "VarDecl", new VarDeclHandler());
+    found &= set(aRule, "LabeledStatement", new LabeledStatementHandler());
+    found &= set(aRule, "AssertStatement", new AssertStatementHandler());
+    found &= set(aRule, "ExprStatement", new ExprStatementHandler());
+    found &= set(aRule, "SwitchStatement", new SwitchStatementHandler());
+    found &= set(aRule, "SwitchLabel", new SwitchLabelHandler());
+    found &= set(aRule, "IfStatement", new IfStatementHandler());
+    found &= set(aRule, "WhileStatement", new WhileStatementHandler());
+    found &= set(aRule, "DoStatement", new DoStatementHandler());
+    found &= set(aRule, "EmptyStatement", new EmptyStatementHandler());
+    found &= set(aRule, "ForStatement", new ForStatementHandler());
+    found &= set(aRule, "BreakStatement", new BreakStatementHandler());
+    found &= set(aRule, "ContinueStatement", new ContinueStatementHandler());
+    found &= set(aRule, "ReturnStatement", new ReturnStatementHandler());
+    found &= set(aRule, "ThrowStatement", new ThrowStatementHandler());
+    found &= set(aRule, "SynchronizedStatement", new SynchronizedStatementHandler());
+    found &= set(aRule, "TryStatement", new TryStatementHandler());
+    found &= set(aRule, "Expression", new ExpressionHandler());
+    found &= set(aRule, "ConditionalExpr", new ConditionalExprHandler());
+    found &= set(aRule, "ConditionalOrExpr", new ConditionalOrExprHandler());
+    found &= set(aRule, "ConditionalAndExpr", new ConditionalAndExprHandler());
+    found &= set(aRule, "InclusiveOrExpr", new InclusiveOrExprHandler());
+    found &= set(aRule, "ExclusiveOrExpr", new ExclusiveOrExprHandler());
+    found &= set(aRule, "AndExpr", new AndExprHandler());
+    found &= set(aRule, "EqualityExpr", new EqualityExprHandler());
+    found &= set(aRule, "InstanceOfExpr", new InstanceOfExprHandler());
+    found &= set(aRule, "RelationalExpr", new RelationalExprHandler());
+    found &= set(aRule, "ShiftExpr", new ShiftExprHandler());
+    found &= set(aRule, "AdditiveExpr", new AdditiveExprHandler());
+    found &= set(aRule, "MultiplicativeExpr", new MultiplicativeExprHandler());
+    found &= set(aRule, "UnaryExpr", new UnaryExprHandler());
+    found &= set(aRule, "PreIncrementExpr", new PreIncrementExprHandler());
+    found &= set(aRule, "PreDecrementExpr", new PreDecrementExprHandler());
+    found &= set(aRule, "PrimaryExpr", new PrimaryExprHandler());
+    found &= set(aRule, "PrimaryPrefix", new PrimaryPrefixHandler());
+    found &= set(aRule, "PrimarySuffix", new PrimarySuffixHandler());
+    found &= set(aRule, "Arguments", new ArgumentsHandler());
+    found &= set(aRule, "AllocExpr", new AllocExprHandler());
+    found &= set(aRule, "ArrayInit", new ArrayInitHandler());
+    found &= set(aRule, "CastExpr", new CastExprHandler());
+    found &= set(aRule, "LambdaExpr", new LambdaExprHandler());
+    found &= set(aRule, "FormalParam", new FormalParamHandler());
+    found &= set(aRule, "Name", new NameHandler());
+    found &= set(aRule, "Identifier", new IdentifierHandler());
+    found &= set(aRule, "Literal", new LiteralHandler());
+    found &= set(aRule, "Type", new TypeHandler());
+    found &= set(aRule, "ClassType", new ClassTypeHandler());
+    found &= set(aRule, "PrimitiveType", new PrimitiveTypeHandler());
+    found &= set(aRule, "ResultType", new ResultTypeHandler());
+    return found;
+}
+
+/**
+ * Sets handler for named rule in given rule graph. Returns false if rule not found.
+ */
+private static boolean set(ParseRule aRule, String aName, ParseHandler aHandler)
+{
+    ParseRule rule = aRule.getRule(aName); if(rule==null) return false;
+    rule.setHandler(aHandler); return true;
+}
+
+}
@@ -0,0 +1,653 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javakit;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import snap.util.ClassUtils;
+
+/**
+ * A class to create JavaDecls for a class from the parsed source (JClassDecl) of a project file, so editor code
+ * completion and navigation know about members (and classes) that haven't been compiled yet.
+ *
+ * Source decls overlay the class decls from class file or reflection: members with the same id as a compiled member
+ * are skipped, others are added to the class decl. If class isn't compiled yet, class decl is created from source.
+ *
+ * Parsed nodes are never read here, since the editor changes them on every edit: The owner keeps an immutable snapshot
+ * of each parsed class (SourceClass: names, modifiers and type names), taken by the thread that owns the parsed file.
+ * Snapshot type names are resolved to decls without decls lock (resolve()), then applied with lock (updateDecls()).
+ */
+public class SourceDecls {
+
+    // The class decl
+    JavaDeclClass            _cdecl;
+
+    // The resolved snapshot (replaced by resolve() when owner has a newer snapshot for class)
+    volatile Resolved        _resolved;
+
+    // The snapshot that decls were last updated from
+    volatile SourceClass     _updSource;
+
+    // The source member decls currently added to class decl by id
+    Map <String,JavaDecl>    _decls = new LinkedHashMap();
+
+    // The TypeVar decls for class type vars by name (created on first reference, so identity is stable)
+    Map <String,JavaDecl>    _tvarDecls = new ConcurrentHashMap();
+
+/**
+ * Creates a new SourceDecls for given class decl.
+ */
+SourceDecls(JavaDeclClass aClassDecl)  { _cdecl = aClassDecl; }
+
+/**
+ * Returns the current snapshot of parsed class declaration from owner.
+ */
+SourceClass getSource()  { return _cdecl._owner._srcClassDecls.get(_cdecl.getId()); }
+
+/**
+ * Returns whether owner has a new snapshot since decls were last updated.
+ */
+boolean isDirty()  { return _updSource!=getSource(); }
+
+/**
+ * Creates a class decl from given parsed class snapshot (for class that isn't compiled yet).
+ */
+static JavaDeclClass createClassDecl(JavaDeclOwner anOwner, String aName, SourceClass aSrc)
+{
+    // Get parent decl: Enclosing class decl or package decl
+    int ind = aName.lastIndexOf('$'); JavaDecl par = null;
+    if(ind>0) par = anOwner.getJavaDecl(aName.substring(0, ind));
+    else if((ind = aName.lastIndexOf('.'))>0) par = anOwner.getPackageDecl(aName.substring(0, ind));
+
+    // If parent created decl for name (as inner class), just return it
+    JavaDecl jd = anOwner._decls.get(aName); if(jd instanceof JavaDeclClass) return (JavaDeclClass)jd;
+
+    // Create class decl (constructor attaches SourceDecls for name) and set class attributes
+    JavaDeclClass cdecl = new JavaDeclClass(anOwner, par, aName, aSrc._simpleName, aSrc._mods);
+    cdecl._interface = aSrc._interface; cdecl._enum = aSrc._enum;
+    return cdecl;
+}
+
+/**
+ * Resolves the type names of current snapshot to decls, if not yet resolved. Called without decls lock (before class
+ * decl locks to update), since resolving can load classes.
+ */
+Resolved resolve()
+{
+    SourceClass src = getSource(); Resolved res = _resolved;
+    if(src==null || res!=null && res._source==src) return res;
+    return _resolved = new Resolved(src);
+}
+
+/**
+ * Updates class decl from class (if compiled) and adds source member decls not already declared by class.
+ * Uses the last resolved snapshot (if owner has a newer one by now, decls stay dirty for next read).
+ *
+ * @return whether the decls changed since last update.
+ */
+boolean updateDecls()
+{
+    // Get resolved snapshot (resolve now if never resolved)
+    Resolved res = _resolved; if(res==null) res = resolve();
+    SourceClass src = res._source;
+
+    // Mark updated and make sure decl lists are set (nested lookups during update may come back to class decl)
+    JavaDeclClass cdecl = _cdecl; JavaDeclOwner owner = cdecl._owner;
+    boolean firstTime = cdecl._fdecls==null; _updSource = src;
+
+    // Remove source decls, so class update only sees compiled members
+    for(JavaDecl jd : _decls.values()) cdecl.removeDecl(jd);
+
+    // If class is compiled, update from class, otherwise update class attributes from source
+    boolean compiled = cdecl._cfdecls!=null || !owner.isClassFileDecls() && cdecl.getEvalClass()!=null;
+    boolean changed = compiled? cdecl.updateClassDecls() : false, hierChanged = false;
+    if(!compiled) {
+        if(cdecl._fdecls==null) cdecl._fdecls = new ArrayList();
+        changed = hierChanged = updateClassAttributes(res); }
+
+    // Get new source decls: TypeVars, inner classes, fields, methods and constructors not declared by class
+    Map <String,JavaDecl> decls = new LinkedHashMap();
+    if(!compiled) addTypeVars(res, decls);
+    addClasses(res, decls);
+    addFields(res, decls);
+    addMethods(res, decls);
+    addConstructors(res, decls);
+
+    // Add source decls to class decl and swap in new map
+    for(JavaDecl jd : decls.values()) cdecl.addDecl(jd);
+    changed |= !decls.keySet().equals(_decls.keySet()); _decls = decls;
+
+    // Return whether decls were changed (if changed after first time, bump class members version (and owner hierarchy
+    // version if super type or interfaces changed) to clear lookup caches of class and subtypes)
+    if(changed && !firstTime) cdecl.declsChanged(hierChanged);
+    return changed;
+}
+
+/**
+ * Updates the modifiers, super type and interfaces of class decl from source. Returns whether super type or
+ * interfaces changed.
+ */
+private boolean updateClassAttributes(Resolved aRes)
+{
+    // Update modifiers
+    JavaDeclClass cdecl = _cdecl; SourceClass src = aRes._source;
+    cdecl._mods = src._mods; cdecl._interface = src._interface; cdecl._enum = src._enum;
+
+    // Set super type
+    JavaDecl stype = aRes._stype, oldSType = cdecl._stype; JavaDeclClass oldInfcs[] = cdecl._interfaces;
+    cdecl._stype = stype; cdecl._sdecl = cdecl._scdecl = stype!=null? stype.getClassType() : null;
+
+    // Set interfaces
+    cdecl._interfaces = aRes._infcs;
+    boolean stypeChanged = oldSType!=stype && (oldSType==null || stype==null || !oldSType.getId().equals(stype.getId()));
+    return stypeChanged || oldInfcs!=null && !Arrays.equals(oldInfcs, cdecl._interfaces);
+}
+
+/**
+ * Adds TypeVar decls for class type vars and sets their bounds.
+ */
+private void addTypeVars(Resolved aRes, Map <String,JavaDecl> theDecls)
+{
+    String names[] = aRes._source._tvarNames; if(names.length==0) return;
+    for(int i=0;i<names.length;i++) { JavaDecl decl = getTypeVarDecl(names[i]);
+        decl._evalType = aRes._tvarBounds[i]; theDecls.put(decl.getId(), decl); }
+    _cdecl._typeVars = theDecls.values().toArray(new JavaDecl[theDecls.size()]);
+}
+
+/**
+ * Adds decls for member classes not declared by class.
+ */
+private void addClasses(Resolved aRes, Map <String,JavaDecl> theDecls)
+{
+    SourceClass classes[] = aRes._source._classes;
+    for(int i=0;i<classes.length;i++) { JavaDecl decl = aRes._classes[i];
+        if(decl==null || _cdecl.getClassDecl(classes[i]._simpleName)!=null) continue;
+        theDecls.put(decl.getId(), decl);
+    }
+}
+
+/**
+ * Adds decls for fields and enum constants not declared by class.
+ */
+private void addFields(Resolved aRes, Map <String,JavaDecl> theDecls)
+{
+    // Get field id prefix (same as JavaKitUtils.getId(Field), which uses Class.toString())
+    String prefix = (_cdecl.isInterface()? "interface " : "class ") + _cdecl.getName() + '.';
+    SourceClass src = aRes._source;
+
+    // Iterate over enum constants (public static final and type of class)
+    for(String name : src._enumConsts) {
+        if(_cdecl.getField(name)!=null) continue;
+        JavaDecl decl = getDecl(prefix + name, JavaDecl.DeclType.Field, name,
+            Modifier.PUBLIC | Modifier.STATIC | Modifier.FINAL | ClassFileDecls.ACC_ENUM);
+        decl._evalType = _cdecl; theDecls.put(decl.getId(), decl);
+    }
+
+    // Iterate over fields (interface fields are implicitly public static final)
+    for(int i=0;i<src._fields.length;i++) { SourceMember fd = src._fields[i]; String name = fd._name;
+        JavaDecl etype = aRes._fieldTypes[i]; if(etype==null) continue;
+        if(_cdecl.getField(name)!=null || theDecls.containsKey(prefix + name)) continue;
+        int mods = fd._mods; if(_cdecl.isInterface()) mods |= Modifier.PUBLIC | Modifier.STATIC | Modifier.FINAL;
+        JavaDecl decl = getDecl(prefix + name, JavaDecl.DeclType.Field, name, mods);
+        decl._evalType = etype; theDecls.put(decl.getId(), decl);
+    }
+}
+
+/**
+ * Adds decls for methods not declared by class.
+ */
+private void addMethods(Resolved aRes, Map <String,JavaDecl> theDecls)
+{
+    SourceMember methods[] = aRes._source._methods;
+    for(int i=0;i<methods.length;i++) { SourceMember md = methods[i];
+
+        // Get param types and return type (just skip if bogus, can happen while being edited)
+        JavaDecl ptypes[] = aRes._methodParams[i], rtype = aRes._methodTypes[i];
+        if(ptypes==null || rtype==null) continue;
+        String id = getMethodId(_cdecl.getId() + '.' + md._name, ptypes);
+        if(_cdecl.getMethodDecl(id)!=null || theDecls.containsKey(id)) continue;
+
+        // Get modifiers (interface methods are implicitly public and abstract, unless static or default)
+        int mods = md._mods;
+        if(_cdecl.isInterface()) { mods |= Modifier.PUBLIC;
+            if(!md._block && !Modifier.isStatic(mods)) mods |= Modifier.ABSTRACT; }
+
+        // Create decl and add
+        JavaDecl decl = getDecl(id, JavaDecl.DeclType.Method, md._name, mods);
+        decl._paramTypes = _cdecl._owner.getSharedDecls(ptypes); decl._evalType = rtype;
+        decl._default = _cdecl.isInterface() && md._block && !Modifier.isStatic(mods);
+        theDecls.put(id, decl);
+    }
+}
+
+/**
+ * Adds decls for constructors not declared by class (and default constructor if source declares none).
+ */
+private void addConstructors(Resolved aRes, Map <String,JavaDecl> theDecls)
+{
+    // Interfaces don't have constructors
+    if(_cdecl.isInterface()) return;
+
+    // Get implied param types: enclosing class for non-static inner class, name and ordinal for enum
+    JavaDecl iptypes[] = new JavaDecl[0]; JavaDeclOwner owner = _cdecl._owner;
+    if(_cdecl.isMemberClass() && !_cdecl.isStatic() && _cdecl.getParent()!=null)
+        iptypes = new JavaDecl[] { _cdecl.getParent() };
+    else if(_cdecl.isEnum())
+        iptypes = new JavaDecl[] { owner.getJavaDecl(String.class), owner.getJavaDecl(int.class) };
+
+    // Iterate over constructors (or default constructor)
+    SourceMember constrs[] = aRes._source._constrs;
+    for(int i=0, iMax=Math.max(constrs.length,1); i<iMax; i++) { SourceMember cd = i<constrs.length? constrs[i] : null;
+
+        // Get param types (just skip if bogus, can happen while being edited)
+        JavaDecl ptypes[] = cd!=null? aRes._constrParams[i] : new JavaDecl[0]; if(ptypes==null) continue;
+        if(iptypes.length>0) { JavaDecl ptypes2[] = Arrays.copyOf(iptypes, iptypes.length + ptypes.length);
+            System.arraycopy(ptypes, 0, ptypes2, iptypes.length, ptypes.length); ptypes = ptypes2; }
+        String id = getMethodId(_cdecl.getId(), ptypes);
+        if(_cdecl.getConstructorDecl(id)!=null || theDecls.containsKey(id)) continue;
+
+        // Get modifiers (default constructor has class access)
+        int mods = cd!=null? cd._mods : _cdecl.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED | Modifier.PRIVATE);
+
+        // Create decl and add
+        JavaDecl decl = getDecl(id, JavaDecl.DeclType.Constructor, _cdecl.getSimpleName(), mods);
+        decl._paramTypes = owner.getSharedDecls(ptypes); decl._evalType = _cdecl;
+        theDecls.put(id, decl);
+    }
+}
+
+/**
+ * Returns the source decl for given id (reused if previously created with same type, so identity is stable).
+ */
+private JavaDecl getDecl(String anId, JavaDecl.DeclType aType, String aName, int theMods)
+{
+    JavaDecl decl = _decls.get(anId);
+    if(decl==null || decl.getType()!=aType) decl = new JavaDecl(_cdecl._owner, _cdecl, aType, anId, aName, theMods);
+    decl._mods = theMods;
+    return decl;
+}
+
+/**
+ * Returns the TypeVar decl for given class type var name (bounds are set when decls are updated, Object until then).
+ */
+JavaDecl getTypeVarDecl(String aName)
+{
+    JavaDecl decl = _tvarDecls.get(aName); if(decl!=null) return decl;
+    decl = new JavaDecl(_cdecl._owner, _cdecl, JavaDecl.DeclType.TypeVar, _cdecl.getId() + '.' + aName, aName, 0);
+    decl._evalType = _cdecl._owner.getJavaDecl(Object.class);
+    JavaDecl old = _tvarDecls.putIfAbsent(aName, decl);
+    return old!=null? old : decl;
+}
+
+/**
+ * Returns a method or constructor id (same as JavaKitUtils.getId(Method/Constructor)) for given prefix and types.
+ */
+private static String getMethodId(String aPrefix, JavaDecl theTypes[])
+{
+    StringBuffer sb = new StringBuffer(aPrefix).append('(');
+    for(int i=0;i<theTypes.length;i++) { if(i>0) sb.append(',');
+        JavaDecl ctype = theTypes[i].getClassType(); sb.append(ctype!=null? ctype.getId() : theTypes[i].getId()); }
+    return sb.append(')').toString();
+}
+
+/**
+ * Returns class modifiers for given parsed class declaration (same as Class.getModifiers()).
+ */
+private static int getClassMods(JClassDecl aJClassDecl)
+{
+    int mods = aJClassDecl.getMods().getValue();
+    if(aJClassDecl.isInterface()) mods |= Modifier.INTERFACE | Modifier.ABSTRACT;
+    if(aJClassDecl.isEnum() && aJClassDecl.getEnclosingClassDecl()!=null) mods |= Modifier.STATIC;
+    if(aJClassDecl.getEnclosingClassDecl()!=null && aJClassDecl.getEnclosingClassDecl().isInterface())
+        mods |= Modifier.STATIC | Modifier.PUBLIC;
+    return mods;
+}
+
+/**
+ * Returns snapshots of the top level classes of given parsed file (member classes are nested in them).
+ */
+static SourceClass[] getSourceClasses(JFile aJFile)
+{
+    // Get package name and imports
+    String pname = aJFile.getPackageName(); if(pname!=null && pname.length()==0) pname = null;
+    List <SourceImport> imps = new ArrayList();
+    for(JImportDecl imp : aJFile.getImportDecls())
+        if(imp.getName()!=null) imps.add(new SourceImport(imp.getName(), imp.isStatic(), imp.isInclusive()));
+    SourceImport imports[] = imps.toArray(new SourceImport[imps.size()]);
+
+    // Get snapshots of named top level classes
+    List <SourceClass> classes = new ArrayList();
+    for(JClassDecl cd : aJFile.getClassDecls()) { String sname = cd.getSimpleName(); if(sname==null) continue;
+        classes.add(new SourceClass(cd, pname!=null? pname + '.' + sname : sname, null, pname, imports)); }
+    return classes.toArray(new SourceClass[classes.size()]);
+}
+
+/**
+ * An immutable snapshot of a parsed class declaration: Names, modifiers and type names (no nodes or decls).
+ */
+static class SourceClass {
+
+    // The class name (with '$' for member classes), simple name, modifiers and whether interface (or annotation)/enum
+    String            _name, _simpleName;
+    int               _mods;
+    boolean           _interface, _enum;
+
+    // The extends and implements types
+    TypeName          _extends[], _implements[];
+
+    // The type var names and bounds types (null if none)
+    String            _tvarNames[];
+    TypeName          _tvarBounds[];
+
+    // The enum constant names, fields, methods, constructors and member classes
+    String            _enumConsts[];
+    SourceMember      _fields[], _methods[], _constrs[];
+    SourceClass       _classes[];
+
+    // The enclosing class (null if top level), and the package name and imports of file
+    SourceClass       _encl;
+    String            _pkgName;
+    SourceImport      _imports[];
+
+    /** Creates a new SourceClass from given parsed class declaration. */
+    SourceClass(JClassDecl aCD, String aName, SourceClass anEncl, String aPkgName, SourceImport theImps[])
+    {
+        // Set names, modifiers and file info
+        _name = aName; _simpleName = aCD.getSimpleName(); _mods = getClassMods(aCD);
+        _interface = aCD.isInterface() || aCD.getClassType()==JClassDecl.ClassType.Annotation; _enum = aCD.isEnum();
+        _encl = anEncl; _pkgName = aPkgName; _imports = theImps;
+
+        // Set extends, implements and type vars
+        _extends = TypeName.get(aCD.getExtendsTypes()); _implements = TypeName.get(aCD.getImplementsTypes());
+        List <JTypeVar> tvars = aCD.getTypeVars(); int tvc = tvars!=null? tvars.size() : 0;
+        _tvarNames = new String[tvc]; _tvarBounds = new TypeName[tvc];
+        for(int i=0;i<tvc;i++) { JTypeVar tv = tvars.get(i); _tvarNames[i] = tv.getName();
+            _tvarBounds[i] = tv.getTypes().size()>0? TypeName.get(tv.getTypes().get(0)) : null; }
+
+        // Set enum constants
+        List <String> ecs = new ArrayList();
+        for(JEnumConst ec : aCD.getEnumConstants()) if(ec.getName()!=null) ecs.add(ec.getName());
+        _enumConsts = ecs.toArray(new String[ecs.size()]);
+
+        // Set fields
+        List <SourceMember> fields = new ArrayList();
+        for(JFieldDecl fd : aCD.getFieldDecls()) { int mods = fd.getMods().getValue();
+            for(JVarDecl vd : fd.getVarDecls())
+                if(vd.getName()!=null) fields.add(new SourceMember(vd.getName(), mods, TypeName.get(vd.getType())));
+        }
+        _fields = fields.toArray(new SourceMember[fields.size()]);
+
+        // Set methods and constructors
+        List <SourceMember> methods = new ArrayList();
+        for(JMethodDecl md : aCD.getMethodDecls()) if(md.getName()!=null) methods.add(new SourceMember(md));
+        _methods = methods.toArray(new SourceMember[methods.size()]);
+        JConstrDecl cds[] = aCD.getConstructorDecls(); _constrs = new SourceMember[cds.length];
+        for(int i=0;i<cds.length;i++) _constrs[i] = new SourceMember(cds[i]);
+
+        // Set member classes
+        List <SourceClass> classes = new ArrayList();
+        for(JClassDecl icd : aCD.getClassDecls())
+            if(icd.getParent()==aCD && !icd.isAnonymousClass() && icd.getSimpleName()!=null)
+                classes.add(new SourceClass(icd, aName + '$' + icd.getSimpleName(), this, aPkgName, theImps));
+        _classes = classes.toArray(new SourceClass[classes.size()]);
+    }
+
+    /** Returns the index of given type var name (or -1). */
+    int getTypeVarIndex(String aName)  { return indexOf(_tvarNames, aName); }
+
+    /** Returns the member class for given simple name (or null). */
+    SourceClass getClass(String aName)
+    {
+        for(SourceClass mc : _classes) if(mc._simpleName.equals(aName)) return mc;
+        return null;
+    }
+}
+
+/**
+ * An immutable snapshot of a parsed field, method or constructor declaration.
+ */
+static class SourceMember {
+
+    // The name, modifiers, type and param types
+    String            _name;
+    int               _mods;
+    TypeName          _type, _params[];
+
+    // The method type var names and bounds types (null if none)
+    String            _tvarNames[];
+    TypeName          _tvarBounds[];
+
+    // Whether method has a block
+    boolean           _block;
+
+    /** Creates a new SourceMember for field. */
+    SourceMember(String aName, int theMods, TypeName aType)
+    {
+        _name = aName; _mods = theMods; _type = aType;
+        _params = new TypeName[0]; _tvarNames = new String[0]; _tvarBounds = new TypeName[0];
+    }
+
+    /** Creates a new SourceMember for method or constructor. */
+    SourceMember(JMethodDecl aMD)
+    {
+        _name = aMD.getName(); _mods = aMD.getMods().getValue(); _block = aMD.getBlock()!=null;
+        _type = aMD instanceof JConstrDecl? null : TypeName.get(aMD.getType());
+        List <JVarDecl> params = aMD.getParameters(); _params = new TypeName[params.size()];
+        for(int i=0;i<_params.length;i++) _params[i] = TypeName.get(params.get(i).getType());
+        List <JTypeVar> tvars = aMD.getTypeVars(); int tvc = tvars!=null? tvars.size() : 0;
+        _tvarNames = new String[tvc]; _tvarBounds = new TypeName[tvc];
+        for(int i=0;i<tvc;i++) { JTypeVar tv = tvars.get(i); _tvarNames[i] = tv.getName();
+            _tvarBounds[i] = tv.getTypes().size()>0? TypeName.get(tv.getTypes().get(0)) : null; }
+    }
+}
+
+/**
+ * An immutable type name as written in source: Name (maybe dotted), type args and array count.
+ */
+static class TypeName {
+
+    // The name, type args (null if none) and array count
+    String            _name;
+    TypeName          _args[];
+    int               _arrayCount;
+
+    /** Creates a new TypeName. */
+    TypeName(String aName, TypeName theArgs[], int anArrayCount)  { _name = aName; _args = theArgs; _arrayCount = anArrayCount; }
+
+    /** Returns a TypeName for given parsed type (or null if type or name is missing). */
+    static TypeName get(JType aType)
+    {
+        String name = aType!=null? aType.getName() : null; if(name==null) return null;
+        List <JType> targs = aType.getTypeArgs(); TypeName args[] = null;
+        if(targs!=null && targs.size()>0) { args = new TypeName[targs.size()];
+            for(int i=0;i<args.length;i++) args[i] = get(targs.get(i)); }
+        return new TypeName(name, args, aType.getArrayCount());
+    }
+
+    /** Returns TypeNames for given parsed types. */
+    static TypeName[] get(List <JType> theTypes)
+    {
+        TypeName types[] = new TypeName[theTypes.size()];
+        for(int i=0;i<types.length;i++) types[i] = get(theTypes.get(i));
+        return types;
+    }
+}
+
+/**
+ * An immutable import: Name and whether static/inclusive.
+ */
+static class SourceImport {
+
+    // The name and whether static/inclusive
+    String            _name;
+    boolean           _static, _inclusive;
+
+    /** Creates a new SourceImport. */
+    SourceImport(String aName, boolean isStatic, boolean isInclusive)  { _name = aName; _static = isStatic; _inclusive = isInclusive; }
+}
+
+/**
+ * The decls for the type names of a snapshot (resolved without decls lock).
+ *
+ * Simple names resolve like javac, except that member classes inherited from super types aren't seen (that would
+ * need member decls of super types, which may be this class): Type vars, this class and enclosing classes and their
+ * member classes, single type imports, package, java.lang, then inclusive imports.
+ */
+class Resolved {
+
+    // The snapshot
+    SourceClass       _source;
+
+    // The super type and interfaces
+    JavaDecl          _stype;
+    JavaDeclClass     _infcs[];
+
+    // The type var bounds, member class decls and field types (nulls for unresolved)
+    JavaDecl          _tvarBounds[], _classes[], _fieldTypes[];
+
+    // The method return types, method param types and constructor param types (nulls for unresolved)
+    JavaDecl          _methodTypes[], _methodParams[][], _constrParams[][];
+
+    /** Creates a new Resolved for given snapshot and resolves types. */
+    Resolved(SourceClass aSrc)
+    {
+        // Get super type (interfaces have none, enums extend Enum) and interfaces (for interface, the extends types)
+        JavaDeclOwner owner = _cdecl._owner; _source = aSrc;
+        if(!aSrc._interface)
+            _stype = aSrc._extends.length>0? getTypeDecl(aSrc._extends[0], null, true) : null;
+        if(!aSrc._interface && _stype==null) _stype = owner.getJavaDecl(aSrc._enum? Enum.class : Object.class);
+        List <JavaDeclClass> infcs = new ArrayList();
+        for(TypeName itype : aSrc._interface? aSrc._extends : aSrc._implements) {
+            JavaDecl idecl = getTypeDecl(itype, null, true); JavaDeclClass icdecl = idecl!=null? idecl.getClassType() : null;
+            if(icdecl!=null) infcs.add(icdecl); }
+        _infcs = infcs.toArray(new JavaDeclClass[infcs.size()]);
+
+        // Get type var bounds (Object if none)
+        _tvarBounds = new JavaDecl[aSrc._tvarNames.length];
+        for(int i=0;i<_tvarBounds.length;i++) { JavaDecl bnd = getTypeDecl(aSrc._tvarBounds[i], null, true);
+            _tvarBounds[i] = bnd!=null? bnd : owner.getJavaDecl(Object.class); }
+
+        // Get member class decls
+        _classes = new JavaDecl[aSrc._classes.length];
+        for(int i=0;i<_classes.length;i++) { JavaDecl decl = owner.getJavaDecl(aSrc._classes[i]._name);
+            _classes[i] = decl instanceof JavaDeclClass? decl : null; }
+
+        // Get field types
+        _fieldTypes = new JavaDecl[aSrc._fields.length];
+        for(int i=0;i<_fieldTypes.length;i++) _fieldTypes[i] = getTypeDecl(aSrc._fields[i]._type, null, true);
+
+        // Get method return and param types, and constructor param types
+        _methodTypes = new JavaDecl[aSrc._methods.length]; _methodParams = new JavaDecl[aSrc._methods.length][];
+        for(int i=0;i<_methodTypes.length;i++) { SourceMember md = aSrc._methods[i];
+            _methodTypes[i] = getTypeDecl(md._type, md, true); _methodParams[i] = getParamTypes(md); }
+        _constrParams = new JavaDecl[aSrc._constrs.length][];
+        for(int i=0;i<_constrParams.length;i++) _constrParams[i] = getParamTypes(aSrc._constrs[i]);
+    }
+
+    /** Returns the param class types for given method (or null if any can't be resolved). */
+    JavaDecl[] getParamTypes(SourceMember aMD)
+    {
+        JavaDecl ptypes[] = new JavaDecl[aMD._params.length];
+        for(int i=0;i<ptypes.length;i++) {
+            ptypes[i] = getTypeDecl(aMD._params[i], aMD, false); if(ptypes[i]==null) return null; }
+        return ptypes;
+    }
+
+    /** Returns the decl for given type name (method type var as bounds type), with type args if requested. */
+    JavaDecl getTypeDecl(TypeName aType, SourceMember aMD, boolean doArgs)
+    {
+        // Get base decl: Method type var bounds, class type var or class
+        if(aType==null) return null;
+        int mtv = aMD!=null? indexOf(aMD._tvarNames, aType._name) : -1;
+        JavaDecl decl = mtv>=0? getTypeDecl(aMD._tvarBounds[mtv], null, true) : getBaseDecl(aType._name);
+        if(mtv>=0 && decl==null) decl = _cdecl._owner.getJavaDecl(Object.class);
+        if(decl==null) return null;
+
+        // If type args, get decl for ParamType (if any arg can't be resolved, just use raw type)
+        if(doArgs && mtv<0 && aType._args!=null && decl.isClass()) {
+            JavaDecl args[] = new JavaDecl[aType._args.length];
+            for(int i=0;i<args.length && args!=null;i++) {
+                args[i] = getTypeDecl(aType._args[i], aMD, true); if(args[i]==null) args = null; }
+            if(args!=null) decl = decl.getParamTypeDecl(args);
+        }
+
+        // If array, get array decl
+        for(int i=0;i<aType._arrayCount && decl!=null;i++) decl = decl.getArrayTypeDecl();
+        return decl;
+    }
+
+    /** Returns the decl for given class type var or class name referenced in snapshot. */
+    JavaDecl getBaseDecl(String aName)
+    {
+        // Handle primitive
+        JavaDeclOwner owner = _cdecl._owner;
+        Class pclass = ClassUtils.getPrimitiveClass(aName);
+        if(pclass!=null) return owner.getJavaDecl(pclass);
+
+        // Handle dotted name: Try fully qualified class name, then first part as class and rest as member classes
+        int ind = aName.indexOf('.');
+        if(ind>0) { JavaDecl decl = getClassDecl(aName); if(decl!=null) return decl;
+            decl = getBaseDecl(aName.substring(0, ind)); if(decl==null || !decl.isClass()) return null;
+            decl = owner.getJavaDecl(decl.getName() + '$' + aName.substring(ind+1).replace('.', '$'));
+            return decl!=null && decl.isClass()? decl : null; }
+
+        // Check class type vars, this class and enclosing classes and their member classes
+        for(SourceClass sc=_source; sc!=null; sc=sc._encl) {
+            if(sc.getTypeVarIndex(aName)>=0) {
+                SourceDecls sdecls = sc==_source? SourceDecls.this : getSourceDecls(sc._name);
+                return sdecls!=null? sdecls.getTypeVarDecl(aName) : null; }
+            if(sc._simpleName.equals(aName)) return getClassDecl(sc._name);
+            SourceClass mc = sc.getClass(aName); if(mc!=null) return getClassDecl(mc._name);
+        }
+
+        // Check single type imports
+        SourceImport imps[] = _source._imports;
+        for(SourceImport imp : imps)
+            if(!imp._inclusive && (imp._name.equals(aName) || imp._name.endsWith('.' + aName))) {
+                JavaDecl decl = getClassDecl(imp._name); if(decl!=null) return decl; }
+
+        // Check package and java.lang
+        String pname = _source._pkgName;
+        JavaDecl decl = getClassDecl(pname!=null? pname + '.' + aName : aName); if(decl!=null) return decl;
+        decl = getClassDecl("java.lang." + aName); if(decl!=null) return decl;
+
+        // Check inclusive imports
+        for(SourceImport imp : imps)
+            if(imp._inclusive && (decl = getClassDecl(imp._name + '.' + aName))!=null)
+                return decl;
+        return null;
+    }
+
+    /** Returns the class decl for given qualified name (with '.' or '$' separating member classes). */
+    JavaDecl getClassDecl(String aName)
+    {
+        // Try name, then replace dots after capitalized parts with '$' (as member class)
+        JavaDeclOwner owner = _cdecl._owner;
+        for(String name=aName; name!=null; ) {
+            JavaDecl decl = owner.getJavaDecl(name); if(decl!=null && decl.isClass()) return decl;
+            int ind = name.lastIndexOf('.'), sind = name.lastIndexOf('.', ind-1) + 1;
+            name = ind>0 && Character.isUpperCase(name.charAt(sind))? name.substring(0, ind) + '$' +
+                name.substring(ind+1) : null;
+        }
+        return null;
+    }
+
+    /** Returns the source decls for given class name (or null). */
+    SourceDecls getSourceDecls(String aName)
+    {
+        JavaDecl decl = _cdecl._owner.getJavaDecl(aName);
+        return decl instanceof JavaDeclClass? ((JavaDeclClass)decl)._srcdecls : null;
+    }
+}
+
+/**
+ * Returns the index of given string in given array (or -1).
+ */
+private static int indexOf(String theStrs[], String aStr)
+{
+    for(int i=0;i<theStrs.length;i++) if(theStrs[i]!=null && theStrs[i].equals(aStr)) return i;
+    return -1;
+}
+
+}
@@ -1,78 +1,296 @@
 package snap.javatext;
+import java.util.*;
 import snap.javakit.*;
+import snap.javatext.JavaTextBox.*;
 import snap.parse.*;
 
 /**
  * A JFile node that can add/remove chars.
+ *
+ * Edits are applied by reparsing the smallest enclosing node that can be parsed on its own (statement, block,
+ * class member, top level class or import section). Tokens come from text lines, so untouched siblings keep their
+ * tokens and shift with their lines.
  */
 public class JFilePlus extends JFile {
 
     // A JavaText
     JavaTextBox      _jtbox;
 
-    // A statement parser
-    StmtParser       _stmtParser;
-    
+    // The node parsers, by rule name
+    Map <String,NodeParser>  _parsers = new HashMap();
+
+    // The nodes that can be reparsed for current change (innermost first)
+    List <ReparseNode>       _rnodes = new ArrayList();
+
+    // Whether some node was only partially reparsed (file needs full parse to be exact)
+    boolean          _partial;
+
+    // Whether file couldn't be updated for a change (file needs full parse)
+    boolean          _stale;
+
+    // The decls version (incremented when class members, classes or imports are replaced)
+    int              _declsVersion;
+
 /**
  * Creates a JFilePlus from a JNode.
  */
-JFilePlus(JavaTextBox aJavaText, JFile aJFile)  { _jtbox = aJavaText; init(aJFile); _stmtParser = new StmtParser(); }
+JFilePlus(JavaTextBox aJavaText, JFile aJFile)  { _jtbox = aJavaText; init(aJFile); }
+
+/**
+ * Returns whether file needs a full parse to be exact (some change couldn't be reparsed exactly).
+ */
+public boolean isFullParseNeeded()  { return _partial || _stale; }
+
+/**
+ * Returns the decls version (incremented when class members, classes or imports are replaced).
+ */
+public int getDeclsVersion()  { return _declsVersion; }
+
+/**
+ * Called before lines are updated for range change to get nodes that can be reparsed (while tokens match lines).
+ */
+void charsChanging(int aStart, int endOld)
+{
+    // Clear last change nodes (just return if waiting for full parse)
+    _rnodes.clear(); if(_stale || _jtbox.getLineCount()==0) return;
+    
+    // If large file, just mark stale (lines outside lex window have no parse tokens, so file uses background parse)
+    if(_jtbox.isLargeFile()) { _stale = true; return; }
+
+    // Get range of tokens on changed lines (these tokens are replaced, so reparsed node must include them)
+    int start = aStart, end = endOld;
+    int sline = _jtbox.getLineAt(aStart).getIndex(), eline = _jtbox.getLineAt(endOld).getIndex();
+    for(int i=sline; i<=eline; i++) { JavaTextLine line = _jtbox.getLine(i);
+        for(int j=0, jMax=line.getTokenCount(); j<jMax; j++) { JavaTextToken token = line.getToken(j);
+            if(token.isSpecialToken()) continue;
+            start = Math.min(start, token.getInputStart()); end = Math.max(end, token.getInputEnd()); }
+    }
+
+    // Get nodes that enclose token range and can be reparsed
+    for(JNode node=getNodeAtCharIndex(start, end); node!=null; node=node.getParent()) {
+
+        // Handle statement, block, class member or top level class
+        String rule = getReparseRule(node);
+        if(rule!=null && node.getStart()<=start && end<=node.getEnd())
+            _rnodes.add(new ReparseNode(node, rule, node.getStart(), node.getEnd()));
+
+        // Handle import section (package and import decls before first class)
+        if(node==this && getClassDecl()!=null && end<getClassDecl().getStart())
+            _rnodes.add(new ReparseNode(this, "JavaFileImports", 0, getClassDecl().getStart()));
+    }
+}
 
 /**
  * Updates this JFile for given range change.
  */
 void updateChars(int aStart, int endOld, int endNew)
 {
-    // Get node and statement at index
-    JNode jnode = getNodeAtCharIndex(aStart); int len = endNew - endOld;
-    JStmtBlock stmt = jnode instanceof JStmtBlock? (JStmtBlock)jnode : jnode.getParent(JStmtBlock.class);
-    
-    // If adding more than 50 chars, just re-parse. If removing, get outer statement enclosing range
-    if(len>50) stmt = null;
-    else while(stmt!=null && stmt.getEnd()<endOld) 
-        stmt = stmt.getParent(JStmtBlock.class);
-    
-    // Replace new statement
-    replace(stmt);
+    // If waiting for full parse, just return
+    if(_stale) return;
+    int delta = endNew - endOld;
+
+    // Iterate over reparse nodes (innermost first) and replace first one that reparses to same range
+    for(ReparseNode rnode : _rnodes) { JNode node = rnode.node; String rule = rnode.rule;
+        int start = rnode.start, end = rnode.end + delta;
+
+        // Handle import section: Reparse from file start and make sure imports end at first class
+        if(rule.equals("JavaFileImports")) {
+            JNode node2 = reparse(rule, 0); int iend = getPrevTokenEnd(end);
+            int end2 = node2!=null && node2.getChildCount()>0? node2.getEnd() : 0;
+            if(!getParser(rule)._failed && end2==iend) {
+                replaceImportDecls((JFile)node2); didReplace(true);
+                if(_jtbox.getHighlighter()!=null) _jtbox.getHighlighter().addDirty(this);
+                return; }
+            continue;
+        }
+
+        // Reparse node - if node has same range, replace and return
+        JNode node2 = reparse(rule, start);
+        if(node2!=null && !getParser(rule)._failed && node2.getStart()==start && node2.getEnd()==end) {
+            replace(node, node2, rule); didReplace(rule.equals("ClassBodyDecl") || rule.equals("TypeDecl")); return; }
+
+        // If method/initializer body didn't reparse exactly, use partial block (file is exact again after full parse)
+        if(rule.equals("Block") && node.getParent() instanceof JMemberDecl) {
+            Token stok = getToken(start, false), etok = getToken(end, true); if(stok==null || etok==null) break;
+            JStmtBlock block = node2 instanceof JStmtBlock? (JStmtBlock)node2 : null;
+            if(block==null) { block = new JStmtBlock(); block.setStartToken(stok); }
+            block.setEndToken(etok);
+            replace(node, block, rule); _partial = true; _rnodes.clear(); return;
+        }
+    }
+
+    // Otherwise, mark stale (file will do full parse)
+    _stale = true; _rnodes.clear();
 }
 
 /**
- * Replace statement.
+ * Returns the rule to reparse given node, if node can be reparsed by itself.
  */
-void replace(JStmtBlock aStmt)
+private String getReparseRule(JNode aNode)
 {
-    // If statement exists, re-parse and replace
-    if(aStmt!=null) { //System.out.println("Replacing: " + aStmt.getString().replace("\n", "  "));
-    
-        // Parse new JStmtBlock (create empty one if there wasn't enough in block to create it)
-        _stmtParser.setInput(_jtbox.getRichText());
-        _stmtParser.setCharIndex(aStmt.getStart());
-        JStmtBlock stmt2 = null; try { stmt2 = _stmtParser.parseCustom(JStmtBlock.class); } catch(Exception e) { }
-        if(stmt2==null) { stmt2 = new JStmtBlock(); stmt2.setStartToken(aStmt.getStartToken()); }
-        
-        // Replace old statement with new statement
-        JNode spar = aStmt.getParent();
-        stmt2.setEndToken(aStmt.getEndToken());
-        spar.setBlock(stmt2);
+    // Handle statement in block (but not constructor call, which is only valid in ConstrDecl)
+    JNode par = aNode.getParent(); if(par==null) return null;
+    if(aNode instanceof JStmt && par instanceof JStmtBlock && !(aNode instanceof JStmtConstrCall))
+        return "BlockStatement";
+
+    // Handle block of method, initializer, lambda or statement (constructor block isn't a plain Block)
+    if(aNode instanceof JStmtBlock && !(par instanceof JConstrDecl) && par.getBlock()==aNode)
+        return "Block";
+
+    // Handle class member (including member class)
+    if(aNode instanceof JMemberDecl && par instanceof JClassDecl &&
+        ((JClassDecl)par).getMemberDecls().contains(aNode))
+        return "ClassBodyDecl";
+
+    // Handle top level class
+    if(aNode instanceof JClassDecl && par==this)
+        return "TypeDecl";
+    return null;
+}
+
+/**
+ * Reparses node for given rule at given char index.
+ */
+private JNode reparse(String aRule, int aStart)
+{
+    NodeParser parser = getParser(aRule); parser._failed = false;
+    parser.setInput(_jtbox.getRichText());
+    parser.setCharIndex(aStart);
+    JNode node = null; try { node = parser.parseCustom(JNode.class); }
+    catch(Exception e) { parser._failed = true; }
+    return node;
+}
+
+/**
+ * Replaces given node with new node.
+ */
+private void replace(JNode aNode, JNode aNode2, String aRule)
+{
+    // Replace node in parent (and update name index of identifier and type nodes)
+    JNode par = aNode.getParent(); removeIdNodes(aNode);
+    switch(aRule) {
+        case "BlockStatement": ((JStmtBlock)par).replaceStatement((JStmt)aNode, (JStmt)aNode2); break;
+        case "Block": par.setBlock((JStmtBlock)aNode2); break;
+        case "ClassBodyDecl": ((JClassDecl)par).replaceMemberDecl((JMemberDecl)aNode, (JMemberDecl)aNode2); break;
+        case "TypeDecl": replaceClassDecl((JClassDecl)aNode, (JClassDecl)aNode2); break;
     }
-    
-    // Otherwise, do full parse
-    //else _jtbox._jfile = null; //System.out.println("Full Parse");
+    addIdNodes(aNode2);
+    if(_jtbox.getHighlighter()!=null) _jtbox.getHighlighter().addDirty(aNode2);
+
+    // Update ancestors that started/ended with old node tokens
+    for(JNode n=par; n!=null; n=n.getParent()) {
+        if(n.getStartToken()==aNode.getStartToken()) n.setStartToken(aNode2.getStartToken());
+        if(n.getEndToken()==aNode.getEndToken()) n.setEndToken(aNode2.getEndToken());
+    }
+}
+
+/**
+ * Called after node replaced.
+ */
+private void didReplace(boolean declsChanged)
+{
+    // If class members, classes or imports changed, clear import cache and reset source decls in JavaDeclOwner
+    _rnodes.clear();
+    if(declsChanged) {
+        clearImportCache(); _declsVersion++;
+        if(getSourceFile()!=null && getProject()!=null)
+            getProject().getJavaDeclOwner().setSourceFile(this);
+    }
+}
+
+/**
+ * Replaces node tokens from parse of a text snapshot with the text line tokens at same location, so nodes shift with
+ * lines for later edits (tokens that aren't found are kept).
+ */
+void bindTextTokens()  { bindTextTokens(this, new IdentityHashMap()); }
+
+/**
+ * Replaces node tokens with text line tokens for given node and its children.
+ */
+private void bindTextTokens(JNode aNode, Map <Token,Token> theTokens)
+{
+    aNode.setStartToken(getTextToken(aNode.getStartToken(), theTokens));
+    aNode.setEndToken(getTextToken(aNode.getEndToken(), theTokens));
+    for(JNode child : aNode.getChildren())
+        bindTextTokens(child, theTokens);
 }
 
 /**
- * A Parser for JavaText modified statements.
+ * Returns the text line token for given token.
  */
-public class StmtParser extends Parser {
+private Token getTextToken(Token aToken, Map <Token,Token> theTokens)
+{
+    if(aToken==null || aToken instanceof JavaTextToken) return aToken;
+    Token token = theTokens.get(aToken); if(token!=null) return token;
+    token = getToken(aToken.getInputStart(), false);
+    if(token==null || token.getInputEnd()!=aToken.getInputEnd()) token = aToken;
+    theTokens.put(aToken, token);
+    return token;
+}
 
-    /** Create new StmtParser. */
-    StmtParser()  { super(_jtbox._parser.getRule("Statement")); }
+/**
+ * Returns the text token that starts (or ends) at given char index.
+ */
+private Token getToken(int anIndex, boolean isEnd)
+{
+    JavaTextLine line = _jtbox.getLineAt(isEnd && anIndex>0? anIndex-1 : anIndex);
+    for(int i=0, iMax=line.getTokenCount(); i<iMax; i++) { JavaTextToken token = line.getToken(i);
+        if((isEnd? token.getInputEnd() : token.getInputStart())==anIndex)
+            return token; }
+    return null;
+}
+
+/**
+ * Returns the end of last parse token (not comment) before given char index (or 0 if none).
+ */
+private int getPrevTokenEnd(int anIndex)
+{
+    for(int i=_jtbox.getLineAt(anIndex).getIndex(); i>=0; i--) { JavaTextLine line = _jtbox.getLine(i);
+        for(int j=line.getTokenCount()-1; j>=0; j--) { JavaTextToken token = line.getToken(j);
+            if(!token.isSpecialToken() && token.getInputEnd()<=anIndex)
+                return token.getInputEnd(); }
+    }
+    return 0;
+}
+
+/**
+ * Returns the node parser for given rule name.
+ */
+private NodeParser getParser(String aRule)
+{
+    NodeParser parser = _parsers.get(aRule);
+    if(parser==null) _parsers.put(aRule, parser = new NodeParser(aRule));
+    return parser;
+}
+
+/**
+ * A node that can be reparsed for current change.
+ */
+private static class ReparseNode {
+
+    // The node, the rule to parse it and the start/end before change
+    JNode      node; String rule; int start, end;
+
+    /** Creates a new ReparseNode. */
+    ReparseNode(JNode aNode, String aRule, int aStart, int anEnd)  { node = aNode; rule = aRule; start = aStart; end = anEnd; }
+}
+
+/**
+ * A Parser for JavaText modified nodes.
+ */
+public class NodeParser extends Parser {
+
+    // Whether last parse failed
+    boolean    _failed;
+
+    /** Create new NodeParser. */
+    NodeParser(String aRule)  { super(_jtbox._parser.getRule(aRule)); }
 
     /** Returns tokenizer that gets tokens from text. */
     public Tokenizer getTokenizer()  { return _jtbox._parser.getTokenizer(); }
-    
-    /** Override to ignore exception. */
-    protected void parseFailed(ParseRule aRule, ParseHandler aHandler)  { }
+
+    /** Override to just note failure. */
+    protected void parseFailed(ParseRule aRule, ParseHandler aHandler)  { _failed = true; }
 }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javatext;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import snap.javakit.*;
+import snap.javatext.JavaTextBox.*;
+
+/**
+ * A differential check of JFilePlus incremental reparse: Runs random token level edits (delete, insert or replace a
+ * token, or insert whitespace/newline) on Java files and checks the incremental JFile against a full parse after every
+ * edit. Half the edits are followed by an edit that restores the text, so text stays close to valid Java, but both
+ * the edited and the restored text are checked. Prints each difference and a summary:
+ *
+ *     java snap.javatext.JFilePlusCheck [-edits 1000] [-seed 1] file_or_dir ...
+ */
+public class JFilePlusCheck {
+
+    // The number of edits per file and the random
+    int              _editCount;
+    Random           _random;
+
+    // The number of files, edits checked, edits that needed full parse and mismatches
+    int              _fileCount, _checkCount, _fullCount, _mismatchCount;
+
+/**
+ * Creates a new JFilePlusCheck for given number of edits per file and random seed.
+ */
+public JFilePlusCheck(int anEditCount, long aSeed)  { _editCount = anEditCount; _random = new Random(aSeed); }
+
+/**
+ * Checks random edits of given Java string (file name is for messages).
+ */
+public void checkEdits(String aName, String aJavaString)
+{
+    // Create JavaTextBox for string
+    JavaTextBox tbox = new JavaTextBox(); tbox.setString(aJavaString); tbox.getJFile(); _fileCount++;
+
+    // Do edits, checking after each (and after restore, if restoring)
+    for(int i=0; i<_editCount; i++) {
+        String text = tbox.getString(); Edit edit = getRandomEdit(tbox); if(edit==null) break;
+        edit.apply(tbox); check(tbox, aName, edit);
+        if(_random.nextBoolean()) {
+            Edit restore = new Edit("restore", edit._start, edit._start + edit._str.length(),
+                text.substring(edit._start, edit._end));
+            restore.apply(tbox); check(tbox, aName, restore);
+        }
+    }
+}
+
+/**
+ * Returns a random token level edit for text box (null if no tokens).
+ */
+protected Edit getRandomEdit(JavaTextBox aTBox)
+{
+    // Get parse tokens (start/end char index pairs)
+    List <int[]> tokens = new ArrayList();
+    for(int i=0, iMax=aTBox.getLineCount(); i<iMax; i++) { JavaTextLine line = aTBox.getLine(i);
+        for(int j=0, jMax=line.getTokenCount(); j<jMax; j++) { JavaTextToken token = line.getToken(j);
+            if(!token.isSpecialToken() && token.getInputEnd()>token.getInputStart())
+                tokens.add(new int[] { token.getInputStart(), token.getInputEnd() }); }
+    }
+    if(tokens.isEmpty()) return null;
+
+    // Get random token and other token text
+    String text = aTBox.getString();
+    int tok[] = tokens.get(_random.nextInt(tokens.size())), other[] = tokens.get(_random.nextInt(tokens.size()));
+    String ostr = text.substring(other[0], other[1]);
+
+    // Return delete, insert (before or after token), replace or whitespace insert
+    switch(_random.nextInt(4)) {
+        case 0: return new Edit("delete", tok[0], tok[1], "");
+        case 1: { int ind = _random.nextBoolean()? tok[0] : tok[1];
+            return new Edit("insert", ind, ind, _random.nextBoolean()? ostr + ' ' : ' ' + ostr); }
+        case 2: return new Edit("replace", tok[0], tok[1], ostr);
+        default: { int ind = _random.nextBoolean()? tok[0] : tok[1];
+            return new Edit("space", ind, ind, _random.nextBoolean()? " " : "\n"); }
+    }
+}
+
+/**
+ * Checks text box JFile against full parse after given edit (resets JFile if edit needed full parse).
+ */
+protected void check(JavaTextBox aTBox, String aName, Edit anEdit)
+{
+    // If file wasn't updated exactly, reset JFile (text box would do full parse)
+    JFilePlus jfile = aTBox.getJFile();
+    if(jfile.isFullParseNeeded()) { aTBox._jfile = null; aTBox.getJFile(); _fullCount++; return; }
+
+    // Check against full parse
+    JFile jfile2 = aTBox._parser.getJavaFile(aTBox.getString()); _checkCount++;
+    String diff = getDiff(jfile, jfile2); if(diff==null) return;
+    System.err.println(aName + ": " + anEdit + ": " + diff); _mismatchCount++;
+    aTBox._jfile = null; aTBox.getJFile();
+}
+
+/**
+ * Returns a string describing the first difference of two node trees (by class, range and children), or null.
+ */
+public static String getDiff(JNode aNode1, JNode aNode2)
+{
+    // Check class (except for root), start/end and child count
+    if(aNode1.getClass()!=aNode2.getClass() && !(aNode1 instanceof JFile))
+        return aNode1.getNodeString() + " != " + aNode2.getNodeString() + " at " + aNode2.getStart();
+    if(aNode1.getStart()!=aNode2.getStart() || aNode1.getEnd()!=aNode2.getEnd())
+        return aNode1.getNodeString() + " range " + aNode1.getStart() + "-" + aNode1.getEnd() + " != " +
+            aNode2.getStart() + "-" + aNode2.getEnd();
+    if(aNode1.getChildCount()!=aNode2.getChildCount())
+        return aNode1.getNodeString() + " child count at " + aNode1.getStart() + ": " + aNode1.getChildCount() +
+            " != " + aNode2.getChildCount();
+
+    // Check children
+    for(int i=0, iMax=aNode1.getChildCount(); i<iMax; i++) {
+        String diff = getDiff(aNode1.getChild(i), aNode2.getChild(i));
+        if(diff!=null) return diff; }
+    return null;
+}
+
+/**
+ * Returns the summary text.
+ */
+public String getSummary()
+{
+    return "Files: " + _fileCount + ", edits checked: " + _checkCount + ", full parse needed: " + _fullCount +
+        ", mismatches: " + _mismatchCount;
+}
+
+/**
+ * Returns the number of mismatches.
+ */
+public int getMismatchCount()  { return _mismatchCount; }
+
+/**
+ * An edit: Replaces char range with string.
+ */
+protected static class Edit {
+
+    // The kind, char range and replacement string
+    String     _kind; int _start, _end; String _str;
+
+    /** Creates a new Edit. */
+    Edit(String aKind, int aStart, int anEnd, String aStr)  { _kind = aKind; _start = aStart; _end = anEnd; _str = aStr; }
+
+    /** Applies edit to given text box. */
+    void apply(JavaTextBox aTBox)  { aTBox.replaceChars(_str, null, _start, _end); }
+
+    /** Standard toString implementation. */
+    public String toString()  { return _kind + " " + _start + "-" + _end + " \"" + _str.replace("\n", "\\n") + '"'; }
+}
+
+/**
+ * Adds Java files in given file or dir to list.
+ */
+private static void getJavaFiles(File aFile, List <File> theFiles)
+{
+    if(aFile.isDirectory()) { File files[] = aFile.listFiles(); if(files!=null) for(File f : files) getJavaFiles(f, theFiles); }
+    else if(aFile.getName().endsWith(".java")) theFiles.add(aFile);
+}
+
+/**
+ * Main method: Checks random edits of Java files in given files or dirs, prints summary and exits with 1 if any
+ * mismatches.
+ */
+public static void main(String args[]) throws IOException
+{
+    // Get args
+    int count = 1000; long seed = 1; List <File> files = new ArrayList();
+    for(int i=0; i<args.length; i++)
+        if(args[i].equals("-edits") && i+1<args.length) count = Integer.parseInt(args[++i]);
+        else if(args[i].equals("-seed") && i+1<args.length) seed = Long.parseLong(args[++i]);
+        else getJavaFiles(new File(args[i]), files);
+
+    // Check files and print summary
+    JFilePlusCheck check = new JFilePlusCheck(count, seed);
+    for(File file : files)
+        check.checkEdits(file.getPath(), new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+    System.out.println(check.getSummary());
+    System.exit(check.getMismatchCount()>0? 1 : 0);
+}
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javatext;
+import java.io.*;
+import java.util.*;
+import java.util.function.LongSupplier;
+import snap.javakit.*;
+import snap.project.Project;
+import snap.web.*;
+
+/**
+ * Benchmarks the Java editor hot paths headless: JavaParser parse of small, medium and huge files, JFilePlus update
+ * under random edits, completion suggestions, class path class names, compatible method lookup and class file reads.
+ * The corpus is the source files of given project dir (SnapCode itself by default) and classes of the running JDK.
+ * Prints one tab separated line per benchmark (name, ops, avg/min/max micros), so results can be compared by tools.
+ * Also reports decl heap footprint (decl count and bytes per decl, without and with shared decl arrays):
+ *
+ *     java snap.javatext.JavaBench [project dir] [-out results.tsv]
+ */
+public class JavaBench {
+
+    // The project (for corpus, class path, completion and class data)
+    Project          _proj;
+
+    // The corpus source files, by size
+    List <WebFile>   _srcFiles = new ArrayList();
+
+    // The result lines
+    List <String>    _results = new ArrayList();
+
+    // The time in millis to run each benchmark before timing (for JIT) and to run it timed
+    public static int  WarmupTime = 1000, RunTime = 2000;
+
+    // The min size of generated huge file (in chars)
+    public static int  HugeSize = 1000000;
+
+    // The JDK classes for class file and method lookup benchmarks
+    static Class     _jdkClasses[] = { String.class, HashMap.class, ArrayList.class, Collections.class, Thread.class };
+
+/**
+ * Creates a new JavaBench for project at given dir.
+ */
+public JavaBench(File aDir)
+{
+    // Get project (and make sure its ClassPathInfo is set, so JNodes in project files find it)
+    WebSite site = WebURL.getURL(aDir).getAsSite();
+    _proj = Project.get(site, true); ClassPathInfo.get(site);
+
+    // Get source files by size
+    getJavaFiles(_proj.getSourceDir(), _srcFiles);
+    _srcFiles.sort((f1,f2) -> f1.getText().length() - f2.getText().length());
+}
+
+/**
+ * Runs all benchmarks.
+ */
+public void runAll()
+{
+    // Print header
+    System.out.println("# java " + System.getProperty("java.version") + ", " + _srcFiles.size() + " corpus files");
+    System.out.println("# name\tops\tavg_us\tmin_us\tmax_us");
+    if(_srcFiles.isEmpty()) { System.err.println("JavaBench: No source files in " + _proj.getSourceDir()); return; }
+
+    // Get small, medium and huge texts (median file, 90th percentile file and largest file body repeated)
+    String small = _srcFiles.get(_srcFiles.size()/2).getText();
+    String medium = _srcFiles.get(_srcFiles.size()*9/10).getText();
+    String huge = getHugeText(_srcFiles.get(_srcFiles.size()-1).getText());
+
+    // Parse
+    JavaParser parser = new JavaParser.UnsharedParser();
+    run("parse.small", () -> parser.getJavaFile(small));
+    run("parse.medium", () -> parser.getJavaFile(medium));
+    run("parse.huge", () -> parser.getJavaFile(huge));
+
+    // Edits, completion, class names, method lookup, class files
+    runEdits(medium);
+    runCompletions(_srcFiles.get(_srcFiles.size()*9/10));
+    run("classPath.allClassNames", () -> new ClassPathInfo(_proj).getAllClassNames());
+    runCompatibleMethods();
+    runClassFiles();
+    runDeclFootprint();
+}
+
+/**
+ * Runs JFilePlus update benchmark: Random whitespace inserts and range removes that are put back. Only
+ * JFilePlus.updateChars is timed (not text and line updates). Edits that leave JFile needing a full parse are reparsed
+ * synchronously (untimed) and reported as a separate count.
+ */
+protected void runEdits(String aJavaString)
+{
+    EditTextBox tbox = new EditTextBox(); tbox.setString(aJavaString); tbox.getJFile();
+    Random random = new Random(1);
+    runPart("jfile.updateChars", () -> { long time = tbox._updateTime;
+        
+        // Do random edit
+        int len = tbox.length(), start = random.nextInt(len+1);
+        if(random.nextBoolean()) tbox.replaceChars(random.nextBoolean()? " " : "\n", null, start, start);
+        else { int end = Math.min(start + random.nextInt(20), len); String str = tbox.getString().substring(start, end);
+            tbox.replaceChars("", null, start, end); tbox.replaceChars(str, null, start, start); }
+        
+        // If edit needs full parse, reset JFile (not timed, counted)
+        tbox._edits++;
+        if(tbox.getJFile().isFullParseNeeded()) { tbox._fullParses++; tbox._jfile = null; tbox.getJFile(); }
+        return tbox._updateTime - time;
+    });
+    
+    // Print and add full parse count
+    String line = String.format("jfile.fullParseFallbacks\t%d\tof %d edits", tbox._fullParses, tbox._edits);
+    System.out.println(line); _results.add(line);
+}
+
+/**
+ * Runs completion benchmarks for common contexts in given file: Type name, identifier and member after dot.
+ */
+protected void runCompletions(WebFile aFile)
+{
+    // Get JFile for source file
+    JFile jfile = new JavaParser.UnsharedParser().getJavaFile(aFile.getText()); jfile.setSourceFile(aFile);
+
+    // Get first node for each context in method bodies
+    JNode nodes[] = new JNode[3]; getCompletionNodes(jfile, nodes);
+    String names[] = { "complete.type", "complete.identifier", "complete.member" };
+
+    // Run completion for each node
+    for(int i=0; i<nodes.length; i++) { JNode node = nodes[i];
+        if(node==null) { System.err.println("JavaBench: No node for " + names[i] + " in " + aFile); continue; }
+        run(names[i], () -> new JavaCompleter().getSuggestions(node));
+    }
+}
+
+/**
+ * Runs compatible method lookup benchmarks: With new decl owner (cold) and shared decl owner (cached).
+ */
+protected void runCompatibleMethods()
+{
+    // Get decl owner for JDK classes
+    ClassLoader loader = JavaBench.class.getClassLoader();
+    JavaDeclOwner owner = new JavaDeclOwner() { public ClassLoader getClassLoader()  { return loader; } };
+
+    // Run lookup of common methods with new owner and shared owner
+    run("compatibleMethod.cold", () -> getCompatibleMethods(new JavaDeclOwner() {
+        public ClassLoader getClassLoader()  { return loader; } }));
+    run("compatibleMethod", () -> getCompatibleMethods(owner));
+}
+
+/**
+ * Looks up common JDK methods with given owner.
+ */
+private void getCompatibleMethods(JavaDeclOwner anOwner)
+{
+    JavaDecl str = anOwner.getJavaDecl(String.class), obj = anOwner.getJavaDecl(Object.class);
+    JavaDecl intd = anOwner.getJavaDecl(int.class);
+    anOwner.getJavaDeclClass(StringBuilder.class).getCompatibleMethodAll("append", new JavaDecl[] { str });
+    anOwner.getJavaDeclClass(String.class).getCompatibleMethodAll("substring", new JavaDecl[] { intd, intd });
+    anOwner.getJavaDeclClass(ArrayList.class).getCompatibleMethodAll("add", new JavaDecl[] { obj });
+    anOwner.getJavaDeclClass(HashMap.class).getCompatibleMethodAll("get", new JavaDecl[] { obj });
+}
+
+/**
+ * Runs class file benchmarks: ClassFileData.read of JDK class bytes and ClassData.getRefs of project class files.
+ */
+protected void runClassFiles()
+{
+    // Get JDK class bytes and run read
+    List <byte[]> bytesList = new ArrayList();
+    for(Class cls : _jdkClasses) {
+        byte bytes[] = getBytes(cls.getResourceAsStream(cls.getSimpleName() + ".class"));
+        if(bytes!=null) bytesList.add(bytes); }
+    run("classFile.read", () -> {
+        for(byte bytes[] : bytesList)
+            try { new ClassFileData().read(new DataInputStream(new ByteArrayInputStream(bytes))); }
+            catch(IOException e) { throw new RuntimeException(e); }
+    });
+
+    // Get project class files and run getRefs (new ClassData each time, since ClassData.get caches file data)
+    List <WebFile> classFiles = new ArrayList(); getClassFiles(_proj.getBuildDir(), classFiles, 20);
+    if(classFiles.isEmpty()) { System.err.println("JavaBench: No class files in " + _proj.getBuildDir()); return; }
+    run("classData.getRefs", () -> {
+        for(WebFile file : classFiles) new ClassData(file).getRefs(new HashSet()); });
+}
+
+/**
+ * Runs decl footprint measurement: Creates decls (with members) for classes of common JDK packages with a new owner
+ * and reports used heap growth per decl, without shared decl arrays (before) and with them (after).
+ */
+protected void runDeclFootprint()
+{
+    // Get class names of common JDK packages
+    ClassPathInfo cpinfo = new ClassPathInfo(_proj); List <String> cnames = new ArrayList();
+    for(String pkg : new String[] { "java.lang", "java.util", "java.io" })
+        cnames.addAll(cpinfo.getPackageClassNames(pkg, ""));
+    
+    // Measure without and with shared decl arrays
+    ClassLoader loader = JavaBench.class.getClassLoader();
+    for(boolean share : new boolean[] { false, true }) {
+        long mem = getUsedMemory(); int count = 0;
+        JavaDeclOwner owner = new JavaDeclOwner(share) { public ClassLoader getClassLoader()  { return loader; } };
+        for(String cname : cnames) { JavaDeclClass cdecl = owner.getJavaDeclClass(cname);
+            if(cdecl!=null) count += cdecl.getAllDecls().size(); }
+        mem = getUsedMemory() - mem;
+        String line = String.format("decls.footprint.%s\t%d\t%.1f bytes/decl\t%s", share? "shared" : "unshared", count,
+            count>0? mem/(double)count : 0, owner.getDeclStats());
+        System.out.println(line); _results.add(line);
+    }
+}
+
+/**
+ * Returns used heap after garbage collection.
+ */
+private static long getUsedMemory()
+{
+    Runtime rt = Runtime.getRuntime();
+    for(int i=0; i<3; i++) { System.gc(); try { Thread.sleep(50); } catch(InterruptedException e) { } }
+    return rt.totalMemory() - rt.freeMemory();
+}
+
+/**
+ * Runs given benchmark for warmup time, then timed for run time, and prints and adds result line.
+ */
+public void run(String aName, Runnable aRun)
+{
+    runPart(aName, () -> { long time = System.nanoTime(); aRun.run(); return System.nanoTime() - time; });
+}
+
+/**
+ * Runs given benchmark like run(), but op returns the nanos to count (so op can exclude setup from time).
+ */
+public void runPart(String aName, LongSupplier anOp)
+{
+    // Warmup
+    for(long end=System.currentTimeMillis()+WarmupTime; System.currentTimeMillis()<end; ) anOp.getAsLong();
+
+    // Run timed (at least once)
+    int ops = 0; long total = 0, min = Long.MAX_VALUE, max = 0;
+    for(long end=System.currentTimeMillis()+RunTime; ops==0 || System.currentTimeMillis()<end; ops++) {
+        long time = anOp.getAsLong();
+        total += time; min = Math.min(min, time); max = Math.max(max, time);
+    }
+
+    // Print and add result
+    String line = String.format("%s\t%d\t%.1f\t%.1f\t%.1f", aName, ops, total/1e3/ops, min/1e3, max/1e3);
+    System.out.println(line); _results.add(line);
+}
+
+/**
+ * Returns the result lines.
+ */
+public List <String> getResults()  { return _results; }
+
+/**
+ * Adds first type, identifier and member nodes in method bodies of given node to given array.
+ */
+private static void getCompletionNodes(JNode aNode, JNode theNodes[])
+{
+    // Add simple type or identifier in method body
+    if(aNode.getEnclosingMethodDecl()!=null) {
+        if(aNode instanceof JType && theNodes[0]==null && aNode.getName()!=null && aNode.getName().indexOf('.')<0 &&
+            !((JType)aNode).isPrimitive())
+            theNodes[0] = aNode;
+        else if(aNode instanceof JExprId) { JNode par = aNode.getParent();
+            boolean member = par instanceof JExprChain && ((JExprChain)par).getExpr(0)!=aNode;
+            if(member && theNodes[2]==null) theNodes[2] = aNode;
+            else if(!member && theNodes[1]==null) theNodes[1] = aNode;
+        }
+    }
+
+    // Recurse
+    for(JNode child : aNode.getChildren())
+        getCompletionNodes(child, theNodes);
+}
+
+/**
+ * Returns huge text for given Java text: Class body repeated until text is at least HugeSize.
+ */
+private static String getHugeText(String aJavaString)
+{
+    int start = aJavaString.indexOf('{') + 1, end = aJavaString.lastIndexOf('}');
+    if(start<=0 || end<start) return aJavaString;
+    String body = aJavaString.substring(start, end);
+    StringBuilder sb = new StringBuilder(aJavaString.substring(0, start));
+    while(sb.length()<HugeSize) sb.append(body);
+    return sb.append(aJavaString.substring(end)).toString();
+}
+
+/**
+ * Adds Java files in given dir to list.
+ */
+private static void getJavaFiles(WebFile aDir, List <WebFile> theFiles)
+{
+    for(WebFile file : aDir.getFiles())
+        if(file.isDir()) getJavaFiles(file, theFiles);
+        else if(file.getName().endsWith(".java")) theFiles.add(file);
+}
+
+/**
+ * Adds class files in given dir to list (up to given count).
+ */
+private static void getClassFiles(WebFile aDir, List <WebFile> theFiles, int aCount)
+{
+    for(WebFile file : aDir.getFiles()) { if(theFiles.size()>=aCount) return;
+        if(file.isDir()) getClassFiles(file, theFiles, aCount);
+        else if(file.getName().endsWith(".class") && file.getName().indexOf('$')<0) theFiles.add(file);
+    }
+}
+
+/**
+ * Returns the bytes of given stream (or null if stream is null or can't be read).
+ */
+private static byte[] getBytes(InputStream aStream)
+{
+    if(aStream==null) return null;
+    try(InputStream stream = aStream) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(); byte buf[] = new byte[8192];
+        for(int len=stream.read(buf); len>0; len=stream.read(buf)) bytes.write(buf, 0, len);
+        return bytes.toByteArray();
+    }
+    catch(IOException e) { System.err.println("JavaBench: " + e); return null; }
+}
+
+/**
+ * Main method: Runs benchmarks for project dir (default is current dir) and writes results to "-out" file, if given.
+ */
+public static void main(String args[]) throws IOException
+{
+    // Get args
+    File dir = new File("."), out = null;
+    for(int i=0; i<args.length; i++)
+        if(args[i].equals("-out") && i+1<args.length) out = new File(args[++i]);
+        else dir = new File(args[i]);
+
+    // Run benchmarks and write results
+    JavaBench bench = new JavaBench(dir); bench.runAll();
+    if(out!=null) try(Writer writer = new FileWriter(out)) {
+        for(String line : bench.getResults()) writer.write(line + "\n"); }
+    System.exit(0);
+}
+
+/**
+ * A JavaTextBox for edit benchmark: Times JFilePlus.updateChars and doesn't parse in background (headless bench has
+ * no event loop to finish background parse).
+ */
+private static class EditTextBox extends JavaTextBox {
+    
+    // The total nanos in JFile updates, the number of edits and the number of edits that needed a full parse
+    long _updateTime; int _edits, _fullParses;
+    
+    /** Override to create JFile that adds update time. */
+    protected JFilePlus createJFile(JFile aJFile)
+    {
+        return new JFilePlus(this, aJFile) {
+            void updateChars(int aStart, int endOld, int endNew) { long time = System.nanoTime();
+                super.updateChars(aStart, endOld, endNew); _updateTime += System.nanoTime() - time; }
+        };
+    }
+    
+    /** Override to not parse in background (edit benchmark does full parse itself). */
+    public void reloadSymbols()  { }
+}
+
+}
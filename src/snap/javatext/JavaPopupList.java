@@ -43,6 +43,10 @@ public void applySuggestion()  { applySuggestion(getSelItem()); }
  */
 public void applySuggestion(JavaDecl aDecl)
 {
+    // If suggestion is from class path metadata, resolve real decl (loads class)
+    if(aDecl instanceof JavaDeclStub) { JavaDecl decl = ((JavaDeclStub)aDecl).getDecl();
+        if(decl!=null) aDecl = decl; }
+    
     // Add suggestion text
     JavaTextArea textArea = getTextArea();
     JNode selectedNode = textArea.getSelectedNode();
@@ -3,6 +3,7 @@
  */
 package snap.javatext;
 import java.util.*;
+import java.util.concurrent.*;
 import snap.gfx.*;
 import snap.javakit.*;
 import snap.project.*;
@@ -30,12 +31,32 @@ public class JavaTextArea extends TextArea {
     // The node that the mouse is hoving over (if command is down)
     JNode                  _hoverNode;
 
-    // The list of selected tokens
+    // The list of selected tokens (sorted by line)
     List <TextBoxToken>    _tokens = new ArrayList();
     
+    // The range of lines in last paint (visible lines)
+    int                    _paintStart, _paintEnd = -1;
+    
+    // The build issue underlines (sorted by line) and the issues version and text version they were made for
+    List <Underline>       _underlines;
+    int                    _ulIssuesVersion, _ulTextVersion;
+    
     // A PopupList to show code completion stuff
     JavaPopupList          _popup;
     
+    // The completer for current popup suggestions
+    JavaCompleter          _completer;
+    
+    // The time budget (in millis) for completion sources before remaining sources are deferred
+    static int             COMPLETION_BUDGET = 30;
+    
+    // The executor for deferred completion sources (class path sources, found in background and posted back)
+    static ExecutorService _completeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "JavaTextArea Completer"); thread.setDaemon(true); return thread; });
+    
+    // The colors for warning underline and selected tokens
+    static Color           WARNING_COLOR = new Color(244,198,60), SELECTED_TOKEN_COLOR = new Color("#FFF3AA");
+    
     // The TextPane
     JavaTextPane           _textPane;
     
@@ -66,7 +87,11 @@ public JavaTextBox getTextBox()  { return (JavaTextBox)super.getTextBox(); }
 /**
  * Override to create JavaText.
  */
-protected TextBox createTextBox()  { return new JavaTextBox(); }
+protected TextBox createTextBox()
+{
+    JavaTextBox tbox = new JavaTextBox(); tbox.setHighlighter(new SemanticHighlighter(this));
+    return tbox;
+}
 
 /**
  * Returns the code completion popup.
@@ -80,7 +105,8 @@ public void activatePopupList()
 {
     // Get suggestions
     JNode selectedNode = getSelectedNode();
-    JavaDecl sugs[] = new JavaCompleter().getSuggestions(selectedNode);
+    if(_completer!=null) _completer.cancel();
+    JavaDecl sugs[] = (_completer=new JavaCompleter()).getSuggestions(selectedNode);
     if(sugs.length==0) return; // || !doReplace && !isVariableFieldOrMethod(suggestions[0]))
     
     // If one suggestion and doReplace, perform replace
@@ -102,9 +128,9 @@ public void updatePopupList()
     // If Java Popup is visible, get new suggestions and set
     if(getPopup().isShowing()) {
         JNode node = getSelectedNode(); boolean atEnd = isSelEmpty() && getSelStart()==node.getEnd();
-        JavaDecl sugs[] = atEnd? new JavaCompleter().getSuggestions(node) : null;
+        JavaDecl sugs[] = atEnd? getCompletions(node) : null;
         if(sugs!=null && sugs.length>0) getPopup().setItems(sugs);
-        else getPopup().hide();
+        else if(_completer==null || _completer.isComplete()) getPopup().hide();
     }
     
     // If CodeBuilder Visible, update CodeBlocks
@@ -112,6 +138,62 @@ public void updatePopupList()
         getCodeBuilder().setCodeBlocks();
 }
 
+/**
+ * Returns completions for given node: Narrows previous completions if node just extends previous node name,
+ * otherwise gets cheap sources immediately and finds expensive (class path) sources that don't fit in time budget on
+ * background thread, then adds them in event thread (unless completer was cancelled or replaced).
+ */
+protected JavaDecl[] getCompletions(JNode aNode)
+{
+    // If previous completer can narrow its suggestions for node, just return them
+    JavaDecl sugs[] = _completer!=null? _completer.getNarrowedSuggestions(aNode) : null;
+    if(sugs!=null) return sugs;
+    
+    // Cancel previous completer and create new one
+    if(_completer!=null) _completer.cancel();
+    JavaCompleter completer = _completer = new JavaCompleter(); completer.setNode(aNode);
+    
+    // Add sources while within time budget (locals and members always)
+    long time = System.currentTimeMillis();
+    for(JavaCompleter.Source source : JavaCompleter.Source.values()) {
+        if(source.ordinal()>JavaCompleter.Source.Members.ordinal() &&
+            System.currentTimeMillis() - time > COMPLETION_BUDGET) break;
+        completer.addSuggestions(source);
+    }
+    
+    // If sources remain, find them in background and add in event thread (unless popup has moved on to another
+    // completer) and update popup
+    if(!completer.isComplete()) _completeExecutor.execute(() -> {
+        Map <JavaCompleter.Source,List<JavaDecl>> decls = new EnumMap(JavaCompleter.Source.class);
+        for(JavaCompleter.Source source : JavaCompleter.Source.values()) {
+            if(completer.isCancelled()) return;
+            if(JavaCompleter.isClassPathSource(source)) decls.put(source, completer.getClassPathSuggestions(source));
+        }
+        getEnv().runLater(() -> completionSourcesDone(completer, decls));
+    });
+    
+    // Return current suggestions
+    return completer.getSortedSuggestions();
+}
+
+/**
+ * Called in event thread when deferred completion sources are found: Adds them and updates popup.
+ */
+protected void completionSourcesDone(JavaCompleter aCompleter, Map <JavaCompleter.Source,List<JavaDecl>> theDecls)
+{
+    // If popup has moved on to another completer, just return
+    if(aCompleter!=_completer || aCompleter.isCancelled()) return;
+    
+    // Add sources found in background (and any remaining sources) and update popup
+    for(JavaCompleter.Source source : JavaCompleter.Source.values()) { List <JavaDecl> decls = theDecls.get(source);
+        if(decls!=null) aCompleter.addSuggestions(source, decls);
+        else aCompleter.addSuggestions(source);
+    }
+    JavaDecl sugs[] = aCompleter.getSortedSuggestions();
+    if(sugs.length>0) getPopup().setItems(sugs);
+    else getPopup().hide();
+}
+
 /**
  * Returns the CodeBuilder.
  */
@@ -203,7 +285,12 @@ public List <TextBoxToken> getSelectedTokens()  { return _tokens; }
 /**
  * Sets the list of selected tokens.
  */
-protected void setSelectedTokens(List<TextBoxToken> theTkns) { _tokens.clear(); _tokens.addAll(theTkns); }
+protected void setSelectedTokens(List<TextBoxToken> theTkns)
+{
+    _tokens.clear(); _tokens.addAll(theTkns);
+    _tokens.sort((t1,t2) -> t1.getLine().getIndex()!=t2.getLine().getIndex()?
+        t1.getLine().getIndex() - t2.getLine().getIndex() : t1.getStart() - t2.getStart());
+}
 
 /**
  * Sets the list of selected tokens (should be in background).
@@ -213,15 +300,13 @@ protected void setSelectedTokensForNode(JNode aNode)
     // Create list for tokens
     List <TextBoxToken> tokens = new ArrayList();
     
-    // If node is JType, select all of them
-    JavaDecl decl = aNode!=null? aNode.getDecl() : null;
+    // If node is JType, select all of them (not for large file, where nodes aren't bound to text tokens)
+    JavaDecl decl = aNode!=null && !getTextBox().isLargeFile()? aNode.getDecl() : null;
     if(decl!=null) {
-        List <JNode> others = new ArrayList();
-        JavaDeclOwner.getMatches(aNode.getFile(), decl, others);
-        for(JNode other : others) {
-            TextBoxToken tt = (TextBoxToken)other.getStartToken();
-            tokens.add(tt);
-        }
+        List <JNode> others = aNode.getFile().getMatches(decl);
+        for(JNode other : others)
+            if(other.getStartToken() instanceof TextBoxToken)
+                tokens.add((TextBoxToken)other.getStartToken());
     }
 
     // Set tokens
@@ -275,19 +360,24 @@ protected void paintBack(Painter aPntr)
         aPntr.setColor(Color.LIGHTGRAY); aPntr.setStroke(Stroke.Stroke1); aPntr.drawLine(x,0,x,getHeight());
     }
     
-    // Underline build issues
-    BuildIssue issues[] = getBuildIssues();
-    for(BuildIssue issue : issues) {
-        int istart = issue.getStart(), iend = issue.getEnd(); if(iend<istart || iend>length()) continue;
-        TextBoxLine line = getLineAt(iend); int lstart = line.getStart(); if(istart<lstart) istart = lstart;
-        TextBoxToken token = getTokenAt(istart);
-        if(token!=null) { int tend = token.getLine().getStart()+token.getEnd(); if(iend<tend) iend = tend; }
-        if(istart==iend && iend<line.getEnd()) iend++; // If possible, make sure we underline at least one char
-        int yb = (int)Math.round(line.getBaseline()) + 2;
-        double x1 = line.getXForChar(istart - lstart), x2 = line.getXForChar(iend - lstart);
-        Line inode = new Line(x1, yb, x2, yb);
-        aPntr.setPaint(issue.isError()? Color.RED : new Color(244,198,60));
-        aPntr.setStroke(Stroke.StrokeDash1); aPntr.drawLine(x1, yb, x2, yb); aPntr.setStroke(Stroke.Stroke1);
+    // Get range of visible lines (lines that intersect clip)
+    Rect clip = aPntr.getClipBounds(); if(clip==null) clip = getBoundsLocal();
+    int sline = getLineIndexForY(clip.getMinY()), eline = getLineIndexForY(clip.getMaxY());
+    _paintStart = sline; _paintEnd = eline;
+    
+    // If large file and visible lines aren't lexed, lex them later (lines can't change while painting) and repaint
+    JavaTextBox tbox = getTextBox();
+    if(!tbox.isLexLines(sline, eline))
+        ViewUtils.runLater(() -> { tbox.setLexLines(sline, eline); repaint(); });
+    
+    // Underline build issues on visible lines
+    List <Underline> uls = getUnderlines();
+    for(int i=getFirstUnderline(uls, sline), iMax=uls.size(); i<iMax; i++) { Underline ul = uls.get(i);
+        if(ul._line>eline) break;
+        TextBoxLine line = getLine(ul._line); double y = Math.round(line.getBaseline()) + 2;
+        double x1 = line.getXForChar(ul._start), x2 = line.getXForChar(ul._end);
+        aPntr.setPaint(ul._error? Color.RED : WARNING_COLOR);
+        aPntr.setStroke(Stroke.StrokeDash1); aPntr.drawLine(x1, y, x2, y); aPntr.setStroke(Stroke.Stroke1);
     }
     
     // Add box around balancing bracket
@@ -318,22 +408,100 @@ protected void paintBack(Painter aPntr)
         aPntr.fillRect(line.getX(), line.getY()+.5, line.getWidth(), line.getHeight());
     }
     
-    // Paint boxes around selected tokens
-    Color tcolor = new Color("#FFF3AA");
-    for(TextBoxToken token : getSelectedTokens()) {
+    // Paint boxes around selected tokens on visible lines
+    List <TextBoxToken> tokens = getSelectedTokens();
+    for(int i=getFirstToken(tokens, sline), iMax=tokens.size(); i<iMax; i++) { TextBoxToken token = tokens.get(i);
+        if(token.getLine().getIndex()>eline) break;
         double x = Math.round(token.getX()) - 1, w = Math.ceil(token.getMaxX()) - x + 1;
         double y = Math.round(token.getY()) - 1, h = Math.ceil(token.getMaxY()) - y + 1;
-        aPntr.setColor(tcolor); aPntr.fillRect(x,y,w,h);
+        aPntr.setColor(SELECTED_TOKEN_COLOR); aPntr.fillRect(x,y,w,h);
     }
     
     // If HoverNode, underline
-    if(_hoverNode!=null) {
+    if(_hoverNode!=null && _hoverNode.getStartToken() instanceof TextBoxToken) {
         TextBoxToken ttoken = (TextBoxToken)_hoverNode.getStartToken();
         double x1 = ttoken.getX(), y = ttoken.getBaseline() + 1, x2 = x1 + ttoken.getWidth();
         aPntr.setColor(Color.BLACK); aPntr.drawLine(x1,y,x2,y);
     }
 }
 
+/**
+ * Returns the index of the line at given y (or nearest line).
+ */
+public int getLineIndexForY(double aY)
+{
+    int lo = 0, hi = getLineCount() - 1;
+    while(lo<hi) { int mid = (lo + hi + 1)/2;
+        if(getLine(mid).getY()<=aY) lo = mid;
+        else hi = mid - 1;
+    }
+    return lo;
+}
+
+/**
+ * Returns the build issue underlines, sorted by line (cached until text or issues change - underlines have line and
+ * char offsets, so x/y are found at paint time from current line layout).
+ */
+protected List <Underline> getUnderlines()
+{
+    // If issues and text haven't changed, just return underlines
+    int iversion = getBuildIssuesVersion(), version = getTextBox().getTextVersion();
+    if(_underlines!=null && version==_ulTextVersion && iversion==_ulIssuesVersion) return _underlines;
+    
+    // Create underline for each issue (on line of issue end)
+    BuildIssue issues[] = getBuildIssues(); List <Underline> uls = new ArrayList(issues.length);
+    for(BuildIssue issue : issues) {
+        int istart = issue.getStart(), iend = issue.getEnd(); if(iend<istart || iend>length()) continue;
+        TextBoxLine line = getLineAt(iend); int lstart = line.getStart(); if(istart<lstart) istart = lstart;
+        TextBoxToken token = getTokenAt(istart);
+        if(token!=null) { int tend = token.getLine().getStart()+token.getEnd(); if(iend<tend) iend = tend; }
+        if(istart==iend && iend<line.getEnd()) iend++; // If possible, make sure we underline at least one char
+        Underline ul = new Underline(); ul._line = line.getIndex(); ul._error = issue.isError();
+        ul._start = istart - lstart; ul._end = iend - lstart;
+        uls.add(ul);
+    }
+    
+    // Sort by line, set and return
+    uls.sort((u1,u2) -> u1._line - u2._line);
+    _ulIssuesVersion = iversion; _ulTextVersion = version;
+    return _underlines = uls;
+}
+
+/**
+ * Returns the index of first underline at or after given line.
+ */
+private static int getFirstUnderline(List <Underline> theULs, int aLine)
+{
+    int lo = 0, hi = theULs.size();
+    while(lo<hi) { int mid = (lo + hi)/2;
+        if(theULs.get(mid)._line<aLine) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * Returns the index of first token at or after given line.
+ */
+private static int getFirstToken(List <TextBoxToken> theTokens, int aLine)
+{
+    int lo = 0, hi = theTokens.size();
+    while(lo<hi) { int mid = (lo + hi)/2;
+        if(theTokens.get(mid).getLine().getIndex()<aLine) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * An underline for a build issue.
+ */
+protected static class Underline {
+    
+    // The line index, whether issue is error and the underline char start/end in line
+    int       _line; boolean _error; int _start, _end;
+}
+
 /**
  * Called when a key is typed.
  */
@@ -546,6 +714,9 @@ protected void didAddChars(int aStart, CharSequence theChars)
         if(sline<bline && eline<=bline) { bp.setLine(bline + dline);
             getProjBreakpoints().writeFile(); }
     }
+    
+    // Update RowHeader marker lines
+    if(_rowHeader!=null) _rowHeader.linesChanged(sline, sline, dline);
 }
 
 /**
@@ -577,6 +748,9 @@ protected void didRemoveChars(int aStart, CharSequence theChars)
         else if(sline<bline && eline>bline)
             getProjBreakpoints().remove(bp);
     }
+    
+    // Update RowHeader marker lines
+    if(_rowHeader!=null) _rowHeader.linesChanged(sline, eline, -dline);
 }
 
 /**
@@ -602,6 +776,15 @@ public BuildIssue[] getBuildIssues()
     return proj!=null? proj.getBuildIssues().getIssues(file) : BuildIssues.NO_ISSUES;
 }
 
+/**
+ * Returns the version of project build issues (changes when any issue is added or removed).
+ */
+public int getBuildIssuesVersion()
+{
+    Project proj = getRootProject();
+    return proj!=null? proj.getBuildIssues().getVersion() : 0;
+}
+
 /**
  * Returns the project breakpoints.
  */
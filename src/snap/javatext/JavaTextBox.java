@@ -2,10 +2,13 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.javatext;
+import java.util.*;
+import java.util.concurrent.*;
 import snap.parse.*;
 import snap.gfx.*;
 import snap.javakit.*;
 import snap.javakit.JavaParser.JavaTokenizer;
+import snap.project.Metrics;
 import snap.util.StringUtils;
 import snap.view.ViewUtils;
 
@@ -20,6 +23,45 @@ public class JavaTextBox extends TextBox {
     // The Java file
     JFilePlus             _jfile;
     
+    // The semantic highlighter (colors identifiers), if text is shown in JavaTextArea
+    SemanticHighlighter   _highlighter;
+    
+    // The text version (incremented for every change) and the version of pending background parse (or -1)
+    volatile int          _textVersion;
+    int                   _parseVersion = -1;
+    
+    // The executor for background parses (one thread, so parses are serialized) and its parser
+    static ExecutorService  _parseExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "JavaTextBox Parser"); thread.setDaemon(true); return thread; });
+    static JavaParser     _bgParser;
+    
+    // Whether text is large (only lines in lex window are lexed and JFile is only updated by background parse)
+    boolean               _largeFile;
+    
+    // The range of line indexes that are lexed, if large file (visible lines plus margin)
+    int                   _lexStart, _lexEnd = LexMargin*2;
+    
+    // The number of lines above and below visible lines that are lexed, if large file
+    public static int     LexMargin = 100;
+    
+    // The cache of line lexes, by rich text line (entries are removed when line chars change), least recently used
+    // first (array has lex for each start state: not in comment, in comment)
+    Map <RichTextLine,LineLex[]>  _lexCache = new LinkedHashMap<RichTextLine,LineLex[]>(256, .75f, true) {
+        protected boolean removeEldestEntry(Map.Entry <RichTextLine,LineLex[]> anEntry) {
+            return size()>Math.max(4096, getLineCount()*2); }};
+    
+    // The hand-written lexer for lines (falls back to parser tokenizer for lines it can't match)
+    JavaLexer             _lexer = new JavaLexer();
+    
+    // The parser tokenizer tokens for JavaLexer token codes (found as lines are lexed), to use as line tokens
+    static Token          _lexTokens[] = new Token[JavaLexer.CODE_COUNT];
+    
+    // Whether to lex lines with JavaLexer
+    public static boolean FastLex = true;
+    
+    // The ASCII char advances by font
+    static Map <Font,double[]>  _charAdvances = new HashMap();
+    
     // Images
     public static Image LVarImage = Image.get(JavaTextBox.class, "LocalVariable.png");
     public static Image FieldImage = Image.get(JavaTextBox.class,"PublicField.png");
@@ -39,33 +81,168 @@ public class JavaTextBox extends TextBox {
 public JavaTextBox()  { getRichText().setPlainText(true); }
 
 /**
- * Returns the JFile (parsed representation of Java file).
+ * Returns the JFile (parsed representation of Java file). This is the latest snapshot: It is kept current by
+ * incremental reparse and replaced when a background full parse completes. Only the first call parses in place.
  */
-public JFilePlus getJFile()  { return _jfile!=null? _jfile : (_jfile=createJFile()); }
+public JFilePlus getJFile()
+{
+    // If already set, just return
+    if(_jfile!=null) return _jfile;
+    
+    // If large file, set empty JFile (marked stale) and parse in background
+    if(isLargeFile()) {
+        JFile jfile = new JFile(); jfile.setSourceFile(getSourceFile());
+        _jfile = new JFilePlus(this, jfile); _jfile._stale = true;
+        reloadSymbols(); return _jfile;
+    }
+    
+    // Create JFile and highlight
+    _jfile = createJFile();
+    if(_highlighter!=null) _highlighter.addDirty(_jfile);
+    return _jfile;
+}
 
 /**
  * Creates the JFile.
  */
-protected JFilePlus createJFile()
+protected JFilePlus createJFile()  { return createJFile(_parser.getJavaFile(getString())); }
+
+/**
+ * Creates the JFilePlus for given parsed JFile.
+ */
+protected JFilePlus createJFile(JFile aJFile)
 {
-    JFile jfile = _parser.getJavaFile(getString());
-    jfile.setSourceFile(getSourceFile());
-    return new JFilePlus(this, jfile);
+    aJFile.setSourceFile(getSourceFile());
+    JFilePlus jfilePlus = new JFilePlus(this, aJFile);
+    
+    // If project file, set in project JavaDeclOwner, so decls include members that haven't been compiled yet
+    if(aJFile.getSourceFile()!=null && aJFile.getProject()!=null)
+        aJFile.getProject().getJavaDeclOwner().setSourceFile(jfilePlus);
+    return jfilePlus;
 }
 
 /**
- * Reloads symbols.
+ * Returns the semantic highlighter.
+ */
+public SemanticHighlighter getHighlighter()  { return _highlighter; }
+
+/**
+ * Sets the semantic highlighter.
+ */
+public void setHighlighter(SemanticHighlighter aHL)  { _highlighter = aHL; }
+
+/**
+ * Returns the text version (incremented for every change).
+ */
+public int getTextVersion()  { return _textVersion; }
+
+/**
+ * Reloads symbols: Parses snapshot of text in background and swaps in new JFile if text hasn't changed since.
  */
 public void reloadSymbols()
 {
-    ViewUtils.runLater(() -> {
-        _jfile = null; getJFile(); });
+    // If parse of current version is already pending, just return
+    int version = _textVersion; if(version==_parseVersion) return;
+    String text = getString(); _parseVersion = version;
+    
+    // Parse text in background (skip if text changed while waiting) and finish in event thread
+    _parseExecutor.execute(() -> {
+        JFile jfile = version==_textVersion? getBackgroundParser().getJavaFile(text) : null;
+        ViewUtils.runLater(() -> backgroundParseDone(jfile, version));
+    });
 }
 
 /**
- * Override to clear JFile.
+ * Called in event thread when background parse is done: Sets new JFile, if text hasn't changed since snapshot.
  */
-public void setString(String aString)  { super.setString(aString); _jfile = null; }
+protected void backgroundParseDone(JFile aJFile, int aVersion)
+{
+    // Clear pending version
+    if(aVersion==_parseVersion) _parseVersion = -1;
+    
+    // If text changed since snapshot, drop parse (and request new one if JFile still needs full parse)
+    if(aJFile==null || aVersion!=_textVersion) {
+        if(_jfile!=null && _jfile.isFullParseNeeded()) reloadSymbols();
+        return;
+    }
+    
+    // Create JFilePlus, bind nodes to text line tokens (so they shift with lines) and set (large file lines aren't
+    // all lexed, so large file JFile is just replaced by next background parse)
+    JFilePlus jfile = createJFile(aJFile);
+    if(!isLargeFile()) jfile.bindTextTokens();
+    _jfile = jfile;
+    
+    // Highlight new file (not for large file, since nodes aren't bound to text tokens)
+    if(_highlighter!=null && !isLargeFile()) _highlighter.addDirty(jfile);
+}
+
+/**
+ * Returns the parser for background parses (with its own rules, so it doesn't share state with event thread - the
+ * rules are the spare graph loaded by JavaParser.preloadRule(), so first background parse doesn't load grammar).
+ */
+private static JavaParser getBackgroundParser()
+{
+    return _bgParser!=null? _bgParser : (_bgParser=new JavaParser.UnsharedParser());
+}
+
+/**
+ * Override to clear JFile (and set whether text is large file).
+ */
+public void setString(String aString)
+{
+    _largeFile = JavaData.isLargeText(aString); _lexStart = 0; _lexEnd = LexMargin*2; _lexCache.clear();
+    super.setString(aString); _jfile = null; _textVersion++;
+}
+
+/**
+ * Returns whether text is large file (set when text is set): Only lines near visible lines are lexed and JFile is
+ * only updated by background parse.
+ */
+public boolean isLargeFile()  { return _largeFile; }
+
+/**
+ * Returns whether given range of lines is lexed (always true if not large file).
+ */
+public boolean isLexLines(int aStart, int anEnd)  { return !_largeFile || aStart>=_lexStart && anEnd<=_lexEnd; }
+
+/**
+ * Sets the range of visible lines, if large file: Moves lex window to include lines plus margin, lexes new lines in
+ * window and resets lines that left window to plain lines (so memory doesn't grow as file is scrolled).
+ */
+public void setLexLines(int aStart, int anEnd)
+{
+    // If not large file or lines already in window, just return
+    if(isLexLines(aStart, anEnd)) return;
+    
+    // Set new window and update lines in old and new window
+    int oldStart = _lexStart, oldEnd = _lexEnd, lastLine = getLineCount() - 1;
+    _lexStart = Math.max(aStart - LexMargin, 0); _lexEnd = anEnd + LexMargin;
+    updateLinesLexed(Math.min(oldStart, lastLine), Math.min(oldEnd, lastLine));
+    updateLinesLexed(Math.min(_lexStart, lastLine), Math.min(_lexEnd, lastLine));
+}
+
+/**
+ * Recreates the lines in given range whose lexed state doesn't match lex window.
+ */
+private void updateLinesLexed(int aStart, int anEnd)
+{
+    // Get first and last lines in range whose lexed state is wrong (just return if none)
+    int start = aStart, end = anEnd;
+    while(start<=end && getLine(start).isLexed()==isLexLine(start)) start++;
+    while(end>=start && getLine(end).isLexed()==isLexLine(end)) end--;
+    if(start>end) return;
+    
+    // Update lines (and successive lines, if end state of last line changed)
+    JavaTextLine eline = getLine(end); boolean utermOld = eline.isUnterminatedComment(); int eend = eline.getEnd();
+    super.updateLines(getLine(start).getStart(), eend, eend);
+    if(getLine(end).isUnterminatedComment()!=utermOld)
+        updateLinesForCommentState(end);
+}
+
+/**
+ * Returns whether line at given index should be lexed (is in lex window or not large file).
+ */
+private boolean isLexLine(int anIndex)  { return !_largeFile || anIndex>=_lexStart && anIndex<=_lexEnd; }
 
 /**
  * Override to return JavaTextLine.
@@ -78,15 +255,16 @@ public JavaTextLine getLine(int anIndex)  { return (JavaTextLine)super.getLine(a
 public JavaTextLine getLineAt(int anIndex)  { return (JavaTextLine)super.getLineAt(anIndex); }
 
 /**
- * Override to do full parse when newline typed.
+ * Override to do full parse when newline typed, if JFile couldn't be reparsed exactly for last changes.
  */
 public void replaceChars(CharSequence theChars, TextStyle theStyle, int aStart, int anEnd)
 {
     // Do normal version
     super.replaceChars(theChars, theStyle, aStart, anEnd);
     
-    // If newline, do full parse
-    if(theChars!=null && StringUtils.indexOfNewline(theChars, 0)>=0)
+    // If newline (or large file) and JFile needs full parse, do full parse
+    boolean newline = theChars!=null && StringUtils.indexOfNewline(theChars, 0)>=0;
+    if((newline || isLargeFile()) && _jfile!=null && _jfile.isFullParseNeeded())
         reloadSymbols();
 }
 
@@ -100,18 +278,75 @@ public void updateLines(int aStart, int endOld, int endNew)
     
     // Get whether last line in update range has unterminated comment
     boolean utermComment = getLineCount()>0 && getLineAt(endOld).isUnterminatedComment();
+    
+    // Get JFile nodes that can be reparsed for change (before lines and their tokens are updated)
+    JFilePlus jfile = _jfile; _textVersion++; if(jfile!=null) jfile.charsChanging(aStart, endOld);
+    
+    // Remove cached lexes of changed rich text lines
+    if(getLineCount()>0) for(int i=getLineAt(aStart).getIndex(), iMax=getLineAt(endOld).getIndex(); i<=iMax; i++)
+        _lexCache.remove(getLine(i)._textLine);
 
     // Do normal version (just return if setting everything)
     super.updateLines(aStart, endOld, endNew); if(isAdd && length==0) return;
     
-    // If unterminated comment state changed, update successive lines until it stops
+    // If unterminated comment state changed, update successive lines until state converges (and do full parse)
     if(utermComment!=getLineAt(endNew).isUnterminatedComment()) {
-        int start = getLineAt(endNew).getEnd(), end = getRichText().indexOf("*/", start); if(end<0) end = length();
-        super.updateLines(start, end, end);
+        updateLinesForCommentState(getLineAt(endNew).getIndex());
+        if(jfile!=null) { jfile._stale = true; reloadSymbols(); }
     }
     
     // Update JFile
-    getJFile().updateChars(aStart, endOld, endNew);
+    if(jfile!=null) { long time = Metrics.start();
+        jfile.updateChars(aStart, endOld, endNew); Metrics.stop("parse.incremental", time); }
+}
+
+/**
+ * Updates the lines after given line, whose start state (unterminated comment) changed, until end state is the same
+ * as before. Line end states are found with a quick scan first, so the lines are updated in one batch.
+ */
+protected void updateLinesForCommentState(int aLineIndex)
+{
+    for(int lindex=aLineIndex; lindex+1<getLineCount(); ) {
+        
+        // Scan successive lines to first one whose end state (from new start state) is same as current end state
+        boolean uterm = getLine(lindex).isUnterminatedComment(); int eindex = lindex + 1;
+        for(; eindex<getLineCount(); eindex++) { JavaTextLine line = getLine(eindex);
+            uterm = isUnterminatedComment(getRichText(), line.getStart(), line.getEnd(), uterm);
+            if(uterm==line.isUnterminatedComment()) break;
+        }
+        if(eindex>=getLineCount()) eindex = getLineCount() - 1;
+        
+        // Update lines (just return if last updated line end state is same as before)
+        JavaTextLine eline = getLine(eindex); boolean utermOld = eline.isUnterminatedComment();
+        int start = getLine(lindex+1).getStart(), end = eline.getEnd();
+        super.updateLines(start, end, end);
+        if(getLine(eindex).isUnterminatedComment()==utermOld) return;
+        lindex = eindex;
+    }
+}
+
+/**
+ * Returns whether given chars end in unterminated comment, for given start state (quick scan of comments, strings
+ * and char literals).
+ */
+static boolean isUnterminatedComment(CharSequence theChars, int aStart, int anEnd, boolean inComment)
+{
+    for(int i=aStart; i<anEnd; i++) { char c = theChars.charAt(i);
+        
+        // Handle in comment: Look for end
+        if(inComment) { if(c=='*' && i+1<anEnd && theChars.charAt(i+1)=='/') { inComment = false; i++; } }
+        
+        // Handle comment start: Single line comment ends line
+        else if(c=='/' && i+1<anEnd && theChars.charAt(i+1)=='/') return false;
+        else if(c=='/' && i+1<anEnd && theChars.charAt(i+1)=='*') { inComment = true; i++; }
+        
+        // Handle string or char literal: skip to close quote (or line end)
+        else if(c=='"' || c=='\'') {
+            for(i++; i<anEnd; i++) { char c2 = theChars.charAt(i);
+                if(c2=='\\') i++; else if(c2==c || c2=='\n') break; }
+        }
+    }
+    return inComment;
 }
 
 /**
@@ -120,53 +355,161 @@ public void updateLines(int aStart, int endOld, int endNew)
 protected TextBoxLine createLine(RichTextLine aTextLine, int aStart, int aLineIndex)
 {
     // Get iteration variables
-    TextStyle style = aTextLine.getRun(0).getStyle(); Exception exception = null;
-    int start = 0; double x = 0;
+    TextStyle style = aTextLine.getRun(0).getStyle();
+    double advances[] = getCharAdvances(style); int start = 0; double x = 0;
 
     // Create new line (just return if last line in text)
     JavaTextLine line = new JavaTextLine(this, style, aTextLine, aStart);
     if(aStart>0) {
         line.resetSizes(); return line; }
     
-    // See if this line is InMultilineComment (do this first, since it may require use of Text.Tokenizer)
-    line._utermCmnt = aLineIndex>0 && getLine(aLineIndex-1).isUnterminatedComment();
+    // Get start state (whether previous line has unterminated comment)
+    boolean utermCmnt = aLineIndex>0 && getLine(aLineIndex-1).isUnterminatedComment();
+    
+    // If line isn't in lex window, create plain line
+    if(!isLexLine(aLineIndex))
+        return createPlainLine(line, aTextLine, style, advances, utermCmnt);
+    
+    // Get line lex for line text and start state
+    LineLex lex = getLineLex(aTextLine, utermCmnt);
+    
+    // If line lex token positions aren't for style, get token x and width for style (reused when line is recreated)
+    if(lex._style!=style) { int count = lex._tokens.length; double xs[] = new double[count], ws[] = new double[count];
+        for(int i=0; i<count; i++) { int tokenStart = lex._starts[i], tokenEnd = lex._ends[i];
+            
+            // Get token x
+            while(start<tokenStart) { char c = aTextLine.charAt(start);
+                if(c=='\t') x += getCharAdvance(style, advances, ' ')*4;
+                else x += getCharAdvance(style, advances, c); start++; }
+            
+            // Get token width
+            double w = 0;
+            while(start<tokenEnd) { char c = aTextLine.charAt(start);
+                w += getCharAdvance(style, advances, c); start++; }
+            xs[i] = x; ws[i] = w; x += w;
+        }
+        lex._xs = xs; lex._widths = ws; lex._style = style;
+    }
+    
+    // Create TextTokens for line lex tokens
+    for(int i=0, iMax=lex._tokens.length; i<iMax; i++) { Token token = lex._tokens[i];
+        
+        // Create TextToken (token is null for rest of line, if tokenizer failed)
+        JavaTextToken textToken = new JavaTextToken(line, style, lex._starts[i], lex._ends[i]);
+        if(token!=null) { textToken._tokenizer = _parser.getTokenizer(); textToken._token = token; }
+        textToken.setXLocal(lex._xs[i]); textToken.setWidth(lex._widths[i]);
+        Color color = token!=null? getColor(token) : null; if(color!=null) textToken.setColor(color);
+        line.addToken(textToken);
+    }
+    
+    // Set whether line ends in unterminated comment and return line
+    line._utermCmnt = lex._utermCmnt;
+    line.resetSizes();
+    return line;
+}
+
+/**
+ * Configures given line as plain line (one uncolored token for line text, with end state from quick scan), for large
+ * file line outside lex window.
+ */
+private JavaTextLine createPlainLine(JavaTextLine aLine, RichTextLine aTextLine, TextStyle aStyle, double theAdvs[],
+    boolean utermCmnt)
+{
+    // Get line text end (without newline)
+    int end = aTextLine.length(); while(end>0 && (aTextLine.charAt(end-1)=='\n' || aTextLine.charAt(end-1)=='\r')) end--;
+    
+    // Add token for text
+    if(end>0) { double w = 0;
+        for(int i=0; i<end; i++) { char c = aTextLine.charAt(i);
+            w += c=='\t'? getCharAdvance(aStyle, theAdvs, ' ')*4 : getCharAdvance(aStyle, theAdvs, c); }
+        JavaTextToken textToken = new JavaTextToken(aLine, aStyle, 0, end); textToken.setWidth(w);
+        aLine.addToken(textToken);
+    }
+    
+    // Set end state and return line
+    aLine._utermCmnt = isUnterminatedComment(aTextLine, 0, end, utermCmnt); aLine._lexed = false;
+    aLine.resetSizes();
+    return aLine;
+}
+
+/**
+ * Returns the lexed tokens for given line text and start state (cached by rich text line and state, since they are the
+ * same when lines are recreated for comment state changes or lex window changes, until line chars change).
+ */
+protected LineLex getLineLex(RichTextLine aTextLine, boolean utermCmnt)
+{
+    // Get cached lexes for line and return lex for start state, if found
+    LineLex lexes[] = _lexCache.get(aTextLine); int state = utermCmnt? 1 : 0;
+    LineLex lex = lexes!=null? lexes[state] : null; if(lex!=null) return lex;
+    
+    // Get lex with JavaLexer (or parser tokenizer, if JavaLexer can't match line)
+    lex = FastLex? getLineLexFast(aTextLine, utermCmnt) : null;
+    if(lex==null) lex = getLineLexTokenizer(aTextLine, utermCmnt);
+    
+    // Add to cache (least recently used lines are removed past twice line count) and return
+    if(lexes==null) _lexCache.put(aTextLine, lexes = new LineLex[2]);
+    lexes[state] = lex;
+    return lex;
+}
+
+/**
+ * Returns the lexed tokens for given line text and start state using JavaLexer, with shared parser tokenizer token
+ * for each token code (line tokens only use token name and pattern). Returns null if JavaLexer can't classify a token
+ * or a token code has no tokenizer token yet (then tokenizer lex of line is used to get tokenizer tokens for codes).
+ */
+protected LineLex getLineLexFast(RichTextLine aTextLine, boolean utermCmnt)
+{
+    // Lex line with JavaLexer
+    JavaLexer lexer = _lexer; lexer.setInput(aTextLine, utermCmnt);
+    int codes[] = new int[16], starts[] = new int[16], ends[] = new int[16], count = 0; boolean found = true;
+    for(int code=lexer.next(); code!=JavaLexer.END; code=lexer.next()) {
+        if(code==JavaLexer.ERROR) return null;
+        if(count==codes.length) {
+            codes = Arrays.copyOf(codes, count*2); starts = Arrays.copyOf(starts, count*2);
+            ends = Arrays.copyOf(ends, count*2); }
+        codes[count] = code; starts[count] = lexer.getTokenStart(); ends[count++] = lexer.getTokenEnd();
+        if(_lexTokens[code]==null) found = false;
+    }
+    
+    // If token code has no tokenizer token, get tokenizer lex and use its tokens for codes if ranges match
+    if(!found) {
+        LineLex lex = getLineLexTokenizer(aTextLine, utermCmnt); if(lex._tokens.length!=count) return lex;
+        for(int i=0; i<count; i++) if(lex._tokens[i]==null || lex._starts[i]!=starts[i] || lex._ends[i]!=ends[i])
+            return lex;
+        for(int i=0; i<count; i++) if(_lexTokens[codes[i]]==null) _lexTokens[codes[i]] = lex._tokens[i];
+        return lex;
+    }
     
+    // Create lex with tokens for codes
+    LineLex lex = new LineLex(); lex._tokens = new Token[count];
+    lex._starts = Arrays.copyOf(starts, count); lex._ends = Arrays.copyOf(ends, count);
+    for(int i=0; i<count; i++) lex._tokens[i] = _lexTokens[codes[i]];
+    lex._utermCmnt = lexer.isInComment();
+    return lex;
+}
+
+/**
+ * Returns the lexed tokens for given line text and start state using parser tokenizer.
+ */
+protected LineLex getLineLexTokenizer(RichTextLine aTextLine, boolean utermCmnt)
+{
     // Get tokenizer
-    JavaTokenizer tokenizer = _parser.getRealTokenizer();
+    JavaTokenizer tokenizer = _parser.getRealTokenizer(); Exception exception = null;
     tokenizer.setInput(aTextLine);
+    List <Token> tokens = new ArrayList();
     
     // Get first line token: Handle if already in Multi-line
-    Token token = line.isUnterminatedComment()? tokenizer.getMultiLineCommentTokenMore(null) :
-        tokenizer.getNextSpecialToken();
+    Token token = utermCmnt? tokenizer.getMultiLineCommentTokenMore(null) : tokenizer.getNextSpecialToken();
     if(token==null)
         try { token = tokenizer.getNextToken(); }
         catch(Exception e) { exception = e; }
     
-    // Get line parse tokens and create TextTokens
+    // Get line parse tokens
     while(token!=null) {
-        
-        // Get token start/end
-        int tokenStart = token.getInputStart(), tokenEnd = token.getInputEnd();
-        
-        // Get token x
-        while(start<tokenStart) { char c = aTextLine.charAt(start); //if(start>run.getEnd()) run = run.getNext();
-            if(c=='\t') x += style.getCharAdvance(' ')*4;
-            else x += style.getCharAdvance(c); start++; }
-        
-        // Get token width
-        double w = 0;
-        while(start<tokenEnd) { char c = aTextLine.charAt(start); //if(start>run.getEnd()) run = run.getNext();
-            w += style.getCharAdvance(c); start++; }
-        
-        // Create TextToken
-        JavaTextToken textToken = new JavaTextToken(line, style, tokenStart, tokenEnd);
-        textToken._tokenizer = _parser.getTokenizer(); textToken._token = token;
-        textToken.setXLocal(x); textToken.setWidth(w); x += w; w = 0;
-        Color color = getColor(token); if(color!=null) textToken.setColor(color);
-        line.addToken(textToken);
+        tokens.add(token);
         
         // Update inMultilineComment for current token
-        line._utermCmnt = token.getName()=="MultiLineComment" && !token.getString().endsWith("*/");
+        utermCmnt = token.getName()=="MultiLineComment" && !token.getString().endsWith("*/");
         
         // Get next token
         token = tokenizer.getNextSpecialToken();
@@ -175,23 +518,45 @@ protected TextBoxLine createLine(RichTextLine aTextLine, int aStart, int aLineIn
             catch(Exception e) { exception = e; break; }
     }
     
-    // If exception was hit, create token for rest of line
+    // Create lex with token starts/ends (if exception was hit, add null token for rest of line)
+    int count = tokens.size() + (exception!=null? 1 : 0);
+    LineLex lex = new LineLex(); lex._tokens = new Token[count]; lex._starts = new int[count]; lex._ends = new int[count];
+    for(int i=0, iMax=tokens.size(); i<iMax; i++) { Token tok = tokens.get(i);
+        lex._tokens[i] = tok; lex._starts[i] = tok.getInputStart(); lex._ends[i] = tok.getInputEnd(); }
     if(exception!=null) {
-        
-        // Get token width
-        double w = 0; int tokenStart = start, tokenEnd = aTextLine.length();
-        while(start<aTextLine.length()) { char c = aTextLine.charAt(start); //if(start>run.getEnd()) run = run.getNext();
-            w += style.getCharAdvance(c); start++; }
-        
-        // Create TextToken
-        JavaTextToken textToken = new JavaTextToken(line, style, tokenStart, tokenEnd);
-        textToken.setXLocal(x); textToken.setWidth(w); x += w; w = 0;
-        line.addToken(textToken);
-    }
-    
-    // Return line
-    line.resetSizes();
-    return line;
+        lex._starts[count-1] = count>1? lex._ends[count-2] : 0; lex._ends[count-1] = aTextLine.length(); }
+    lex._utermCmnt = utermCmnt;
+    return lex;
+}
+
+/**
+ * Returns the ASCII char advances for given style font (cached per font).
+ */
+private static double[] getCharAdvances(TextStyle aStyle)
+{
+    Font font = aStyle.getFont();
+    double advances[] = _charAdvances.get(font); if(advances!=null) return advances;
+    advances = new double[128];
+    for(int i=0; i<128; i++) advances[i] = aStyle.getCharAdvance((char)i);
+    _charAdvances.put(font, advances);
+    return advances;
+}
+
+/**
+ * Returns the advance for given char, using ASCII advances table when possible.
+ */
+private static double getCharAdvance(TextStyle aStyle, double theAdvances[], char aChar)
+{
+    return aChar<128? theAdvances[aChar] : aStyle.getCharAdvance(aChar);
+}
+
+/**
+ * Returns the color for identifiers (the default text color).
+ */
+public Color getIdentifierColor()
+{
+    Color color = getRichText().getDefaultStyle().getColor();
+    return color!=null? color : Color.BLACK;
 }
 
 /**
@@ -213,6 +578,21 @@ private Color getColor(Token aToken)
     return null;
 }
 
+/**
+ * The lexed tokens of a line (for line text and start state).
+ */
+protected static class LineLex {
+    
+    // The parse tokens (last is null if tokenizer failed on rest of line) and their starts/ends
+    Token      _tokens[]; int _starts[], _ends[];
+    
+    // Whether line ends in unterminated comment
+    boolean    _utermCmnt;
+    
+    // The token x and widths, and the style they are for
+    double     _xs[], _widths[]; TextStyle _style;
+}
+
 /**
  * A TextLine subclass specifically for JavaText.
  */
@@ -220,7 +600,10 @@ public class JavaTextLine extends TextBoxLine {
     
     /** Creates a new JavaTextLine. */
     public JavaTextLine(TextBox aBox, TextStyle aStartStyle, RichTextLine aTextLine, int theRTLStart)
-    { super(aBox, aStartStyle, aTextLine, theRTLStart); }
+    { super(aBox, aStartStyle, aTextLine, theRTLStart); _textLine = aTextLine; }
+    
+    // The rich text line (key for lex cache)
+    RichTextLine  _textLine;
 
     /** Override to return JavaTextToken. */
     public JavaTextToken getToken(int anIndex)  { return (JavaTextToken)super.getToken(anIndex); }
@@ -228,6 +611,9 @@ public class JavaTextLine extends TextBoxLine {
     /** Returns whether line is an unterminated comment. */
     public boolean isUnterminatedComment()  { return _utermCmnt; }  boolean _utermCmnt;
     
+    /** Returns whether line is lexed (false for large file line outside lex window, which has one plain token). */
+    public boolean isLexed()  { return _lexed; }  boolean _lexed = true;
+    
     /** Returns the x for tab at given x. */
     protected double getXForTabAtIndexAndX(int aCharInd, double aX)
     {
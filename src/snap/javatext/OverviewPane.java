@@ -15,9 +15,17 @@ public class OverviewPane extends View {
     // The JavaTextArea
     JavaTextArea        _textArea;
     
-    // The list of markers
+    // The list of markers (sorted by y)
     List <Marker>       _markers;
     
+    // The markers for build issues and selected tokens (each recreated only when its source changes)
+    List <Marker>       _issueMarkers, _tokenMarkers;
+    
+    // The build issues, selected tokens and text version of current markers
+    BuildIssue          _mkIssues[];
+    List <TextBoxToken> _mkTokens;
+    int                 _mkVersion = -1;
+    
     // The last mouse point
     double              _mx, _my;
     
@@ -53,28 +61,61 @@ public void setTextSel(int aStart, int anEnd)  { _textArea._textPane.setTextSel(
 /**
  * Returns the list of markers.
  */
-public List <Marker> getMarkers() { return _markers!=null? _markers : (_markers=createMarkers()); }
+public List <Marker> getMarkers()  { if(_markers==null) updateMarkers(); return _markers; }
 
 /**
- * Returns the list of markers.
+ * Updates the list of markers: Recreates markers for sources that changed and sorts all by y.
  */
-protected List <Marker> createMarkers()
+protected void updateMarkers()
 {
-    // Create list
-    List <Marker> markers = new ArrayList();
+    // Get whether text changed (any text change can move issues and tokens)
+    int version = _textArea.getTextBox().getTextVersion();
+    boolean textChanged = version!=_mkVersion; _mkVersion = version;
     
-    // Add markers for TextArea.JavaSource.BuildIssues
+    // If build issues changed, recreate markers for TextArea.JavaSource.BuildIssues
     BuildIssue buildIssues[] = _textArea.getBuildIssues();
-    for(BuildIssue issue : buildIssues)
-        markers.add(new BuildIssueMarker(issue));
+    if(_issueMarkers==null || textChanged || !Arrays.equals(buildIssues, _mkIssues)) {
+        _issueMarkers = new ArrayList(); _mkIssues = buildIssues;
+        for(BuildIssue issue : buildIssues)
+            _issueMarkers.add(new BuildIssueMarker(issue));
+    }
     
-    // Add markers for TextArea.SelectedTokens
+    // If selected tokens changed, recreate markers for TextArea.SelectedTokens
     List <TextBoxToken> tokens = _textArea.getSelectedTokens();
-    for(TextBoxToken token : tokens)
-        markers.add(new TokenMarker(token));
+    if(_tokenMarkers==null || textChanged || !tokens.equals(_mkTokens)) {
+        _tokenMarkers = new ArrayList(); _mkTokens = new ArrayList(tokens);
+        for(TextBoxToken token : tokens)
+            _tokenMarkers.add(new TokenMarker(token));
+    }
+    
+    // Create markers list sorted by y (stable, so token markers paint over issue markers on same line)
+    List <Marker> markers = new ArrayList(_issueMarkers.size() + _tokenMarkers.size());
+    markers.addAll(_issueMarkers); markers.addAll(_tokenMarkers);
+    markers.sort((m1,m2) -> Double.compare(m1._y, m2._y));
+    _markers = markers;
+}
+
+/**
+ * Returns the top marker at given point (binary search for markers at y, since markers are sorted by y).
+ */
+public Marker getMarkerAt(double aX, double aY)
+{
+    // Get scale from text y to pane y
+    List <Marker> markers = getMarkers(); double th = _textArea.getHeight(), h = Math.min(getHeight(), th);
+    double scale = th>0? h/th : 1;
+    
+    // Find first marker whose bottom is at or below y
+    int lo = 0, hi = markers.size();
+    while(lo<hi) { int mid = (lo + hi)/2; Marker m = markers.get(mid);
+        if(m._y*scale + m.getHeight()<aY) lo = mid + 1;
+        else hi = mid;
+    }
     
-    // Return markers
-    return markers;
+    // Check markers until marker top is below y (return last that contains point, since it paints on top)
+    Marker marker = null;
+    for(int i=lo, iMax=markers.size(); i<iMax; i++) { Marker m = markers.get(i); if(m._y*scale>aY) break;
+        m.setY(m._y*scale); if(m.contains(aX, aY)) marker = m; }
+    return marker;
 }
 
 /**
@@ -89,9 +130,9 @@ protected void processEvent(ViewEvent anEvent)
 {
     // Handle MosueClicked
     if(anEvent.isMouseClick()) {
-        for(Marker m : getMarkers()) {
-            if(m.contains(anEvent.getX(), anEvent.getY())) {
-                setTextSel(m.getSelStart(), m.getSelEnd()); return; }}
+        Marker m = getMarkerAt(anEvent.getX(), anEvent.getY());
+        if(m!=null) {
+            setTextSel(m.getSelStart(), m.getSelEnd()); return; }
         TextBoxLine line = _textArea.getTextBox().getLineForY(anEvent.getY()/getHeight()*_textArea.getHeight());
         setTextSel(line.getStart(), line.getEnd());
     }
@@ -99,10 +140,7 @@ protected void processEvent(ViewEvent anEvent)
     // Handle MouseMoved
     if(anEvent.isMouseMove()) {
         _mx = anEvent.getX(); _my = anEvent.getY();
-        for(Marker m : getMarkers())
-            if(m.contains(_mx, _my)) {
-                setCursor(Cursor.HAND); return; }
-        setCursor(Cursor.DEFAULT);
+        setCursor(getMarkerAt(_mx, _my)!=null? Cursor.HAND : Cursor.DEFAULT);
     }
 }
 
@@ -125,9 +163,9 @@ protected void paintFront(Painter aPntr)
  */
 public String getToolTip(ViewEvent anEvent)
 {
-    for(Marker marker : getMarkers())
-        if(marker.contains(_mx, _my))
-            return marker.getToolTip();
+    Marker marker = getMarkerAt(_mx, _my);
+    if(marker!=null)
+        return marker.getToolTip();
     TextBoxLine line = _textArea.getTextBox().getLineForY(_my/getHeight()*_textArea.getHeight());
     return "Line: " + (line.getIndex()+1);
 }
@@ -16,8 +16,37 @@ public class RowHeader extends View {
     // The JavaTextArea
     JavaTextArea             _textArea;
 
-    // The list of markers
-    List <Marker>            _markers;
+    // The markers sorted by line index (markers on a line are in paint order: super member, build issue, breakpoint)
+    List <Marker>            _markers = new ArrayList();
+    
+    // The line edits not yet applied to marker lines (start line, end line, line delta), applied lazily in one pass
+    List <int[]>             _lineEdits = new ArrayList();
+    
+    // The markers for build issues, breakpoints and super members, by target (issues and breakpoints by identity,
+    // since they change position in place)
+    Map <BuildIssue,Marker>  _issueMarkers = new IdentityHashMap();
+    Map <Breakpoint,Marker>  _bpMarkers = new IdentityHashMap();
+    Map <JMemberDecl,Marker> _superMarkers = new HashMap();
+    
+    // The markers on changed lines (out of line index until line is updated from target)
+    List <Marker>            _dirtyMarkers = new ArrayList();
+    
+    // Whether markers need to be checked against build issues, breakpoints and members
+    boolean                  _needsUpdate = true;
+    
+    // The build issues, breakpoints, JFile, decls version and imports of current markers
+    BuildIssue               _mkIssues[];
+    List <Breakpoint>        _mkBreakpoints;
+    JFile                    _mkJFile;
+    int                      _mkDeclsVersion;
+    List <JImportDecl>       _mkImports;
+    
+    // The super decls of member decls (value is null if member has no super decl)
+    Map <JMemberDecl,JavaDecl>  _superDecls = new WeakHashMap();
+    
+    // The member decls with super decls to resolve and whether they are being resolved (in event thread slices)
+    List <JMemberDecl>       _unresolved = new ArrayList();
+    boolean                  _resolving;
     
     // The last mouse moved position
     double                   _mx, _my;
@@ -25,6 +54,9 @@ public class RowHeader extends View {
     // Width of this component
     public static final int  WIDTH = 12;
     
+    // The max time in millis for super decl resolve work per slice
+    public static int        BatchTime = 15;
+    
     // The marker images for Error, Warning, Breakpoint, Implements, Override
     static Image  _errorImage = Image.get(JavaTextBox.class, "ErrorMarker.png");
     static Image  _warningImage = Image.get(JavaTextBox.class, "WarningMarker.png");
@@ -59,57 +91,239 @@ public void setTextArea(JavaTextArea aJTA)  { _textArea = aJTA; }
 public void setTextSelection(int aStart, int anEnd)  { _textArea.setSel(aStart, anEnd); }
 
 /**
- * Returns the list of markers.
+ * Returns the list of markers (in paint order).
  */
-public List <Marker> getMarkers() { return _markers!=null? _markers : (_markers=createMarkers()); }
+public List <Marker> getMarkers()
+{
+    updateMarkers();
+    return new ArrayList(_markers);
+}
 
 /**
- * Returns the list of markers.
+ * Updates markers, if needed: Syncs markers with changed build issues, breakpoints and members and updates lines of
+ * markers on changed lines.
  */
-protected List <Marker> createMarkers()
+protected void updateMarkers()
 {
-    // Create list
-    List <Marker> markers = new ArrayList();
+    // If no change since last update, just return
+    if(!_needsUpdate) return; _needsUpdate = false;
     
-    // Add markers for member Overrides/Implements
-    JClassDecl cd = _textArea.getJFile().getClassDecl();
-    if(cd!=null)
-        getSuperMemberMarkers(cd, markers);
-
-    // Add markers for BuildIssues
+    // Apply line edits to marker lines (markers on changed lines become dirty)
+    applyLineEdits();
+    
+    // If members changed, sync markers for member Overrides/Implements
+    JFile jfile = _textArea.getJFile(); int dversion = jfile instanceof JFilePlus? ((JFilePlus)jfile).getDeclsVersion() : 0;
+    if(jfile!=_mkJFile || dversion!=_mkDeclsVersion) {
+        syncSuperMemberMarkers(jfile); _mkJFile = jfile; _mkDeclsVersion = dversion; }
+    
+    // If build issues changed, remove markers for old issues and add markers for new ones
     BuildIssue buildIssues[] = _textArea.getBuildIssues();
-    for(BuildIssue issue : buildIssues)
-        if(issue.getEnd()<_textArea.length())
-            markers.add(new BuildIssueMarker(issue));
-        
-    // Add markers for breakpoints
-    for(Breakpoint bp : _textArea.getBreakpoints()) {
-        if(bp.getLine()<_textArea.getLineCount())
-            markers.add(new BreakpointMarker(bp));
-        else _textArea.removeBreakpoint(bp);
+    if(_mkIssues==null || !Arrays.equals(buildIssues, _mkIssues)) { _mkIssues = buildIssues;
+        Set <BuildIssue> issues = Collections.newSetFromMap(new IdentityHashMap()); issues.addAll(Arrays.asList(buildIssues));
+        for(BuildIssue issue : _issueMarkers.keySet().toArray(new BuildIssue[0]))
+            if(!issues.contains(issue)) removeMarker(_issueMarkers.remove(issue));
+        for(BuildIssue issue : buildIssues)
+            if(!_issueMarkers.containsKey(issue) && issue.getEnd()<_textArea.length())
+                addMarker(_issueMarkers, issue, new BuildIssueMarker(issue));
+    }
+    
+    // If breakpoints changed, remove markers for old breakpoints, add markers for new ones (and remove breakpoints
+    // past last line)
+    List <Breakpoint> bps = _textArea.getBreakpoints();
+    if(_mkBreakpoints==null || !bps.equals(_mkBreakpoints)) {
+        Set <Breakpoint> bpSet = Collections.newSetFromMap(new IdentityHashMap()); bpSet.addAll(bps);
+        for(Breakpoint bp : _bpMarkers.keySet().toArray(new Breakpoint[0]))
+            if(!bpSet.contains(bp)) removeMarker(_bpMarkers.remove(bp));
+        for(Breakpoint bp : bps.toArray(new Breakpoint[0])) {
+            if(bp.getLine()>=_textArea.getLineCount()) _textArea.removeBreakpoint(bp);
+            else if(!_bpMarkers.containsKey(bp)) addMarker(_bpMarkers, bp, new BreakpointMarker(bp));
+        }
+        _mkBreakpoints = new ArrayList(_textArea.getBreakpoints());
     }
     
-    // Return markers
-    return markers;
+    // Update lines of markers on changed lines (markers whose target is gone are removed)
+    for(Marker marker : _dirtyMarkers) { int line = marker.getTargetLine();
+        if(line>=0) { marker._line = line; addLineMarker(marker); }
+        else if(marker instanceof BuildIssueMarker) _issueMarkers.remove(marker._target);
+        else if(marker instanceof BreakpointMarker) _bpMarkers.remove(marker._target);
+        else _superMarkers.remove(marker._target);
+    }
+    _dirtyMarkers.clear();
+}
+
+/**
+ * Called when text lines change: Markers on given (old) line range are set dirty and markers after are shifted by
+ * given line delta. Edits are just recorded here (so typing doesn't touch markers after edit) and applied to all
+ * markers in one pass on next update.
+ */
+protected void linesChanged(int aStart, int anEnd, int aDelta)
+{
+    _lineEdits.add(new int[] { aStart, anEnd, aDelta });
+    if(_lineEdits.size()>=64) applyLineEdits(); // Don't let edits pile up if not painted
+    _needsUpdate = true;
 }
 
 /**
- * Loads a list of SuperMemberMarkers for a class declaration (recursing for inner classes).
+ * Applies recorded line edits (in order) to marker lines: Markers on changed lines move to dirty markers, markers
+ * after changed lines are shifted. Shifts keep marker order, so list stays sorted.
  */
-private void getSuperMemberMarkers(JClassDecl aCD, List <Marker> theMarkers)
+private void applyLineEdits()
 {
-    for(JMemberDecl md : aCD.getMemberDecls()) {
-        if(md.getSuperDecl()!=null && md.getEnd()<_textArea.length())
-            theMarkers.add(new SuperMemberMarker(md));
+    // If no edits, just return
+    int ecount = _lineEdits.size(); if(ecount==0) return;
+    
+    // Iterate over markers and apply edits (compact list in place)
+    int count = 0;
+    for(int i=0, iMax=_markers.size(); i<iMax; i++) { Marker marker = _markers.get(i); int line = marker._line;
+        for(int j=0; j<ecount && line>=0; j++) { int edit[] = _lineEdits.get(j);
+            if(line>edit[1]) line += edit[2];
+            else if(line>=edit[0]) line = -1;
+        }
+        if(line<0) _dirtyMarkers.add(marker);
+        else { marker._line = line; _markers.set(count++, marker); }
+    }
+    
+    // Trim list and clear edits
+    _markers.subList(count, _markers.size()).clear();
+    _lineEdits.clear();
+}
+
+/**
+ * Adds given marker for given target to given markers map and line index.
+ */
+private <T> void addMarker(Map <T,Marker> theMarkers, T aTarget, Marker aMarker)
+{
+    theMarkers.put(aTarget, aMarker); addLineMarker(aMarker);
+}
+
+/**
+ * Adds given marker to sorted markers (after markers on previous lines or lower order on same line).
+ */
+private void addLineMarker(Marker aMarker)
+{
+    applyLineEdits();
+    int line = aMarker._line, order = aMarker.getOrder(), lo = 0, hi = _markers.size();
+    while(lo<hi) { int mid = (lo + hi)/2; Marker m = _markers.get(mid);
+        if(m._line<line || m._line==line && m.getOrder()<=order) lo = mid + 1;
+        else hi = mid;
+    }
+    _markers.add(lo, aMarker);
+}
+
+/**
+ * Removes given marker from sorted markers (or dirty markers).
+ */
+private void removeMarker(Marker aMarker)
+{
+    applyLineEdits();
+    for(int i=getFirstMarker(aMarker._line), iMax=_markers.size(); i<iMax && _markers.get(i)._line==aMarker._line; i++)
+        if(_markers.get(i)==aMarker) { _markers.remove(i); return; }
+    _dirtyMarkers.remove(aMarker);
+}
+
+/**
+ * Returns the index of first marker at or after given line.
+ */
+private int getFirstMarker(int aLine)
+{
+    int lo = 0, hi = _markers.size();
+    while(lo<hi) { int mid = (lo + hi)/2;
+        if(_markers.get(mid)._line<aLine) lo = mid + 1;
+        else hi = mid;
+    }
+    return lo;
+}
+
+/**
+ * Syncs markers for member Overrides/Implements with members of given file: Keeps markers of members still in file,
+ * removes others and adds markers for new members with resolved super decls (others are queued for resolve).
+ */
+protected void syncSuperMemberMarkers(JFile aJFile)
+{
+    // If imports changed, clear resolved super decls (member types can resolve to other classes)
+    List <JImportDecl> imports = aJFile.getImportDecls();
+    if(_mkImports!=null && !imports.equals(_mkImports)) _superDecls.clear();
+    _mkImports = new ArrayList(imports);
+    
+    // Get members (none for large file, since every member would have to be resolved)
+    Set <JMemberDecl> mds = new HashSet(); JClassDecl cd = aJFile.getClassDecl();
+    if(cd!=null && !_textArea.getTextBox().isLargeFile()) getMemberDecls(cd, mds);
+    
+    // Remove markers of old members (and markers of members that lost super decl) and queue new members for resolve
+    for(JMemberDecl md : _superMarkers.keySet().toArray(new JMemberDecl[0]))
+        if(!mds.contains(md) || _superDecls.get(md)==null) removeMarker(_superMarkers.remove(md));
+    _unresolved.clear();
+    for(JMemberDecl md : mds)
+        if(!_superDecls.containsKey(md)) _unresolved.add(md);
+        else if(_superDecls.get(md)!=null && !_superMarkers.containsKey(md) && md.getEnd()<_textArea.length())
+            addMarker(_superMarkers, md, new SuperMemberMarker(md, _superDecls.get(md)));
+    
+    // Resolve new members in event thread slices
+    if(_unresolved.size()>0 && !_resolving) { _resolving = true; ViewUtils.runLater(() -> resolveSlice()); }
+}
+
+/**
+ * Adds member decls of given class declaration to given set (recursing for inner classes).
+ */
+private void getMemberDecls(JClassDecl aCD, Set <JMemberDecl> theMDs)
+{
+    for(JMemberDecl md : aCD.getMemberDecls()) { theMDs.add(md);
         if(md instanceof JClassDecl)
-            getSuperMemberMarkers((JClassDecl)md, theMarkers);
+            getMemberDecls((JClassDecl)md, theMDs); }
+}
+
+/**
+ * Resolves super decls of queued members for batch time and schedules next slice if there are more (resolving is
+ * cleared if done or if a member fails to resolve, so next members change starts resolve again).
+ */
+protected void resolveSlice()
+{
+    boolean more = false;
+    try { more = resolveSuperDecls(); }
+    finally { if(more) ViewUtils.runLater(() -> resolveSlice()); else _resolving = false; }
+}
+
+/**
+ * Resolves super decls of queued members for batch time and adds markers. Returns whether there are more to resolve.
+ */
+protected boolean resolveSuperDecls()
+{
+    // Resolve queued members for batch time (members from replaced JFile are dropped by next sync)
+    long time = System.currentTimeMillis(); boolean added = false;
+    while(_unresolved.size()>0 && System.currentTimeMillis()-time<=BatchTime) {
+        JMemberDecl md = _unresolved.remove(_unresolved.size()-1);
+        _superDecls.put(md, null); JavaDecl sdecl = md.getSuperDecl(); if(sdecl==null) continue;
+        _superDecls.put(md, sdecl);
+        if(!_superMarkers.containsKey(md) && md.getEnd()<_textArea.length()) {
+            addMarker(_superMarkers, md, new SuperMemberMarker(md, sdecl)); added = true; }
     }
+    
+    // Repaint if markers added and return whether there are more
+    if(added) repaint();
+    return _unresolved.size()>0;
 }
 
 /**
- * Override to reset markers.
+ * Returns the top marker at given point (checks markers on line at point and line above, since markers can extend
+ * past their line).
  */
-protected void resetAll()  { _markers = null; repaint(); }
+public Marker getMarkerAt(double aX, double aY)
+{
+    updateMarkers(); int lindex = _textArea.getLineIndexForY(aY);
+    for(int i=getFirstMarker(lindex+1)-1; i>=0 && _markers.get(i)._line>=lindex-1; i--) { Marker marker = _markers.get(i);
+        updateY(marker); if(marker.contains(aX, aY)) return marker; }
+    return null;
+}
+
+/**
+ * Sets given marker y from its line (since line y changes with layout).
+ */
+private void updateY(Marker aMarker)  { aMarker.setY(Math.round(_textArea.getLine(aMarker._line).getY())); }
+
+/**
+ * Override to update markers (and repaint).
+ */
+protected void resetAll()  { _needsUpdate = true; repaint(); }
 
 /**
  * Handle events.
@@ -119,14 +333,12 @@ protected void processEvent(ViewEvent anEvent)
     // Handle MouseClick
     if(anEvent.isMouseClick()) {
         
-        // Get reversed markers (so click effects top marker)
-        List <Marker> markers = new ArrayList(getMarkers()); Collections.reverse(markers);
-        double x = anEvent.getX(), y = anEvent.getY();
+        // Get top marker at click point
+        Marker marker = getMarkerAt(anEvent.getX(), anEvent.getY());
         
         // Handle double click
         if(anEvent.getClickCount()==2) {
-        for(Marker marker : markers)
-            if(marker.contains(x,y) && marker instanceof BreakpointMarker) {
+            if(marker instanceof BreakpointMarker) {
                 marker.mouseClicked(anEvent); return; }
             TextBoxLine line = _textArea.getTextBox().getLineForY(anEvent.getY());
             int index = line.getIndex();
@@ -136,18 +348,14 @@ protected void processEvent(ViewEvent anEvent)
         }
         
         // Handle normal click
-        for(Marker marker : markers)
-            if(marker.contains(x,y)) {
-                marker.mouseClicked(anEvent); return; }
+        if(marker!=null)
+            marker.mouseClicked(anEvent);
     }
 
     // Handle MouseMoved
     else if(anEvent.isMouseMove()) {
         _mx = anEvent.getX(); _my = anEvent.getY();
-        for(Marker marker : getMarkers())
-            if(marker.contains(_mx,_my)) {
-                setCursor(Cursor.HAND); return; }
-        setCursor(Cursor.DEFAULT);
+        setCursor(getMarkerAt(_mx, _my)!=null? Cursor.HAND : Cursor.DEFAULT);
     }
 }
 
@@ -158,8 +366,8 @@ protected void paintFront(Painter aPntr)
 {
     double th = _textArea.getHeight(), h = Math.min(getHeight(), th);
     aPntr.setStroke(Stroke.Stroke1);
-    for(Marker m : getMarkers())
-        aPntr.drawImage(m._image, m.x, m.y);
+    updateMarkers();
+    for(Marker m : _markers) { updateY(m); aPntr.drawImage(m._image, m.x, m.y); }
 }
 
 /**
@@ -167,10 +375,8 @@ protected void paintFront(Painter aPntr)
  */
 public String getToolTip(ViewEvent anEvent)
 {
-    for(Marker marker : getMarkers())
-        if(marker.contains(_mx, _my))
-            return marker.getToolTip();
-    return null;
+    Marker marker = getMarkerAt(_mx, _my);
+    return marker!=null? marker.getToolTip() : null;
 }
 
 /**
@@ -184,8 +390,17 @@ public abstract static class Marker<T> extends Rect {
     // The image
     Image   _image;
     
-    /** Creates a new marker for target. */
-    public Marker(T aTarget)  { _target = aTarget; setRect(-2, 0, WIDTH, WIDTH); }
+    // The line index
+    int     _line;
+    
+    /** Creates a new marker for target and line index. */
+    public Marker(T aTarget, int aLine)  { _target = aTarget; _line = aLine; setRect(-2, 0, WIDTH, WIDTH); }
+    
+    /** Returns the paint order of marker kind on a line (higher paints on top). */
+    public abstract int getOrder();
+    
+    /** Returns the line index of target in current text (or -1 if target is gone). */
+    public abstract int getTargetLine();
     
     /** Returns a tooltip. */
     public abstract String getToolTip();
@@ -201,20 +416,24 @@ public class SuperMemberMarker extends Marker <JMemberDecl> {
 
     JavaDecl _superDecl; boolean _interface;
 
-    /** Creates a new marker for target. */
-    public SuperMemberMarker(JMemberDecl aTarget)
+    /** Creates a new marker for target and its super decl. */
+    public SuperMemberMarker(JMemberDecl aTarget, JavaDecl aSuperDecl)
     {
-        super(aTarget);
-        _superDecl = aTarget.getSuperDecl();
-        _interface = aTarget.isSuperDeclInterface();
-        TextBoxLine line = _textArea.getLine(aTarget.getLineIndex());
-        setY(Math.round(line.getY()));
+        super(aTarget, aTarget.getLineIndex());
+        _superDecl = aSuperDecl;
+        JavaDecl cdecl = aSuperDecl.getClassType(); _interface = cdecl!=null && cdecl.isInterface();
         _image = isInterface()? _implImage : _overImage;
     }
     
     /** Returns whether is interface. */
     public boolean isInterface()  { return _interface; }
     
+    /** Returns the paint order of marker kind on a line. */
+    public int getOrder()  { return 0; }
+    
+    /** Returns the line index of target in current text (or -1 if target is gone). */
+    public int getTargetLine()  { return _target.getEnd()<_textArea.length()? _target.getLineIndex() : -1; }
+    
     /** Returns a tooltip. */
     public String getToolTip()
     {
@@ -241,12 +460,19 @@ public class BuildIssueMarker extends Marker <BuildIssue> {
     /** Creates a new marker for target. */
     public BuildIssueMarker(BuildIssue aTarget)
     {
-        super(aTarget); _isError = aTarget.isError();
-        TextBoxLine line = _textArea.getLineAt(aTarget.getEnd());
-        setY(Math.round(line.getY()));
+        super(aTarget, _textArea.getLineAt(aTarget.getEnd()).getIndex()); _isError = aTarget.isError();
         _image = _isError? _errorImage : _warningImage;
     }
     
+    /** Returns the paint order of marker kind on a line. */
+    public int getOrder()  { return 1; }
+    
+    /** Returns the line index of target in current text (or -1 if target is gone). */
+    public int getTargetLine()
+    {
+        return _target.getEnd()<_textArea.length()? _textArea.getLineAt(_target.getEnd()).getIndex() : -1;
+    }
+    
     /** Returns a tooltip. */
     public String getToolTip()  { return _target.getText(); }
     
@@ -262,11 +488,15 @@ public class BreakpointMarker extends Marker <Breakpoint> {
     /** Creates a BreakpointMarker. */
     public BreakpointMarker(Breakpoint aBP)
     {
-        super(aBP);
-        TextBoxLine line = _textArea.getLine(aBP.getLine());
-        setY(Math.round(line.getY()));
+        super(aBP, aBP.getLine());
         _image = _breakpointImage;
     }
+    
+    /** Returns the paint order of marker kind on a line. */
+    public int getOrder()  { return 2; }
+    
+    /** Returns the line index of target in current text (or -1 if target is gone). */
+    public int getTargetLine()  { return _target.getLine()<_textArea.getLineCount()? _target.getLine() : -1; }
 
     /** Returns a tooltip. */
     public String getToolTip()  { return _target.toString(); }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.javatext;
+import java.util.*;
+import snap.gfx.*;
+import snap.javakit.*;
+import snap.javatext.JavaTextBox.JavaTextToken;
+import snap.project.Metrics;
+import snap.view.ViewUtils;
+
+/**
+ * Colors identifier tokens of a JavaTextBox by what they resolve to (field, static member, local, type or unresolved).
+ *
+ * Only dirty nodes are highlighted (nodes from full parse or incremental reparse). Nodes are resolved in the event
+ * thread (so they see a consistent tree and import cache), in slices of at most BatchTime millis, with nodes on
+ * visible lines first. Since node tokens are the text line tokens, colors are set on the tokens themselves: Visible
+ * line colors are set in one batch when all visible nodes are resolved, other colors as they are resolved.
+ */
+public class SemanticHighlighter {
+
+    // The JavaTextArea
+    JavaTextArea          _textArea;
+
+    // The nodes that need to be highlighted (file or reparsed nodes)
+    List <JNode>          _dirty = new ArrayList();
+
+    // The identifier nodes to resolve (visible lines first), the index of next one and the count on visible lines
+    List <JNode>          _idNodes;
+    int                   _idIndex, _visCount;
+
+    // The text version the identifier nodes are for
+    int                   _version;
+
+    // The resolved visible tokens and colors (set in one batch when all visible nodes are resolved)
+    List <JavaTextToken>  _visTokens = new ArrayList();
+    List <Color>          _visColors = new ArrayList();
+
+    // Whether highlight slice is pending in event thread
+    boolean               _pending;
+
+    // The max time in millis for resolve work per slice
+    public static int     BatchTime = 15;
+
+    // Colors
+    static Color          _fieldColor = new Color("#0000C0");
+    static Color          _staticColor = new Color("#0050A0");
+    static Color          _localColor = new Color("#6A3E3E");
+    static Color          _typeColor = new Color("#005A5A");
+    static Color          _unresolvedColor = new Color("#E00000");
+
+/**
+ * Creates a new SemanticHighlighter for given JavaTextArea.
+ */
+public SemanticHighlighter(JavaTextArea aTextArea)  { _textArea = aTextArea; }
+
+/**
+ * Returns the JavaTextBox.
+ */
+public JavaTextBox getTextBox()  { return _textArea.getTextBox(); }
+
+/**
+ * Adds a node that needs to be highlighted (file or reparsed node) and starts highlight.
+ */
+public void addDirty(JNode aNode)
+{
+    // If whole file, clear other nodes
+    if(aNode instanceof JFile) _dirty.clear();
+    _dirty.add(aNode); _idNodes = null;
+
+    // Start highlight later (so edits in one event are batched)
+    if(!_pending) { _pending = true; ViewUtils.runLater(() -> highlightSlice()); }
+}
+
+/**
+ * Highlights next slice of nodes and schedules next slice if there are more (pending is cleared if done or if a node
+ * fails to resolve, so later changes start highlight again).
+ */
+protected void highlightSlice()
+{
+    boolean more = false;
+    try { more = highlightNodes(); }
+    finally {
+        if(more) ViewUtils.runLater(() -> highlightSlice());
+        else { _pending = false; _idNodes = null; _visTokens.clear(); _visColors.clear(); }
+    }
+}
+
+/**
+ * Resolves identifier nodes for batch time and sets their colors. Returns whether there are more nodes to resolve.
+ */
+protected boolean highlightNodes()
+{
+    // If nodes added or text changed, get identifier nodes of dirty nodes that are still in file (visible lines first)
+    JavaTextBox tbox = getTextBox(); int version = tbox.getTextVersion();
+    if(_idNodes==null || version!=_version) {
+        _dirty.removeIf(node -> !isInFile(node));
+        List <JNode> idNodes = new ArrayList(); for(JNode node : _dirty) getIdNodes(node, idNodes);
+        int sline = _textArea._paintStart, eline = _textArea._paintEnd;
+        List <JNode> visNodes = new ArrayList(), otherNodes = new ArrayList();
+        for(JNode node : idNodes) { int line = ((JavaTextToken)node.getStartToken()).getLineIndex();
+            if(line>=sline && line<=eline) visNodes.add(node); else otherNodes.add(node); }
+        _idNodes = visNodes; _visCount = visNodes.size(); _idNodes.addAll(otherNodes); _idIndex = 0; _version = version;
+        _visTokens.clear(); _visColors.clear();
+    }
+
+    // Resolve nodes for batch time
+    Color idColor = tbox.getIdentifierColor(); long time = System.currentTimeMillis();
+    while(_idIndex<_idNodes.size() && System.currentTimeMillis()-time<=BatchTime) { JNode node = _idNodes.get(_idIndex);
+
+        // Get color for node (null is identifier color, in case node meaning changed)
+        long ntime = Metrics.start(); Color color = getColor(node); Metrics.stop("attrib.highlightNode", ntime);
+        JavaTextToken token = (JavaTextToken)node.getStartToken(); if(color==null) color = idColor;
+
+        // If visible node, add to visible batch (and set batch if last visible node), otherwise set color
+        if(_idIndex<_visCount) { _visTokens.add(token); _visColors.add(color);
+            if(_idIndex+1==_visCount) {
+                for(int i=0, iMax=_visTokens.size(); i<iMax; i++) _visTokens.get(i).setColor(_visColors.get(i));
+                _visTokens.clear(); _visColors.clear(); _textArea.repaint(); }
+        }
+        else token.setColor(color);
+        _idIndex++;
+    }
+
+    // If all nodes resolved, clear dirty nodes and return false
+    if(_idIndex<_idNodes.size()) return true;
+    _dirty.clear(); return false;
+}
+
+/**
+ * Returns whether given node is still in text box JFile (reparsed nodes replace old nodes).
+ */
+private boolean isInFile(JNode aNode)
+{
+    JNode node = aNode;
+    for(JNode par=node.getParent(); par!=null; node=par, par=node.getParent())
+        if(!par.getChildren().contains(node)) return false;
+    return node==getTextBox()._jfile;
+}
+
+/**
+ * Adds identifier and type nodes (that have identifier token) in given node to given list.
+ */
+private void getIdNodes(JNode aNode, List <JNode> theNodes)
+{
+    // Add identifier or simple type with identifier token
+    if(aNode instanceof JExprId || aNode instanceof JType && aNode.getName()!=null && aNode.getName().indexOf('.')<0) {
+        Object token = aNode.getStartToken();
+        if(token instanceof JavaTextToken && ((JavaTextToken)token).getName()=="Identifier")
+            theNodes.add(aNode);
+    }
+
+    // Recurse
+    for(JNode child : aNode.getChildren())
+        getIdNodes(child, theNodes);
+}
+
+/**
+ * Returns the color for given identifier or type node (null for identifier color).
+ */
+protected Color getColor(JNode aNode)
+{
+    // Handle unresolved (packages, imports and labels don't resolve)
+    JavaDecl decl = aNode.getDecl();
+    if(decl==null) {
+        JNode par = aNode.getParent();
+        if(aNode.getParent(JImportDecl.class)!=null || aNode.getParent(JPackageDecl.class)!=null) return null;
+        if(par instanceof JStmtLabeled || par instanceof JStmtBreak || par instanceof JStmtContinue) return null;
+        return _unresolvedColor;
+    }
+
+    // Handle field, static method, local var (or param) and type
+    if(decl.isField()) return decl.isStatic()? _staticColor : _fieldColor;
+    if(decl.isMethod()) return decl.isStatic()? _staticColor : null;
+    if(decl.isVarDecl()) return _localColor;
+    if(decl.isType()) return _typeColor;
+    return null;
+}
+
+}
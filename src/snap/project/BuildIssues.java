@@ -14,6 +14,9 @@ public class BuildIssues extends SnapList <BuildIssue> {
     // The total count of errors and warnings
     int                                 _ec, _wc;
     
+    // The number of changes (incremented when an issue is added or removed, so views can cache derived data)
+    volatile int                        _version;
+    
     // A map to track BuildIssues by WebFile
     Map <WebFile,SnapList<BuildIssue>>  _fileIssues = new Hashtable();
     
@@ -62,7 +65,7 @@ public boolean add(BuildIssue aBI)
     
     // Update ErrorCount/WarningCount
     if(aBI.isError()) _ec++; else _wc++;
-    add(index, aBI);
+    add(index, aBI); _version++;
     return true;
 }
 
@@ -80,7 +83,7 @@ public void remove(BuildIssue aBI)
     if(aBI.isError()) _ec--; else _wc--;
     
     // Remove from master list
-    super.remove(aBI);
+    super.remove(aBI); _version++;
 }
 
 /**
@@ -92,6 +95,11 @@ public void remove(WebFile aFile)
     for(BuildIssue i : issues) remove(i);
 }
 
+/**
+ * Returns the number of changes (incremented when an issue is added or removed).
+ */
+public int getVersion()  { return _version; }
+
 /**
  * Returns the number of errors currently tracked.
  */
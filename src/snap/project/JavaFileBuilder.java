@@ -100,7 +100,7 @@ public boolean buildFiles(TaskMonitor aTaskMonitor)
     _interrupt = false;
     
     // Iterate over build files and compile
-    boolean compileSuccess = true; //long time = System.currentTimeMillis();
+    boolean compileSuccess = true; long time = Metrics.start();
     for(int i=0; i<files.size(); i++) { WebFile file = files.get(i);
     
         // If interrupted, add remaining build files and return
@@ -114,8 +114,9 @@ public boolean buildFiles(TaskMonitor aTaskMonitor)
         aTaskMonitor.beginTask(msg, -1);
         
         // Get compile file
+        long ftime = Metrics.start();
         boolean result = compiler.compile(file);
-        aTaskMonitor.endTask();
+        aTaskMonitor.endTask(); Metrics.stop("build.compileFile", ftime);
         
         // If compile failed, re-add file to BuildFiles and continue
         if(!result) {
@@ -139,8 +140,9 @@ public boolean buildFiles(TaskMonitor aTaskMonitor)
             deleteZombieClassFiles(jfile);
             
             // Update dependencies and get files that need to be updated
-            JavaData jdata = JavaData.get(jfile);
+            JavaData jdata = JavaData.get(jfile); long dtime = Metrics.start();
             boolean dependsChanged = jdata.updateDependencies();
+            Metrics.stop("build.updateDependencies", dtime);
             if(!dependsChanged) continue;
             
             // Iterate over Java files dependent on loop JavaFile and mark for update
@@ -161,8 +163,9 @@ public boolean buildFiles(TaskMonitor aTaskMonitor)
     // Set compiler/files for findUnusedImports
     _compiler = compiler; _compiledFiles = compiledFiles; _errorFiles = errorFiles;
     
-    // Finalize ActivityText and return
-    //System.out.println("Build time: " + (System.currentTimeMillis()-time)/1000f + " seconds");
+    // Record build time and compiled/error file counts, and return
+    Metrics.stop("build.buildFiles", time);
+    Metrics.count("build.compiledFiles", compiledFiles.size()); Metrics.count("build.errorFiles", errorFiles.size());
     return compileSuccess;
 }
 
@@ -171,11 +174,12 @@ public boolean buildFiles(TaskMonitor aTaskMonitor)
  */
 public void findUnusedImports()
 {
-    if(_compiler==null) return;
+    if(_compiler==null) return; long time = Metrics.start();
     for(WebFile cfile : _compiledFiles) { JavaData jdata = JavaData.get(cfile);
         if(_errorFiles.contains(cfile)) continue;
         for(BuildIssue bissue : jdata.getUnusedImports())
             _compiler.report(bissue); }
+    Metrics.stop("build.findUnusedImports", time);
     _compiler = null; _compiledFiles = _errorFiles = null;
 }
 
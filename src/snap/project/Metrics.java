@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of named performance metrics (counters, timers and histograms) for parsing, attribution, completion,
+ * build, class loading, search and debugger. Metrics are only recorded when Enabled (set by -Dsnapcode.Metrics=true
+ * or diagnostics pane) - when off, instrumented code only reads one volatile boolean:
+ *
+ *     long time = Metrics.start(); ... Metrics.stop("parse.file", time);
+ *
+ * Timers are also committed as JFR events (named "snapcode.Metric") when running on a JDK with JFR.
+ */
+public class Metrics {
+
+    // Whether metrics are recorded
+    public static volatile boolean Enabled = Boolean.getBoolean("snapcode.Metrics");
+
+    // The metrics by name
+    static Map <String,Metric>  _metrics = new ConcurrentHashMap();
+
+    // The JFR event factory and Event methods (null if JFR not available)
+    static Object               _jfrFactory;
+    static Method               _jfrNewEvent, _jfrSet, _jfrCommit;
+
+    // Constants for metric kinds
+    public enum Kind { Counter, Timer, Histogram }
+
+/**
+ * Returns the start time for a timer (or 0 if metrics are off).
+ */
+public static long start()  { return Enabled? System.nanoTime() : 0; }
+
+/**
+ * Records time since given start time for named timer (does nothing if start is 0, metrics were off at start).
+ */
+public static void stop(String aName, long aStart)
+{
+    if(aStart==0 || !Enabled) return;
+    long nanos = System.nanoTime() - aStart;
+    getMetric(aName, Kind.Timer).add(nanos);
+    commitJFR(aName, nanos);
+}
+
+/**
+ * Increments named counter.
+ */
+public static void count(String aName)  { if(Enabled) getMetric(aName, Kind.Counter).add(1); }
+
+/**
+ * Adds given value to named counter.
+ */
+public static void count(String aName, long aValue)  { if(Enabled) getMetric(aName, Kind.Counter).add(aValue); }
+
+/**
+ * Records given value for named histogram.
+ */
+public static void record(String aName, long aValue)  { if(Enabled) getMetric(aName, Kind.Histogram).add(aValue); }
+
+/**
+ * Records given nanos for named timer (for code that already measures time).
+ */
+public static void recordTime(String aName, long theNanos)
+{
+    if(!Enabled) return;
+    getMetric(aName, Kind.Timer).add(theNanos);
+    commitJFR(aName, theNanos);
+}
+
+/**
+ * Returns the metric for given name and kind (created if missing).
+ */
+public static Metric getMetric(String aName, Kind aKind)
+{
+    Metric metric = _metrics.get(aName);
+    if(metric==null) metric = _metrics.computeIfAbsent(aName, n -> new Metric(n, aKind));
+    return metric;
+}
+
+/**
+ * Returns the metrics, sorted by name.
+ */
+public static List <Metric> getMetrics()
+{
+    List <Metric> metrics = new ArrayList(_metrics.values());
+    metrics.sort((m1,m2) -> m1.getName().compareTo(m2.getName()));
+    return metrics;
+}
+
+/**
+ * Clears all metrics.
+ */
+public static void reset()  { _metrics.clear(); }
+
+/**
+ * Returns a text table of metrics (timer values in millis).
+ */
+public static String getText()
+{
+    StringBuffer sb = new StringBuffer();
+    sb.append(String.format("%-32s %10s %12s %10s %10s %10s\n", "Name", "Count", "Total", "Avg", "P90", "Max"));
+    for(Metric m : getMetrics()) { double scale = m.getKind()==Kind.Timer? 1e6 : 1;
+        if(m.getKind()==Kind.Counter) sb.append(String.format("%-32s %10d %12d\n", m.getName(), m.getCount(), m.getTotal()));
+        else sb.append(String.format("%-32s %10d %12.2f %10.3f %10.3f %10.3f\n", m.getName(), m.getCount(),
+            m.getTotal()/scale, m.getAverage()/scale, m.getPercentile(.9)/scale, m.getMax()/scale));
+    }
+    return sb.toString();
+}
+
+/**
+ * Returns a JSON dump of metrics (timer values in nanos).
+ */
+public static String getJSON()
+{
+    StringBuffer sb = new StringBuffer("{\n  \"enabled\": ").append(Enabled).append(",\n  \"metrics\": [");
+    List <Metric> metrics = getMetrics();
+    for(int i=0, iMax=metrics.size(); i<iMax; i++) { Metric m = metrics.get(i);
+        sb.append(i>0? ",\n    " : "\n    ").append("{ \"name\": \"").append(m.getName()).append('"');
+        sb.append(", \"kind\": \"").append(m.getKind()).append('"');
+        sb.append(", \"count\": ").append(m.getCount()).append(", \"total\": ").append(m.getTotal());
+        if(m.getKind()!=Kind.Counter) {
+            sb.append(", \"min\": ").append(m.getMin()).append(", \"max\": ").append(m.getMax());
+            sb.append(", \"p50\": ").append(m.getPercentile(.5)).append(", \"p90\": ").append(m.getPercentile(.9));
+            sb.append(", \"p99\": ").append(m.getPercentile(.99));
+        }
+        sb.append(" }");
+    }
+    return sb.append(metrics.size()>0? "\n  ]\n}\n" : "]\n}\n").toString();
+}
+
+/**
+ * Commits JFR event for given timer name and nanos, if JFR is available.
+ */
+private static void commitJFR(String aName, long theNanos)
+{
+    if(_jfrFactory==null) return;
+    try {
+        Object event = _jfrNewEvent.invoke(_jfrFactory);
+        _jfrSet.invoke(event, 0, aName); _jfrSet.invoke(event, 1, theNanos);
+        _jfrCommit.invoke(event);
+    }
+    catch(Exception e) { _jfrFactory = null; System.err.println("Metrics: JFR event failed: " + e); }
+}
+
+/**
+ * Initializes JFR event factory (by reflection, since jdk.jfr isn't available on all supported JDKs).
+ */
+static
+{
+    try {
+        Class fcls = Class.forName("jdk.jfr.EventFactory"), acls = Class.forName("jdk.jfr.AnnotationElement");
+        Class vcls = Class.forName("jdk.jfr.ValueDescriptor"), ecls = Class.forName("jdk.jfr.Event");
+        Constructor anew = acls.getConstructor(Class.class, Object.class);
+        Constructor vnew = vcls.getConstructor(Class.class, String.class);
+        List annos = Arrays.asList(anew.newInstance(Class.forName("jdk.jfr.Name"), "snapcode.Metric"),
+            anew.newInstance(Class.forName("jdk.jfr.Label"), "SnapCode Metric"));
+        List fields = Arrays.asList(vnew.newInstance(String.class, "name"), vnew.newInstance(long.class, "value"));
+        Object factory = fcls.getMethod("create", List.class, List.class).invoke(null, annos, fields);
+        _jfrNewEvent = fcls.getMethod("newEvent");
+        _jfrSet = ecls.getMethod("set", int.class, Object.class); _jfrCommit = ecls.getMethod("commit");
+        _jfrFactory = factory;
+    }
+    catch(ClassNotFoundException e) { }  // JDK without JFR
+    catch(Exception e) { System.err.println("Metrics: JFR events not available: " + e); }
+}
+
+/**
+ * A named counter, timer or histogram. Timer and histogram values are also counted in power of two buckets for
+ * percentiles.
+ */
+public static class Metric {
+
+    // The name and kind
+    String      _name;
+    Kind        _kind;
+
+    // The count, total, min and max of values
+    long        _count, _total, _min = Long.MAX_VALUE, _max;
+
+    // The counts of values by power of two (bucket i is values less than 2^i)
+    long        _buckets[];
+
+    /** Creates a new Metric. */
+    public Metric(String aName, Kind aKind)  { _name = aName; _kind = aKind; if(aKind!=Kind.Counter) _buckets = new long[64]; }
+
+    /** Returns the name. */
+    public String getName()  { return _name; }
+
+    /** Returns the kind. */
+    public Kind getKind()  { return _kind; }
+
+    /** Adds a value (for counter, value is added to total). */
+    public synchronized void add(long aValue)
+    {
+        _count++; _total += aValue;
+        if(_buckets==null) return;
+        _min = Math.min(_min, aValue); _max = Math.max(_max, aValue);
+        _buckets[64 - Long.numberOfLeadingZeros(Math.max(aValue, 0))]++;
+    }
+
+    /** Returns the number of values (or counter increments). */
+    public synchronized long getCount()  { return _count; }
+
+    /** Returns the total of values. */
+    public synchronized long getTotal()  { return _total; }
+
+    /** Returns the min value. */
+    public synchronized long getMin()  { return _count>0? _min : 0; }
+
+    /** Returns the max value. */
+    public synchronized long getMax()  { return _max; }
+
+    /** Returns the average value. */
+    public synchronized double getAverage()  { return _count>0? _total/(double)_count : 0; }
+
+    /** Returns the approximate value at given percentile (upper bound of bucket, limited to max). */
+    public synchronized long getPercentile(double aPct)
+    {
+        if(_buckets==null || _count==0) return 0;
+        long target = (long)Math.ceil(_count*aPct), sum = 0;
+        for(int i=0; i<_buckets.length; i++) { sum += _buckets[i];
+            if(sum>=target) return Math.min((1L<<i) - 1, _max); }
+        return _max;
+    }
+}
+
+}
@@ -129,6 +129,15 @@ public Project[] getProjects()  { return _projSet.getProjects(); }
  */
 public ProjectSet getProjectSet()  { return _projSet; }
 
+/**
+ * Returns the JavaDeclOwner that manages JavaDecls for project (shared with root project).
+ */
+public JavaDeclOwner getJavaDeclOwner()
+{
+    Project rproj = getRootProject(); if(rproj!=this) return rproj.getJavaDeclOwner();
+    return _javaDeclOwnr;
+}
+
 /**
  * Returns a JavaDecl for object.
  */
@@ -157,6 +166,13 @@ private class ProjJavaDeclOwner extends JavaDeclOwner {
     
     /** Override to return project ClassLoader. */
     public ClassLoader getClassLoader()  { return Project.this.getClassLoader(); }
+    
+    /** Override to check project class path index. */
+    protected boolean isClassNameMissing(String aName)
+    {
+        ClassPathInfo cpinfo = ClassPathInfo.get(getSite());
+        return cpinfo!=null && cpinfo.isClassNameMissing(aName);
+    }
 }
 
 /**